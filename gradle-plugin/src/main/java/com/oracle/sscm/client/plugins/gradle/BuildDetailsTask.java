@@ -0,0 +1,146 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import io.grafeas.ApiException;
+
+import com.oracle.sscm.client.grafeas.GrafeasUtilities;
+import com.oracle.sscm.client.log.GrafeasLog;
+
+/**
+ * Publishes the build details occurrences and the build attestations, as the buildDetails goal
+ * does, with the digests computed by a HashFilesTask.
+ */
+public abstract class BuildDetailsTask extends GrafeasPublishTask {
+
+    @Input
+    public abstract Property<String> getProjectName();
+
+    @Input
+    public abstract Property<String> getInfraName();
+
+    @Input
+    public abstract Property<String> getBuilderName();
+
+    @Input
+    public abstract Property<String> getBuilderDescription();
+
+    @Input
+    @Optional
+    public abstract Property<String> getBuilderVersion();
+
+    @Input
+    @Optional
+    public abstract Property<String> getUserName();
+
+    @Input
+    @Optional
+    public abstract Property<String> getUserEmailAddress();
+
+    @Input
+    @Optional
+    public abstract Property<String> getProjectNumber();
+
+    @Input
+    public abstract MapProperty<String, String> getBuildOptions();
+
+    @Input
+    public abstract ListProperty<String> getResourceUrls();
+
+    @Input
+    public abstract ListProperty<String> getAuthorityNames();
+
+    @Input
+    public abstract Property<Integer> getSigningThreads();
+
+    // Output of the HashFilesTask, only its content matters
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getDigestsFile();
+
+    // Directory the paths of the digests are relative to
+    @Internal
+    public abstract DirectoryProperty getBaseDirectory();
+
+    @TaskAction
+    public void publish() throws IOException {
+        GrafeasLog logger = createLog();
+        List<String> resources = getResourceUrls().get();
+        List<String> authorities = getAuthorityNames().get();
+        if (resources.isEmpty()) {
+            throw new GradleException("No resourceUrls to publish build details for");
+        }
+        FileDigests digests = FileDigests.read(getDigestsFile().get().getAsFile(), getBaseDirectory().get().getAsFile());
+
+        List<String> published = new ArrayList<String>();
+        try {
+            logger.info("Creating Build Details Occurrences Metadata.");
+            GrafeasUtilities utils = getUtils(logger, digests);
+            String builderName = getBuilderName().get();
+            if (utils.createBuildDetailsNoteIfAbsent(builderName, getInfraName().get() + "-" + builderName, getBuilderDescription().get())) {
+                logger.info("Created Build Details Note Metadata.");
+            }
+            String uniqueId = builderName + System.currentTimeMillis();
+            for (int i = 0; i < resources.size(); i++) {
+                String occurrenceId = (resources.size() == 1) ? uniqueId : uniqueId + "-" + i;
+                utils.createBuildDetailsOccurrence(occurrenceId, resources.get(i), builderName);
+                published.add("buildDetails " + occurrenceId + " " + resources.get(i));
+            }
+
+            logger.info("Creating Build Attestation Metadata.");
+            if (resources.size() == 1 && authorities.size() == 1) {
+                utils.createAttestationOccurrence(authorities.get(0), resources.get(0));
+            } else {
+                utils.createAttestationOccurrences(authorities, resources, getSigningThreads().get());
+            }
+            for (String authority : authorities) {
+                for (String resource : resources) {
+                    published.add("attestation " + authority + " " + resource);
+                }
+            }
+        } catch (ApiException e) {
+            throw new GradleException("Error loading build metadata into grafeas: " + e.getCode() + " " + e.getResponseBody(), e);
+        } finally {
+            logger.logSummary();
+        }
+        writeReceipt(published);
+    }
+
+    private GrafeasUtilities getUtils(GrafeasLog logger, FileDigests digests) {
+        GrafeasUtilities utils = new GrafeasUtilities(serverUrl(), getProjectName().get());
+        utils.setLog(logger);
+        if (getBuilderVersion().isPresent()) {
+            utils.setBuilderVersion(getBuilderVersion().get());
+        }
+        utils.setInfraName(getInfraName().get());
+        utils.setUserName(getUserName().getOrNull());
+        utils.setUserEmailAddress(getUserEmailAddress().getOrNull());
+        utils.setProjectNumber(getProjectNumber().getOrNull());
+        if (!getBuildOptions().get().isEmpty()) {
+            utils.setBuildOptions(getBuildOptions().get());
+        }
+        utils.setBuildArtifacts(new ArrayList<String>(digests.getArtifacts().keySet()));
+        utils.setKnownChecksums(digests.getArtifacts());
+        if (!digests.getSourceFiles().isEmpty()) {
+            utils.setSourceFiles(digests.getSourceFiles());
+            utils.setKnownSourceHashes(digests.getSourceHashes());
+        }
+        return utils;
+    }
+}
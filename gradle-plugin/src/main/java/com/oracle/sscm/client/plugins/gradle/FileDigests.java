@@ -0,0 +1,139 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Digests of the build artifacts and source files, one line per file:
+ *
+ *   artifact|source &lt;TAB&gt; digest &lt;TAB&gt; path relative to the project directory
+ *
+ * Lines are sorted and nothing else is written, so that the same files always give the same
+ * content, and tasks using the digests are up to date as long as the files don't change.
+ * An artifact digest is the checksum GrafeasUtilities sets on the artifact, a source digest is
+ * a hex SHA-256, or '-' if it couldn't be computed.
+ */
+class FileDigests {
+
+    static final String ARTIFACT = "artifact";
+    static final String SOURCE = "source";
+    static final String UNKNOWN_DIGEST = "-";
+
+    private static final String SEPARATOR = "\t";
+
+    // File name -> digest, in the order of the file
+    private final Map<String, String> artifacts = new LinkedHashMap<String, String>();
+    private final Map<String, String> sources = new LinkedHashMap<String, String>();
+
+    /**
+     * Read digests, resolving their paths against the base directory
+     */
+    static FileDigests read(File file, File baseDirectory) throws IOException {
+        FileDigests digests = new FileDigests();
+        BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR, 3);
+                if (fields.length != 3) {
+                    throw new IOException("Invalid line in " + file + ": " + line);
+                }
+                String path = new File(baseDirectory, fields[2]).getPath();
+                if (ARTIFACT.equals(fields[0])) {
+                    digests.artifacts.put(path, fields[1]);
+                } else {
+                    digests.sources.put(path, fields[1]);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return digests;
+    }
+
+    /**
+     * Format a line for the file
+     */
+    static String line(String kind, String digest, File file, File baseDirectory) {
+        return kind + SEPARATOR + digest + SEPARATOR + relativePath(file, baseDirectory);
+    }
+
+    /**
+     * Write lines sorted
+     */
+    static void write(File file, List<String> lines) throws IOException {
+        List<String> sorted = new ArrayList<String>(lines);
+        Collections.sort(sorted);
+        BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            for (String line : sorted) {
+                out.write(line);
+                out.write('\n');
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Get the artifact file names and their checksums
+     */
+    Map<String, String> getArtifacts() {
+        return artifacts;
+    }
+
+    /**
+     * Get the source file names and their SHA-256, without those that couldn't be hashed
+     */
+    Map<String, byte[]> getSourceHashes() {
+        Map<String, byte[]> hashes = new LinkedHashMap<String, byte[]>();
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            if (!UNKNOWN_DIGEST.equals(source.getValue())) {
+                hashes.put(source.getKey(), fromHex(source.getValue()));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Get the source file names
+     */
+    List<String> getSourceFiles() {
+        return new ArrayList<String>(sources.keySet());
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    // Relative paths keep the digests of a checkout valid in another, as the build cache requires
+    //
+    private static String relativePath(File file, File baseDirectory) {
+        try {
+            return baseDirectory.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+        } catch (IllegalArgumentException e) {
+            return file.getPath();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import com.oracle.sscm.client.log.GrafeasLog;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Writes GrafeasLog messages to the Gradle log. Debug messages go to the Gradle info level,
+ * shown with --info, and to the lifecycle level when the debugLog property is set.
+ */
+class GradleLogSink implements GrafeasLog.Sink {
+  private final Logger logger;
+  private final boolean debug;
+
+  GradleLogSink(Logger logger, boolean debug) {
+    this.logger = logger;
+    this.debug = debug;
+  }
+
+  /**
+   * @return a log at debug level if debug is set or Gradle runs with --info, info level otherwise
+   */
+  static GrafeasLog createLog(Logger logger, boolean debug) {
+    return new GrafeasLog(new GradleLogSink(logger, debug), (debug || logger.isInfoEnabled()) ? GrafeasLog.Level.DEBUG : GrafeasLog.Level.INFO);
+  }
+
+  public void write(GrafeasLog.Level level, String message) {
+    switch (level) {
+      case DEBUG:
+        if (debug) {
+          logger.lifecycle(message);
+        } else {
+          logger.info(message);
+        }
+        break;
+      case INFO:
+        logger.lifecycle(message);
+        break;
+      case WARN:
+        logger.warn(message);
+        break;
+      default:
+        logger.error(message);
+    }
+  }
+}
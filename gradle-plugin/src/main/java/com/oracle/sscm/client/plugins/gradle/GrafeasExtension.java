@@ -0,0 +1,65 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+
+/**
+ * The grafeas { } block of a build script, the defaults of the tasks of the plugin. The names
+ * and defaults are those of the properties of the Maven goals.
+ */
+public abstract class GrafeasExtension {
+
+    // Grafeas server URL, UNKNOWN for none
+    public abstract Property<String> getGrafeasUrl();
+
+    public abstract Property<String> getProjectName();
+
+    public abstract Property<String> getInfraName();
+
+    public abstract Property<String> getBuilderName();
+
+    public abstract Property<String> getBuilderDescription();
+
+    public abstract Property<String> getBuilderVersion();
+
+    public abstract Property<String> getUserName();
+
+    public abstract Property<String> getUserEmailAddress();
+
+    public abstract Property<String> getProjectNumber();
+
+    public abstract MapProperty<String, String> getBuildOptions();
+
+    // Resources the build details and attestations are published for
+    public abstract ListProperty<String> getResourceUrls();
+
+    public abstract ListProperty<String> getBuildAuthorityNames();
+
+    public abstract ListProperty<String> getTestAuthorityNames();
+
+    public abstract Property<Integer> getSigningThreads();
+
+    // Files checksummed into the build provenance
+    public abstract ConfigurableFileCollection getBuildArtifacts();
+
+    public abstract ConfigurableFileCollection getSourceFiles();
+
+    // OWASP dependency-check report or CycloneDX/SPDX SBOM of the security scan
+    public abstract RegularFileProperty getDependencyReportJSON();
+
+    // dependency-check, cyclonedx, spdx or auto
+    public abstract Property<String> getReportFormat();
+
+    public abstract Property<String> getScanAuthorityName();
+
+    public abstract Property<Double> getMinCvssScore();
+
+    public abstract Property<String> getMinConfidence();
+
+    public abstract RegularFileProperty getSuppressionFile();
+
+    public abstract Property<Boolean> getDebugLog();
+}
@@ -0,0 +1,123 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.gradle.api.Action;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.Transformer;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskProvider;
+
+/**
+ * Gradle counterpart of the Maven goals, applied with id 'oracle.sscm.grafeas':
+ *
+ *   grafeasHashFiles        digests of the build artifacts and source files, cacheable
+ *   grafeasBuildDetails     build details and build attestations, as the buildDetails goal
+ *   grafeasTestAttestation  test attestations, as the testAttestation goal
+ *   grafeasSecurityScan     vulnerabilities of a dependency-check report or SBOM, as the securityScan goal
+ *
+ * The tasks are configured by the grafeas { } block, with the defaults of the Maven goals.
+ */
+public class GrafeasPlugin implements Plugin<Project> {
+
+    public static final String EXTENSION_NAME = "grafeas";
+    public static final String TASK_GROUP = "grafeas";
+    private static final String OUTPUT_DIRECTORY = "grafeas/";
+
+    public void apply(Project project) {
+        final GrafeasExtension extension = project.getExtensions().create(EXTENSION_NAME, GrafeasExtension.class);
+        final ProjectLayout layout = project.getLayout();
+
+        extension.getInfraName().convention("build-infrastructure");
+        extension.getProjectName().convention(project.getName());
+        extension.getBuilderName().convention(project.getName());
+        extension.getBuilderDescription().convention("Oracle Grafeas Build Details Metadata Generator");
+        extension.getBuildAuthorityNames().convention(Collections.singletonList("Build"));
+        extension.getTestAuthorityNames().convention(Collections.singletonList("Test"));
+        extension.getSigningThreads().convention(4);
+        extension.getDependencyReportJSON().convention(layout.getBuildDirectory().file("reports/dependency-check-report.json"));
+        extension.getScanAuthorityName().convention("SecurityScan");
+        extension.getReportFormat().convention("auto");
+        extension.getMinCvssScore().convention(0.0);
+        extension.getMinConfidence().convention("LOW");
+        extension.getDebugLog().convention(false);
+
+        final TaskProvider<HashFilesTask> hashFiles = project.getTasks().register("grafeasHashFiles", HashFilesTask.class,
+            new Action<HashFilesTask>() {
+                public void execute(HashFilesTask task) {
+                    task.setGroup(TASK_GROUP);
+                    task.setDescription("Computes the digests of the build artifacts and source files.");
+                    task.getArtifacts().from(extension.getBuildArtifacts());
+                    task.getSourceFiles().from(extension.getSourceFiles());
+                    task.getBaseDirectory().set(layout.getProjectDirectory());
+                    task.getDigestsFile().set(layout.getBuildDirectory().file(OUTPUT_DIRECTORY + "file-digests.txt"));
+                }
+            });
+
+        project.getTasks().register("grafeasBuildDetails", BuildDetailsTask.class, new Action<BuildDetailsTask>() {
+            public void execute(BuildDetailsTask task) {
+                configurePublishTask(task, extension, layout, "build-details.receipt");
+                task.setDescription("Publishes the build details and build attestations to Grafeas.");
+                task.getProjectName().set(extension.getProjectName());
+                task.getInfraName().set(extension.getInfraName());
+                task.getBuilderName().set(extension.getBuilderName());
+                task.getBuilderDescription().set(extension.getBuilderDescription());
+                task.getBuilderVersion().set(extension.getBuilderVersion());
+                task.getUserName().set(extension.getUserName());
+                task.getUserEmailAddress().set(extension.getUserEmailAddress());
+                task.getProjectNumber().set(extension.getProjectNumber());
+                task.getBuildOptions().set(extension.getBuildOptions());
+                task.getResourceUrls().set(extension.getResourceUrls());
+                task.getAuthorityNames().set(extension.getBuildAuthorityNames());
+                task.getSigningThreads().set(extension.getSigningThreads());
+                task.getDigestsFile().set(hashFiles.flatMap(new Transformer<Provider<RegularFile>, HashFilesTask>() {
+                    public Provider<RegularFile> transform(HashFilesTask hashTask) {
+                        return hashTask.getDigestsFile();
+                    }
+                }));
+                task.getBaseDirectory().set(layout.getProjectDirectory());
+            }
+        });
+
+        project.getTasks().register("grafeasTestAttestation", TestAttestationTask.class, new Action<TestAttestationTask>() {
+            public void execute(TestAttestationTask task) {
+                configurePublishTask(task, extension, layout, "test-attestation.receipt");
+                task.setDescription("Publishes the test attestations to Grafeas.");
+                task.getProjectName().set(extension.getProjectName());
+                task.getInfraName().set(extension.getInfraName());
+                task.getResourceUrls().set(extension.getResourceUrls());
+                task.getAuthorityNames().set(extension.getTestAuthorityNames());
+                task.getSigningThreads().set(extension.getSigningThreads());
+            }
+        });
+
+        project.getTasks().register("grafeasSecurityScan", SecurityScanTask.class, new Action<SecurityScanTask>() {
+            public void execute(SecurityScanTask task) {
+                configurePublishTask(task, extension, layout, "security-scan.receipt");
+                task.setDescription("Publishes the vulnerabilities of a dependency-check report or SBOM to Grafeas.");
+                task.getDependencyReportJSON().set(extension.getDependencyReportJSON());
+                task.getResourceUrl().set(extension.getResourceUrls().map(new Transformer<String, List<String>>() {
+                    public String transform(List<String> resourceUrls) {
+                        return resourceUrls.isEmpty() ? "UNKNOWN" : resourceUrls.get(0);
+                    }
+                }));
+                task.getAuthorityName().set(extension.getScanAuthorityName());
+                task.getReportFormat().set(extension.getReportFormat());
+                task.getMinCvssScore().set(extension.getMinCvssScore());
+                task.getMinConfidence().set(extension.getMinConfidence());
+                task.getSuppressionFile().set(extension.getSuppressionFile());
+            }
+        });
+    }
+
+    private static void configurePublishTask(GrafeasPublishTask task, GrafeasExtension extension, ProjectLayout layout, String receipt) {
+        task.setGroup(TASK_GROUP);
+        task.getGrafeasUrl().set(extension.getGrafeasUrl());
+        task.getDebugLog().set(extension.getDebugLog());
+        task.getReceiptFile().set(layout.getBuildDirectory().file(OUTPUT_DIRECTORY + receipt));
+    }
+}
@@ -0,0 +1,61 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.OutputFile;
+
+import com.oracle.sscm.client.log.GrafeasLog;
+
+/**
+ * Base of the tasks publishing metadata to a Grafeas server.
+ *
+ * Publishing is a side effect, so these tasks are never taken from the build cache. Each of
+ * them writes a receipt of what it published instead, which makes Gradle skip the task while
+ * its inputs, the server and the digests of the files, are those of the last publication.
+ */
+public abstract class GrafeasPublishTask extends DefaultTask {
+
+    @Input
+    public abstract Property<String> getGrafeasUrl();
+
+    @Input
+    public abstract Property<Boolean> getDebugLog();
+
+    // Record of the last publication
+    @OutputFile
+    public abstract RegularFileProperty getReceiptFile();
+
+    protected GrafeasLog createLog() {
+        return GradleLogSink.createLog(getLogger(), getDebugLog().getOrElse(false));
+    }
+
+    // Grafeas server URL without its trailing slash
+    //
+    protected String serverUrl() {
+        String url = getGrafeasUrl().get();
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    // Write one line per object published, after the server and the time of publication
+    //
+    protected void writeReceipt(List<String> published) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        lines.add("server " + serverUrl());
+        lines.add("time " + Instant.now());
+        for (String line : published) {
+            lines.add("published " + line);
+        }
+        File receipt = getReceiptFile().get().getAsFile();
+        Files.write(receipt.toPath(), lines, StandardCharsets.UTF_8);
+    }
+}
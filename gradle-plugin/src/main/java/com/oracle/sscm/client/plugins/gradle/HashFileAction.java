@@ -0,0 +1,55 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import com.oracle.sscm.client.grafeas.GrafeasUtilities;
+
+/**
+ * Digests a single artifact or source file in a Gradle worker, writing its line of the digests
+ * file to its own output file, since a work action returns nothing.
+ */
+public abstract class HashFileAction implements WorkAction<HashFileAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+
+        // FileDigests.ARTIFACT or FileDigests.SOURCE
+        Property<String> getKind();
+
+        RegularFileProperty getFile();
+
+        DirectoryProperty getBaseDirectory();
+
+        RegularFileProperty getOutputFile();
+    }
+
+    public void execute() {
+        Parameters parameters = getParameters();
+        File file = parameters.getFile().get().getAsFile();
+        String kind = parameters.getKind().get();
+
+        String digest;
+        if (FileDigests.ARTIFACT.equals(kind)) {
+            digest = GrafeasUtilities.createChecksumForFile(file.getPath());
+        } else {
+            byte[] hash = GrafeasUtilities.createHashForFile(file.getPath());
+            digest = (hash != null) ? FileDigests.toHex(hash) : FileDigests.UNKNOWN_DIGEST;
+        }
+
+        String line = FileDigests.line(kind, digest, file, parameters.getBaseDirectory().get().getAsFile());
+        try {
+            Files.write(parameters.getOutputFile().get().getAsFile().toPath(), Collections.singletonList(line), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the digest of " + file, e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.gradle.api.Action;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Computes the digests of the build artifacts and source files, one Gradle worker per file,
+ * so that files are hashed in parallel up to the --max-workers limit of the build.
+ *
+ * The digests only depend on the content of the files and on their paths relative to the
+ * project, so the task is up to date when no file changed and its output can be taken from
+ * the build cache.
+ */
+@CacheableTask
+public abstract class HashFilesTask extends DefaultTask {
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getArtifacts();
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getSourceFiles();
+
+    // Paths are written relative to this directory, the project directory
+    @Internal
+    public abstract DirectoryProperty getBaseDirectory();
+
+    @OutputFile
+    public abstract RegularFileProperty getDigestsFile();
+
+    @Inject
+    public abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void hashFiles() throws IOException {
+        File partsDirectory = getTemporaryDir();
+        File[] stale = partsDirectory.listFiles();
+        if (stale != null) {
+            for (File part : stale) {
+                Files.delete(part.toPath());
+            }
+        }
+
+        WorkQueue queue = getWorkerExecutor().noIsolation();
+        List<File> parts = new ArrayList<File>();
+        for (File artifact : getArtifacts().getFiles()) {
+            parts.add(submit(queue, FileDigests.ARTIFACT, artifact, new File(partsDirectory, parts.size() + ".digest")));
+        }
+        for (File source : getSourceFiles().getFiles()) {
+            parts.add(submit(queue, FileDigests.SOURCE, source, new File(partsDirectory, parts.size() + ".digest")));
+        }
+        queue.await();
+
+        List<String> lines = new ArrayList<String>(parts.size());
+        for (File part : parts) {
+            lines.addAll(Files.readAllLines(part.toPath(), StandardCharsets.UTF_8));
+        }
+        FileDigests.write(getDigestsFile().get().getAsFile(), lines);
+        getLogger().info("Computed the digests of {} files", lines.size());
+    }
+
+    private File submit(WorkQueue queue, final String kind, final File file, final File part) {
+        queue.submit(HashFileAction.class, new Action<HashFileAction.Parameters>() {
+            public void execute(HashFileAction.Parameters parameters) {
+                parameters.getKind().set(kind);
+                parameters.getFile().set(file);
+                parameters.getBaseDirectory().set(getBaseDirectory());
+                parameters.getOutputFile().set(part);
+            }
+        });
+        return part;
+    }
+}
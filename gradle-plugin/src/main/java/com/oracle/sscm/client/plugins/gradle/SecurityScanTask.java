@@ -0,0 +1,71 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.oracle.sscm.client.plugins.maven.GrafeasSecurityScanMojo;
+
+/**
+ * Publishes the vulnerabilities of an OWASP dependency-check report or of a CycloneDX or SPDX
+ * SBOM, with the scan logic of the securityScan goal. The scan runs again only when the report, the filter or the server change.
+ */
+public abstract class SecurityScanTask extends GrafeasPublishTask {
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getDependencyReportJSON();
+
+    @Input
+    public abstract Property<String> getResourceUrl();
+
+    @Input
+    public abstract Property<String> getAuthorityName();
+
+    @Input
+    public abstract Property<String> getReportFormat();
+
+    @Input
+    public abstract Property<Double> getMinCvssScore();
+
+    @Input
+    public abstract Property<String> getMinConfidence();
+
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSuppressionFile();
+
+    @TaskAction
+    public void scan() throws IOException {
+        GrafeasSecurityScanMojo mojo = new GrafeasSecurityScanMojo();
+        mojo.setDependencyReportJSON(getDependencyReportJSON().get().getAsFile().getPath());
+        mojo.setGrafeasUrl(serverUrl());
+        mojo.setResourceUrl(getResourceUrl().get());
+        mojo.setAuthorityName(getAuthorityName().get());
+        mojo.setReportFormat(getReportFormat().get());
+        mojo.setMinCvssScore(getMinCvssScore().get());
+        mojo.setMinConfidence(getMinConfidence().get());
+        if (getSuppressionFile().isPresent()) {
+            mojo.setSuppressionFile(getSuppressionFile().get().getAsFile().getPath());
+        }
+        mojo.setDebugLog(String.valueOf(getDebugLog().getOrElse(false)));
+        try {
+            mojo.execute();
+        } catch (MojoExecutionException e) {
+            throw new GradleException(e.getMessage(), e);
+        }
+        writeReceipt(Collections.singletonList("securityScan " + getAuthorityName().get() + " " + getResourceUrl().get()));
+    }
+}
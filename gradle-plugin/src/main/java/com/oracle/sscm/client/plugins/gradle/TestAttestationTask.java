@@ -0,0 +1,72 @@
+package com.oracle.sscm.client.plugins.gradle;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.TaskAction;
+
+import io.grafeas.ApiException;
+
+import com.oracle.sscm.client.grafeas.GrafeasUtilities;
+import com.oracle.sscm.client.log.GrafeasLog;
+
+/**
+ * Publishes the test attestations of the resources, as the testAttestation goal does.
+ * Declare the test task as an input, for example with inputs.files(test), so that the
+ * attestations are published again when the tests run again.
+ */
+public abstract class TestAttestationTask extends GrafeasPublishTask {
+
+    @Input
+    public abstract Property<String> getProjectName();
+
+    @Input
+    public abstract Property<String> getInfraName();
+
+    @Input
+    public abstract ListProperty<String> getResourceUrls();
+
+    @Input
+    public abstract ListProperty<String> getAuthorityNames();
+
+    @Input
+    public abstract Property<Integer> getSigningThreads();
+
+    @TaskAction
+    public void publish() throws IOException {
+        GrafeasLog logger = createLog();
+        List<String> resources = getResourceUrls().get();
+        List<String> authorities = getAuthorityNames().get();
+        if (resources.isEmpty()) {
+            throw new GradleException("No resourceUrls to attest");
+        }
+
+        List<String> published = new ArrayList<String>();
+        try {
+            logger.info("Creating test Attestation Occurrence.");
+            GrafeasUtilities utils = new GrafeasUtilities(serverUrl(), getProjectName().get());
+            utils.setInfraName(getInfraName().get());
+            utils.setLog(logger);
+            if (resources.size() == 1 && authorities.size() == 1) {
+                utils.createAttestationOccurrence(authorities.get(0), resources.get(0));
+            } else {
+                utils.createAttestationOccurrences(authorities, resources, getSigningThreads().get());
+            }
+            for (String authority : authorities) {
+                for (String resource : resources) {
+                    published.add("attestation " + authority + " " + resource);
+                }
+            }
+        } catch (ApiException e) {
+            throw new GradleException("Error creating test attestations: " + e.getCode() + " " + e.getResponseBody(), e);
+        } finally {
+            logger.logSummary();
+        }
+        writeReceipt(published);
+    }
+}
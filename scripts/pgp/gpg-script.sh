@@ -62,11 +62,14 @@ init_keyring() {
 
   # For each authority, check whether we have a key. If an authority
   # key doesn't exist, generate it, or (if --check-only) return an error.
+  # The key list is read once for all authorities.
 
+  local keys=
+  keys=$($gpg_cmd --list-keys --with-colons 2>/dev/null)
   local authority=
   for authority in $(gpg_get_authority_names)
   do
-    if $gpg_cmd --list-keys --with-colons | grep ":${authority}:" > /dev/null; then
+    if echo "$keys" | grep ":${authority}:" > /dev/null; then
       if [[ "$check_only" != "true" ]] ; then
         echo "Key for '$authority' already exists."
       fi
@@ -112,13 +115,27 @@ gpg_get_authority_key() {
   return 0
 }
 
-# Sign a string, base64 encode the result, and return it
+# List every authority with its key's short id, one "<authority-name> <keyid>" per line,
+# reading the key list once. Keys are selected and their short id taken as in
+# gpg_get_authority_key: "pub:u:2048:1:" records, characters 22 to 29.
+gpg_list_authorities() {
+  $gpg_cmd --list-keys --with-colons 2>/dev/null | awk '
+    /^pub:/ { keyid = (index($0, "pub:u:2048:1:") == 1) ? substr($0, 22, 8) : "" }
+    /^uid:/ && keyid != "" { split($0, fields, ":"); print fields[10] " " keyid; keyid = "" }'
+  return 0
+}
+
+# Sign a string, base64 encode the result, and return it.
+# The key id is optional; when the caller already knows it, the key lookup is skipped.
 gpg_sign() {
   local authority="$1"
   local data="$2"
+  local keyid="$3"
   local tmp=
-  tmp=$(gpg_get_authority_key "$authority") || return 1
-  tmp=$(echo "$data" | $gpg_batch_cmd --passphrase "${AUTHORITY_PASSPHRASES[$authority]}" --local-user "$authority" --sign --armor) || return 1
+  if [[ -z "$keyid" ]] ; then
+    keyid=$(gpg_get_authority_key "$authority") || return 1
+  fi
+  tmp=$(echo "$data" | $gpg_batch_cmd --passphrase "${AUTHORITY_PASSPHRASES[$authority]}" --local-user "$keyid" --sign --armor) || return 1
   echo "$tmp" | base64 --wrap=0
   return 0
 }
@@ -143,6 +160,26 @@ gpg_getdata() {
   return $?
 }
 
+# Verify a signature and print the short id of its key on the first line, followed by
+# the signed data, with a single gpg run
+gpg_verify_signature() {
+  local status=
+  local data=
+  local keyid=
+  status=$(mktemp) || return 1
+  data=$(echo "$1" | base64 --decode | $gpg_cmd --status-fd 3 --decrypt 3> "$status" 2> /dev/null)
+  if [ $? -ne 0 ] ; then
+    rm -f "$status"
+    return 1
+  fi
+  keyid=$(grep "^\[GNUPG:\] VALIDSIG " "$status" | cut -d ' ' -f 3)
+  rm -f "$status"
+  [[ -n "$keyid" ]] || return 1
+  echo "${keyid: -8}"
+  echo "$data"
+  return 0
+}
+
 gpg_test() {
   #
   # TODO: add test for gpg_getkeyid and gpg_getdata
@@ -229,8 +266,11 @@ print_usage() {
   printf "$0 --get-authority-keyid <authority_name>\n"
   printf "Get the public key id for the specified authority.\n\n"
 
-  printf "$0 --sign <authority_name> \"<string_to_be_signed>\"\n"
-  printf "Sign a string using the key of the named authority.\n\n"
+  printf "$0 --list-authorities\n"
+  printf "Get the name and public key id of every authority in the keyring, one per line.\n\n"
+
+  printf "$0 --sign <authority_name> \"<string_to_be_signed>\" [<key_id>]\n"
+  printf "Sign a string using the key of the named authority, or the given key id of that authority.\n\n"
 
   printf "$0 --verify \"<base64_encoded_signature>\"\n"
   printf "Verify a signature. Returns 0 or 1 to indicate signature validity.\n\n"
@@ -241,6 +281,10 @@ print_usage() {
 
   printf "$0 --get-signature-data \"<base64_encoded_signature>\"\n"
   printf "Get the signed data from the encoded signature. Returns 0 or 1 to indicate signature validity.\n\n"
+
+  printf "$0 --verify-signature \"<base64_encoded_signature>\"\n"
+  printf "Verify a signature and get the short ID of its key on the first line, followed by the signed data.\n"
+  printf "Returns 0 or 1 to indicate signature validity.\n\n"
 }
 
 #
@@ -259,7 +303,9 @@ case "$1" in
                         ;;
 --get-authority-keyid)  gpg_get_authority_key "$2" || exit 1
                         ;;
---sign)                 gpg_sign "$2" "$3" || exit 1
+--list-authorities)     gpg_list_authorities || exit 1
+                        ;;
+--sign)                 gpg_sign "$2" "$3" "$4" || exit 1
                         ;;
 --verify)               gpg_verify "$2" || exit 1
                         ;;
@@ -267,6 +313,8 @@ case "$1" in
                         ;;
 --get-signature-data)   gpg_getdata "$2" || exit 1
                         ;;
+--verify-signature)     gpg_verify_signature "$2" || exit 1
+                        ;;
 --test)                 gpg_test || exit 1
                         ;;
 *)                      print_usage ; exit 1
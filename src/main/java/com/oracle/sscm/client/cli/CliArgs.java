@@ -0,0 +1,186 @@
+/**
+ * CLI Args
+ * Options of a command line, parsed without reflection.
+ *
+ */
+
+
+package com.oracle.sscm.client.cli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Options of the form --name value or --name=value, named as the properties of the Maven goals
+ * without their prefix, for example --grafeasUrl. An option given more than once, or a value
+ * separated by commas, is a list. An option without a value, or followed by another option, is
+ * a flag. Every option read is recorded, so that unknown options can be reported.
+ */
+public class CliArgs {
+
+    private final Map<String, List<String>> options = new LinkedHashMap<String, List<String>>();
+    private final List<String> positional = new ArrayList<String>();
+    private final Set<String> read = new TreeSet<String>();
+
+    /**
+     * @throws IllegalArgumentException if an argument is not an option
+     */
+    public CliArgs(List<String> args) {
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (!arg.startsWith("--") || arg.length() == 2) {
+                positional.add(arg);
+                continue;
+            }
+            String name = arg.substring(2);
+            String value = null;
+            int eq = name.indexOf('=');
+            if (eq >= 0) {
+                value = name.substring(eq + 1);
+                name = name.substring(0, eq);
+            } else if (i + 1 < args.size() && !args.get(i + 1).startsWith("--")) {
+                value = args.get(++i);
+            }
+            List<String> values = options.get(name);
+            if (values == null) {
+                values = new ArrayList<String>();
+                options.put(name, values);
+            }
+            if (value != null) {
+                values.add(value);
+            }
+        }
+    }
+
+    /**
+     * Get the last value of the option, or the default value if the option is not given
+     */
+    public String get(String name, String defaultValue) {
+        List<String> values = getValues(name);
+        return values.isEmpty() ? defaultValue : values.get(values.size() - 1);
+    }
+
+    /**
+     * Get the value of a required option
+     *
+     * @throws IllegalArgumentException if the option is not given
+     */
+    public String require(String name) {
+        String value = get(name, null);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing option --" + name);
+        }
+        return value;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = get(name, null);
+        try {
+            return (value == null) ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " is not an integer: " + value);
+        }
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = get(name, null);
+        try {
+            return (value == null) ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " is not an integer: " + value);
+        }
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = get(name, null);
+        try {
+            return (value == null) ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * Get an integer option, with a default value given as the defaultValue of a goal parameter
+     */
+    public int getInt(String name, String defaultValue) {
+        return getInt(name, Integer.parseInt(defaultValue));
+    }
+
+    public long getLong(String name, String defaultValue) {
+        return getLong(name, Long.parseLong(defaultValue));
+    }
+
+    public double getDouble(String name, String defaultValue) {
+        return getDouble(name, Double.parseDouble(defaultValue));
+    }
+
+    /**
+     * Return true if the flag is given without a value or with the value true
+     */
+    public boolean getFlag(String name) {
+        read.add(name);
+        List<String> values = options.get(name);
+        if (values == null) {
+            return false;
+        }
+        return values.isEmpty() || "true".equals(values.get(values.size() - 1));
+    }
+
+    /**
+     * Get the values of a list option, split at commas, empty if the option is not given
+     */
+    public List<String> getList(String name) {
+        List<String> list = new ArrayList<String>();
+        for (String value : getValues(name)) {
+            for (String item : value.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    list.add(item.trim());
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Get the values of an option of the form key=value
+     */
+    public Map<String, String> getMap(String name) {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (String entry : getList(name)) {
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Option --" + name + " is not of the form key=value: " + entry);
+            }
+            map.put(entry.substring(0, eq), entry.substring(eq + 1));
+        }
+        return map;
+    }
+
+    /**
+     * Get the arguments that are not options
+     */
+    public List<String> getPositional() {
+        return Collections.unmodifiableList(positional);
+    }
+
+    /**
+     * Get the options given but never read
+     */
+    public Set<String> getUnknownOptions() {
+        Set<String> unknown = new TreeSet<String>(options.keySet());
+        unknown.removeAll(read);
+        return unknown;
+    }
+
+    private List<String> getValues(String name) {
+        read.add(name);
+        List<String> values = options.get(name);
+        return (values == null) ? Collections.<String>emptyList() : values;
+    }
+}
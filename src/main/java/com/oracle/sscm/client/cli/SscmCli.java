@@ -0,0 +1,285 @@
+/**
+ * SSCM CLI
+ * Standalone command line entry point of the Maven goals and of the Grafeas queries.
+ *
+ */
+
+
+package com.oracle.sscm.client.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import net.minidev.json.JSONObject;
+
+import com.oracle.sscm.client.grafeas.GrafeasFilter;
+import com.oracle.sscm.client.grafeas.GrafeasQueryClient;
+import com.oracle.sscm.client.plugins.maven.GoalDefaults;
+import com.oracle.sscm.client.plugins.maven.GrafeasBuildMojo;
+import com.oracle.sscm.client.plugins.maven.GrafeasNvdNotesMojo;
+import com.oracle.sscm.client.plugins.maven.GrafeasSbasCheckMojo;
+import com.oracle.sscm.client.plugins.maven.GrafeasSecurityScanMojo;
+import com.oracle.sscm.client.plugins.maven.GrafeasTestMojo;
+import com.oracle.sscm.client.scan.VulnerabilityIndex;
+
+/**
+ * Runs the goals without Maven, for build systems that don't use it and for a native executable.
+ *
+ *   sscm-client <command> [--option value ...]
+ *
+ * The options of a command are the properties of its goal without the goal prefix, for example
+ * securityScan.grafeasUrl is --grafeasUrl, and have the same defaults. Goals are configured
+ * through their setters and commands are dispatched by name, so nothing is looked up by
+ * reflection at startup and the whole entry point is visible to an ahead of time compiler.
+ *
+ * Exit status: 0 on success, 1 if the command fails, 2 on a usage error.
+ */
+public final class SscmCli {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILURE = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private SscmCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(Arrays.asList(args), System.out, System.err));
+    }
+
+    /**
+     * Run a command line and return its exit status
+     */
+    public static int run(List<String> args, PrintStream out, PrintStream err) {
+        if (args.isEmpty() || "help".equals(args.get(0)) || "--help".equals(args.get(0))) {
+            usage(args.isEmpty() ? err : out);
+            return args.isEmpty() ? EXIT_USAGE : EXIT_OK;
+        }
+        String command = args.get(0);
+        try {
+            CliArgs options = new CliArgs(args.subList(1, args.size()));
+            if ("buildDetails".equals(command)) {
+                buildDetails(options);
+            } else if ("securityScan".equals(command)) {
+                securityScan(options);
+            } else if ("attestation".equals(command) || "testAttestation".equals(command)) {
+                attestation(options);
+            } else if ("sbasCheck".equals(command)) {
+                sbasCheck(options);
+            } else if ("nvdNotes".equals(command)) {
+                nvdNotes(options);
+            } else if ("query".equals(command)) {
+                query(options, out);
+            } else if ("indexQuery".equals(command)) {
+                indexQuery(options, out);
+            } else {
+                err.println("Unknown command: " + command);
+                usage(err);
+                return EXIT_USAGE;
+            }
+            return EXIT_OK;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println("Run 'sscm-client help' for the options of the commands.");
+            return EXIT_USAGE;
+        } catch (MojoFailureException e) {
+            err.println(e.getMessage());
+            return EXIT_FAILURE;
+        } catch (MojoExecutionException e) {
+            err.println(e.getMessage());
+            if (e.getCause() != null) {
+                err.println("Caused by: " + e.getCause());
+            }
+            return EXIT_FAILURE;
+        } catch (IllegalStateException e) {
+            err.println(e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static void buildDetails(CliArgs options) throws MojoExecutionException {
+        GrafeasBuildMojo mojo = new GrafeasBuildMojo();
+        mojo.setGrafeasUrl(options.get("grafeasUrl", GoalDefaults.UNKNOWN));
+        mojo.setProjectName(options.get("projectName", null));
+        mojo.setInfraName(options.get("infraName", GoalDefaults.BUILD_INFRA_NAME));
+        mojo.setAuthorityName(options.get("authorityName", GoalDefaults.BUILD_AUTHORITY_NAME));
+        mojo.setBuilderName(options.get("builderName", null));
+        mojo.setBuilderDescription(options.get("builderDescription", GoalDefaults.BUILDER_DESCRIPTION));
+        mojo.setBuilderVersion(options.get("builderVersion", null));
+        mojo.setResourceUrl(options.get("resourceUrl", null));
+        mojo.setResourceUrls(options.getList("resourceUrls"));
+        mojo.setAuthorityNames(options.getList("authorityNames"));
+        mojo.setSigningThreads(options.getInt("signingThreads", GoalDefaults.SIGNING_THREADS));
+        mojo.setUserName(options.get("userName", null));
+        mojo.setUserEmailAddress(options.get("userEmailAddress", null));
+        mojo.setBuildOptions(options.getMap("buildOptions"));
+        mojo.setBuildPublicKey(options.get("buildPublicKey", null));
+        mojo.setBuildKeyId(options.get("buildKeyId", null));
+        mojo.setBuildArtifacts(options.getList("buildArtifacts"));
+        mojo.setSourceFiles(options.getList("sourceFiles"));
+        mojo.setProjectNumber(options.get("projectNumber", null));
+        mojo.setLargeFileThreshold(options.getLong("largeFileThreshold", GoalDefaults.LARGE_FILE_THRESHOLD));
+        mojo.setHashChunkSize(options.getInt("hashChunkSize", GoalDefaults.HASH_CHUNK_SIZE));
+        mojo.setArchiveEntries(options.getFlag("archiveEntries"));
+        mojo.setArchiveDigestPatterns(options.getList("archiveDigestPatterns"));
+        mojo.setDebugLog(String.valueOf(options.getFlag("debugLog")));
+        mojo.setTimeBudget(options.getLong("timeBudget", GoalDefaults.TIME_BUDGET));
+        mojo.setHedgePercentile(options.getDouble("hedgePercentile", GoalDefaults.HEDGE_PERCENTILE));
+        mojo.setTraceFile(options.get("traceFile", null));
+        mojo.setWireDebug(options.getFlag("wireDebug"));
+        mojo.setFingerprintFile(options.get("fingerprintFile", null));
+        mojo.setForce(options.getFlag("force"));
+        checkOptions(options);
+        mojo.execute();
+    }
+
+    private static void securityScan(CliArgs options) throws MojoExecutionException {
+        GrafeasSecurityScanMojo mojo = new GrafeasSecurityScanMojo();
+        mojo.setDependencyReportJSON(options.get("dependencyReportJSON", GoalDefaults.DEPENDENCY_REPORT_JSON));
+        mojo.setGrafeasUrl(options.get("grafeasUrl", GoalDefaults.UNKNOWN));
+        mojo.setResourceUrl(options.get("resourceUrl", GoalDefaults.UNKNOWN));
+        mojo.setAuthorityName(options.get("authorityName", GoalDefaults.SCAN_AUTHORITY_NAME));
+        mojo.setMinCvssScore(options.getDouble("minCvssScore", GoalDefaults.MIN_CVSS_SCORE));
+        mojo.setMinConfidence(options.get("minConfidence", GoalDefaults.MIN_CONFIDENCE));
+        mojo.setSuppressionFile(options.get("suppressionFile", null));
+        mojo.setReportFormat(options.get("reportFormat", GoalDefaults.REPORT_FORMAT));
+        mojo.setExportFile(options.get("exportFile", null));
+        mojo.setExportRollSize(options.getLong("exportRollSize", GoalDefaults.EXPORT_ROLL_SIZE));
+        mojo.setIndexDir(options.get("indexDir", null));
+        mojo.setIndexCompactSegments(options.getInt("indexCompactSegments", GoalDefaults.INDEX_COMPACT_SEGMENTS));
+        mojo.setDebugLog(String.valueOf(options.getFlag("debugLog")));
+        mojo.setTimeBudget(options.getLong("timeBudget", GoalDefaults.TIME_BUDGET));
+        mojo.setHedgePercentile(options.getDouble("hedgePercentile", GoalDefaults.HEDGE_PERCENTILE));
+        mojo.setTraceFile(options.get("traceFile", null));
+        checkOptions(options);
+        mojo.execute();
+    }
+
+    private static void attestation(CliArgs options) throws MojoExecutionException {
+        GrafeasTestMojo mojo = new GrafeasTestMojo();
+        mojo.setProjectName(options.get("projectName", GoalDefaults.UNKNOWN));
+        mojo.setGrafeasUrl(options.get("grafeasUrl", GoalDefaults.UNKNOWN));
+        mojo.setResourceUrl(options.get("resourceUrl", GoalDefaults.UNKNOWN));
+        mojo.setAuthorityName(options.get("authorityName", GoalDefaults.TEST_AUTHORITY_NAME));
+        mojo.setResourceUrls(options.getList("resourceUrls"));
+        mojo.setAuthorityNames(options.getList("authorityNames"));
+        mojo.setSigningThreads(options.getInt("signingThreads", GoalDefaults.SIGNING_THREADS));
+        mojo.setDebugLog(String.valueOf(options.getFlag("debugLog")));
+        mojo.setTimeBudget(options.getLong("timeBudget", GoalDefaults.TIME_BUDGET));
+        mojo.setHedgePercentile(options.getDouble("hedgePercentile", GoalDefaults.HEDGE_PERCENTILE));
+        mojo.setTraceFile(options.get("traceFile", null));
+        mojo.setWireDebug(options.getFlag("wireDebug"));
+        checkOptions(options);
+        mojo.execute();
+    }
+
+    private static void sbasCheck(CliArgs options) throws MojoExecutionException, MojoFailureException {
+        GrafeasSbasCheckMojo mojo = new GrafeasSbasCheckMojo();
+        mojo.setGrafeasUrl(options.get("grafeasUrl", GoalDefaults.UNKNOWN));
+        mojo.setProjectName(options.require("projectName"));
+        mojo.setResourceUrl(options.require("resourceUrl"));
+        mojo.setClusterName(options.require("clusterName"));
+        mojo.setAuthorityFile(options.get("authorityFile", null));
+        mojo.setEvaluatePolicy(!"false".equals(options.get("evaluatePolicy", GoalDefaults.EVALUATE_POLICY)));
+        mojo.setThreads(options.getInt("threads", GoalDefaults.SBAS_THREADS));
+        mojo.setDebugLog(String.valueOf(options.getFlag("debugLog")));
+        mojo.setTimeBudget(options.getLong("timeBudget", GoalDefaults.TIME_BUDGET));
+        mojo.setHedgePercentile(options.getDouble("hedgePercentile", GoalDefaults.HEDGE_PERCENTILE));
+        checkOptions(options);
+        mojo.execute();
+    }
+
+    private static void nvdNotes(CliArgs options) throws MojoExecutionException {
+        GrafeasNvdNotesMojo mojo = new GrafeasNvdNotesMojo();
+        mojo.setFeedFile(options.require("feedFile"));
+        mojo.setGrafeasUrl(options.require("grafeasUrl"));
+        mojo.setStateFile(options.get("stateFile", GoalDefaults.NVD_STATE_FILE));
+        mojo.setThreads(options.getInt("threads", GoalDefaults.NVD_THREADS));
+        mojo.setBatchSize(options.getInt("batchSize", GoalDefaults.NVD_BATCH_SIZE));
+        mojo.setDebugLog(String.valueOf(options.getFlag("debugLog")));
+        mojo.setTimeBudget(options.getLong("timeBudget", GoalDefaults.TIME_BUDGET));
+        mojo.setHedgePercentile(options.getDouble("hedgePercentile", GoalDefaults.HEDGE_PERCENTILE));
+        checkOptions(options);
+        mojo.execute();
+    }
+
+    // Print the matching notes or occurrences, one JSON object per line
+    //
+    private static void query(CliArgs options, PrintStream out) {
+        GrafeasQueryClient client = new GrafeasQueryClient(options.require("grafeasUrl"));
+        String projectName = options.require("projectName");
+        client.setPageSize(options.getInt("pageSize", client.getPageSize()));
+        if (options.getFlag("debugLog"))
+            client.enableDebugging();
+        boolean notes = options.getFlag("notes");
+        GrafeasFilter filter = new GrafeasFilter()
+            .resourceUrl(options.get("resourceUrl", null))
+            .kind(options.get("kind", null))
+            .noteName(options.get("noteName", null));
+        checkOptions(options);
+
+        Iterable<JSONObject> results = notes
+            ? client.listNotes(projectName, filter)
+            : client.listOccurrences(projectName, filter);
+        for (JSONObject result : results) {
+            out.println(result.toJSONString());
+        }
+        out.flush();
+    }
+
+    // Print the artifacts affected by the vulnerabilities, one JSON object per line, from the
+    // local index without contacting the server
+    //
+    private static void indexQuery(CliArgs options, PrintStream out) {
+        VulnerabilityIndex index = new VulnerabilityIndex(new File(options.require("indexDir")));
+        List<String> vulnerabilities = options.getList("vulnerabilities");
+        boolean compact = options.getFlag("compact");
+        checkOptions(options);
+
+        try {
+            if (compact && !index.compact()) {
+                throw new IllegalStateException("The vulnerability index is being compacted by another build");
+            }
+            for (String vulnerability : vulnerabilities) {
+                for (VulnerabilityIndex.Entry entry : index.find(vulnerability)) {
+                    out.println(entry.toJSON().toJSONString());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read the vulnerability index " + index.getDirectory() + ": " + e.getMessage(), e);
+        }
+        out.flush();
+    }
+
+    private static void checkOptions(CliArgs options) {
+        if (!options.getUnknownOptions().isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: --" + String.join(", --", options.getUnknownOptions()));
+        }
+        if (!options.getPositional().isEmpty()) {
+            throw new IllegalArgumentException("Unexpected arguments: " + options.getPositional());
+        }
+    }
+
+    private static void usage(PrintStream out) {
+        out.println("Usage: sscm-client <command> [--option value ...]");
+        out.println();
+        out.println("Commands:");
+        out.println("  buildDetails    build details and build attestation occurrences (options of buildDetails.*)");
+        out.println("  securityScan    vulnerability occurrences of a dependency-check report or SBOM (options of securityScan.*)");
+        out.println("  attestation     attestation occurrences (options of testAttestation.*)");
+        out.println("  sbasCheck       check a deployment against its attestations (options of sbasCheck.*)");
+        out.println("  nvdNotes        create the CVE notes of an NVD feed (options of nvdNotes.*)");
+        out.println("  query           print notes or occurrences, one JSON object per line");
+        out.println("                  --grafeasUrl --projectName [--notes] [--resourceUrl] [--kind] [--noteName] [--pageSize]");
+        out.println("  indexQuery      print the artifacts affected by vulnerabilities from the index of securityScan.indexDir");
+        out.println("                  --indexDir [--vulnerabilities] [--compact]");
+        out.println();
+        out.println("List options are repeated or separated by commas, flags take no value.");
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Archive Entry Digester
+ * Per-entry provenance for jar, war, ear and zip artifacts.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import io.grafeas.v1alpha1.model.Artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.oracle.sscm.client.log.Tracer;
+
+/**
+ * Describes every entry of an archive as an artifact, so that reproducibility diffs can
+ * point at individual entries.
+ *
+ * The central directory is read with random access and the CRC-32 and size stored there are
+ * reused as entry checksum - crc32:<hex crc>:<size>. Only entries matching one of the digest
+ * patterns are decompressed, to record a SHA-256 checksum - sha256:<hex digest>.
+ */
+public class ArchiveEntryDigester {
+
+    public static final String CRC32_PREFIX = "crc32:";
+    public static final String SHA256_PREFIX = "sha256:";
+
+    private static final String[] ARCHIVE_EXTENSIONS = {".jar", ".war", ".ear", ".zip"};
+
+    // Entry names whose content is digested, globs where * matches any characters
+    private final List<Pattern> digestPatterns = new ArrayList<Pattern>();
+
+    /**
+     * @param digestPatterns globs of the entry names that need a SHA-256 digest, for example *.class
+     */
+    public ArchiveEntryDigester(List<String> digestPatterns) {
+        if (digestPatterns != null) {
+            for (String glob : digestPatterns) {
+                this.digestPatterns.add(Pattern.compile(GrafeasUtilities.globToRegex(glob.trim())));
+            }
+        }
+    }
+
+    /**
+     * Return true if the file is an archive whose entries can be described
+     */
+    public static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (String extension : ARCHIVE_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return an artifact per file entry of the archive, identified as jar:<archive URI>!/<entry name>
+     *
+     * @throws IOException if the archive can't be read
+     */
+    public List<Artifact> getEntryArtifacts(File archive) throws IOException {
+        List<Artifact> artifacts = new ArrayList<Artifact>();
+        String archiveUri = archive.toURI().toString();
+
+        Tracer.Span span = Tracer.start("hash", "archiveEntries").arg("file", archive.getPath());
+        ZipFile zip = new ZipFile(archive);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                String checksum;
+                if (needsDigest(entry.getName())) {
+                    checksum = SHA256_PREFIX + digest(zip, entry, buffer);
+                } else {
+                    checksum = CRC32_PREFIX + String.format("%08x", entry.getCrc()) + ":" + entry.getSize();
+                }
+
+                String id = "jar:" + archiveUri + "!/" + entry.getName();
+                Artifact artifact = new Artifact();
+                artifact.setId(id);
+                artifact.setChecksum(checksum);
+                List<String> names = new ArrayList<String>();
+                names.add(id);
+                artifact.setNames(names);
+                artifacts.add(artifact);
+            }
+        } finally {
+            zip.close();
+            span.end();
+        }
+        return artifacts;
+    }
+
+    private boolean needsDigest(String entryName) {
+        for (Pattern pattern : digestPatterns) {
+            if (pattern.matcher(entryName).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String digest(ZipFile zip, ZipEntry entry, byte[] buffer) throws IOException {
+        MessageDigest md = TreeHasher.newDigest();
+        InputStream in = zip.getInputStream(entry);
+        try {
+            int numRead;
+            while ((numRead = in.read(buffer)) != -1) {
+                md.update(buffer, 0, numRead);
+            }
+        } finally {
+            in.close();
+        }
+        return TreeHasher.toHex(md.digest());
+    }
+}
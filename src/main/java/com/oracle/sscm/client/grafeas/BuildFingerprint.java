@@ -0,0 +1,205 @@
+/**
+ * Build Fingerprint
+ * Digest of the inputs of a build details publication, to skip unchanged builds.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Fingerprint of everything a build details publication depends on: the configuration of the
+ * goal and the content of the artifacts and source files. The fingerprint of the last
+ * successful publication is kept in a file of the build directory, with the occurrences it
+ * created, so that a build whose inputs have not changed can skip the publication.
+ *
+ * The digest of a file is only computed again when its size or modification time changed
+ * since the previous fingerprint, so an unchanged build reads no file content. The digests are
+ * those the publication needs, computed by a Digester, so a changed build reads each file once.
+ */
+public class BuildFingerprint {
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String OCCURRENCES = "occurrences";
+    private static final String FILE_PREFIX = "file.";
+
+    // Fingerprint file, null to keep nothing
+    private final File file;
+
+    // Content of the file of the previous publication, empty if none
+    private final Properties previous = new Properties();
+
+    // Input name -> value, sorted so that the order of the calls doesn't matter
+    private final Map<String, String> inputs = new TreeMap<String, String>();
+
+    // Input name/file name -> size:modification time:digest, for the next fingerprint file
+    private final Map<String, String> fileDigests = new TreeMap<String, String>();
+
+    /**
+     * @param file  file of the last successful publication, read if it exists
+     */
+    public BuildFingerprint(File file) {
+        this.file = file;
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                previous.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // An unreadable fingerprint only means the build is published again
+            previous.clear();
+        }
+    }
+
+    /**
+     * Add a configuration input, null for an input that isn't set. Collections and maps are
+     * rendered in their order, except maps, which are sorted.
+     */
+    public void addInput(String name, Object value) {
+        if (value instanceof Map) {
+            value = new TreeMap<Object, Object>((Map<?, ?>) value).toString();
+        }
+        inputs.put(name, String.valueOf(value));
+    }
+
+    /**
+     * Digest of the content of a file
+     */
+    public interface Digester {
+        String digest(String fileName) throws IOException;
+    }
+
+    /**
+     * Add the content of files, in their order, by the digests of the digester
+     *
+     * @return the digests of the files, keyed by file name, without the missing files
+     * @throws IOException if a file can't be read
+     */
+    public Map<String, String> addFiles(String name, Collection<String> fileNames, Digester digester) throws IOException {
+        Map<String, String> digestsByFile = new LinkedHashMap<String, String>();
+        List<String> digests = new ArrayList<String>();
+        if (fileNames != null) {
+            for (String fileName : fileNames) {
+                String digest = getFileDigest(name + "/" + fileName, fileName, digester);
+                if (digest != null) {
+                    digestsByFile.put(fileName, digest);
+                }
+                digests.add(fileName + "=" + (digest != null ? digest : "missing"));
+            }
+        }
+        inputs.put(name, digests.toString());
+        return digestsByFile;
+    }
+
+    /**
+     * Get the fingerprint of the inputs added, a hex SHA-256
+     */
+    public String getFingerprint() {
+        MessageDigest md = TreeHasher.newDigest();
+        for (Map.Entry<String, String> input : inputs.entrySet()) {
+            md.update(input.getKey().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '=');
+            md.update(input.getValue().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+        }
+        return TreeHasher.toHex(md.digest());
+    }
+
+    /**
+     * Return true if the inputs are those of the last successful publication
+     */
+    public boolean isUnchanged() {
+        return getFingerprint().equals(previous.getProperty(FINGERPRINT));
+    }
+
+    /**
+     * Get the names of the occurrences created by the last successful publication
+     */
+    public List<String> getPreviousOccurrences() {
+        String occurrences = previous.getProperty(OCCURRENCES, "");
+        return occurrences.isEmpty() ? new ArrayList<String>() : Arrays.asList(occurrences.split(","));
+    }
+
+    /**
+     * Record a successful publication of the inputs and the occurrences it created.
+     * The file is written then renamed, an interrupted build never leaves a partial one.
+     *
+     * @throws IOException if the file can't be written
+     */
+    public void save(List<String> occurrences) throws IOException {
+        if (file == null) {
+            return;
+        }
+        Properties current = new Properties();
+        current.setProperty(FINGERPRINT, getFingerprint());
+        StringBuilder names = new StringBuilder();
+        for (String occurrence : occurrences) {
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(occurrence);
+        }
+        current.setProperty(OCCURRENCES, names.toString());
+        for (Map.Entry<String, String> digest : fileDigests.entrySet()) {
+            current.setProperty(FILE_PREFIX + digest.getKey(), digest.getValue());
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            current.store(out, "Inputs of the last build details publication");
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Digest of the file, from the previous fingerprint if its size and time are the same,
+    // null if the file is missing. The key holds the input name, a file can be in two inputs
+    // with digests of different kinds.
+    //
+    private String getFileDigest(String key, String fileName, Digester digester) throws IOException {
+        File f = new File(fileName);
+        if (!f.isFile()) {
+            return null;
+        }
+        String stamp = f.length() + ":" + f.lastModified() + ":";
+        String known = previous.getProperty(FILE_PREFIX + key);
+        String digest;
+        if (known != null && known.startsWith(stamp)) {
+            digest = known.substring(stamp.length());
+        } else {
+            digest = digester.digest(fileName);
+        }
+        fileDigests.put(key, stamp + digest);
+        return digest;
+    }
+}
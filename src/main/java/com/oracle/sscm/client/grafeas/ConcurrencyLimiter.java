@@ -0,0 +1,137 @@
+/**
+ * Concurrency Limiter
+ * AIMD limit of the requests in flight to a server.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+/**
+ * Bounds the number of requests in flight with an additive increase, multiplicative decrease
+ * (AIMD) limit, as TCP does with its congestion window. Every successful request raises the
+ * limit by 1/limit, so by about one per round of requests, and every overloaded response halves
+ * it, at most once per round, so that a burst of 429s only counts once.
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 16;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 256;
+
+    private static final double BACKOFF_RATIO = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    // Current limit, fractional to allow additive increase by 1/limit
+    private double limit;
+
+    // Requests in flight
+    private int inFlight = 0;
+
+    // Requests started since the last decrease, a decrease waits for a full round
+    private long started = 0;
+    private long startedAtDecrease;
+
+    public ConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits: min " + minLimit + ", max " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.startedAtDecrease = -maxLimit - 1;
+    }
+
+    /**
+     * Wait until a request may be sent. Every acquire must be followed by a release.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+        started++;
+    }
+
+    /**
+     * Wait at most the timeout until a request may be sent
+     *
+     * @return false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean acquire(long timeoutMillis) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeoutMillis;
+        while (inFlight >= (int) limit) {
+            long wait = end - System.currentTimeMillis();
+            if (wait <= 0) {
+                return false;
+            }
+            wait(wait);
+        }
+        inFlight++;
+        started++;
+        return true;
+    }
+
+    /**
+     * Take a request slot only if one is free, for optional requests such as hedges
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        started++;
+        return true;
+    }
+
+    /**
+     * Release a request, adapting the limit to its outcome
+     *
+     * @param overloaded true if the server answered with 429 or 503 or timed out
+     */
+    public synchronized void release(boolean overloaded) {
+        inFlight--;
+        if (overloaded) {
+            // Requests started before the last decrease saw the previous limit
+            if (started - startedAtDecrease > (long) limit) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                startedAtDecrease = started;
+            }
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Release a request whose outcome says nothing of the server, such as one abandoned at
+     * the deadline of the goal, leaving the limit as it is
+     */
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Get the current limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Get the number of requests in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Deadline
+ * Time budget of a goal, applied to every request it sends to Grafeas.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a goal must be done with Grafeas, and the hedging of its reads.
+ *
+ * A goal begins its deadline on the thread that runs it. The deadline is inherited by the
+ * threads that thread starts, so the requests sent by the executors of the goal see it too,
+ * without passing it through every call. GrafeasHttp bounds the wait for the concurrency limit,
+ * the socket timeouts, the retries and the backoffs of each request by the time left, and
+ * fails the request with a DeadlineExceededException once it is reached.
+ */
+public final class Deadline {
+
+    private static final InheritableThreadLocal<Deadline> current = new InheritableThreadLocal<Deadline>();
+
+    // System.nanoTime() of the deadline, Long.MAX_VALUE for none
+    private final long expiresAt;
+
+    // Latency percentile after which a GET is hedged, 0 for no hedging
+    private final double hedgePercentile;
+
+    private Deadline(long expiresAt, double hedgePercentile) {
+        this.expiresAt = expiresAt;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * Begin the deadline of the current thread and of the threads it starts
+     *
+     * @param budgetMillis     time budget, 0 for no deadline
+     * @param hedgePercentile  latency percentile, 50 to 99.9, after which a GET is sent a second
+     *                         time, 0 for no hedging
+     */
+    public static Deadline begin(long budgetMillis, double hedgePercentile) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("Invalid time budget: " + budgetMillis);
+        }
+        if (hedgePercentile != 0 && (hedgePercentile < 50 || hedgePercentile >= 100)) {
+            throw new IllegalArgumentException("Invalid hedge percentile: " + hedgePercentile + ", expected 0 or 50 to 99.9");
+        }
+        long expiresAt = (budgetMillis > 0) ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis) : Long.MAX_VALUE;
+        Deadline deadline = new Deadline(expiresAt, hedgePercentile);
+        current.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * End the deadline of the current thread
+     */
+    public static void end() {
+        current.remove();
+    }
+
+    /**
+     * Get the deadline of the current thread, null if none
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    /**
+     * Return true if there is a time limit
+     */
+    public boolean isBounded() {
+        return expiresAt != Long.MAX_VALUE;
+    }
+
+    /**
+     * Get the milliseconds left, Long.MAX_VALUE without a time limit
+     */
+    public long remainingMillis() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return isBounded() && expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Throw if the deadline is reached
+     *
+     * @throws DeadlineExceededException if it is
+     */
+    public void check(String what) throws DeadlineExceededException {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Time budget of the goal exceeded: " + what);
+        }
+    }
+
+    /**
+     * Bound a timeout by the time left, a timeout of 0 is infinite
+     */
+    public int boundTimeout(int timeoutMillis) {
+        if (!isBounded()) {
+            return timeoutMillis;
+        }
+        long remaining = Math.max(1, remainingMillis());
+        return (int) ((timeoutMillis > 0) ? Math.min(timeoutMillis, remaining) : Math.min(Integer.MAX_VALUE, remaining));
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public boolean isHedging() {
+        return hedgePercentile > 0;
+    }
+}
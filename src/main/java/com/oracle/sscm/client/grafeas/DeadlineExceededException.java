@@ -0,0 +1,23 @@
+/**
+ * Deadline Exceeded Exception
+ * Thrown when the time budget of a goal is spent.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import java.io.InterruptedIOException;
+
+/**
+ * A request to Grafeas was not sent, or was abandoned, because the deadline of the goal was
+ * reached. It is never retried.
+ */
+public class DeadlineExceededException extends InterruptedIOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Grafeas API Async Utilities
+ * Asynchronous counterpart of GrafeasUtilities returning CompletableFutures.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import io.grafeas.v1alpha1.model.Occurrence;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the GrafeasUtilities operations on an executor and returns CompletableFutures, so that
+ * callers can fan out many independent metadata operations without managing threads.
+ * A failed operation completes its future exceptionally with the ApiException or IOException
+ * thrown by the synchronous call.
+ *
+ * The default executor uses virtual threads when the JDK supports them, and a bounded pool
+ * of daemon threads otherwise.
+ */
+public class GrafeasAsyncUtilities {
+
+    private static final int DEFAULT_PLATFORM_THREADS = 32;
+
+    // Synchronous utilities doing the work
+    //
+    private final GrafeasUtilities utils;
+
+    // Executor running the calls
+    //
+    private final ExecutorService executor;
+
+    /**
+     * Run the operations of the utilities on the default executor
+     */
+    public GrafeasAsyncUtilities(GrafeasUtilities utils) {
+        this(utils, newDefaultExecutor());
+    }
+
+    /**
+     * Run the operations of the utilities on the given executor
+     */
+    public GrafeasAsyncUtilities(GrafeasUtilities utils, ExecutorService executor) {
+        this.utils = utils;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the synchronous utilities
+     */
+    public GrafeasUtilities getUtilities() {
+        return utils;
+    }
+
+    /**
+     * Get the executor running the calls
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Shut down the executor once the submitted operations are done
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Return an executor with one virtual thread per task when the JDK supports virtual
+     * threads, a fixed pool of daemon threads otherwise.
+     */
+    public static ExecutorService newDefaultExecutor() {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                .invoke();
+        } catch (Throwable noVirtualThreads) {
+            return newPlatformExecutor(DEFAULT_PLATFORM_THREADS);
+        }
+    }
+
+    /**
+     * Return a fixed pool of daemon threads
+     */
+    public static ExecutorService newPlatformExecutor(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "grafeas-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Create a build details note metadata.
+     */
+    public CompletableFuture<Void> createBuildDetailsNote(final String name, final String shortDesc, final String longDesc) {
+        return run(new Call<Void>() {
+            public Void call() throws Exception {
+                utils.createBuildDetailsNote(name, shortDesc, longDesc);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Create a build details note metadata unless it already exists, complete with true if created.
+     */
+    public CompletableFuture<Boolean> createBuildDetailsNoteIfAbsent(final String name, final String shortDesc, final String longDesc) {
+        return run(new Call<Boolean>() {
+            public Boolean call() throws Exception {
+                return utils.createBuildDetailsNoteIfAbsent(name, shortDesc, longDesc);
+            }
+        });
+    }
+
+    /**
+     * Complete with true if build details metadata note already exists, false otherwise.
+     */
+    public CompletableFuture<Boolean> doesBuildDetailsNoteExist(final String name) {
+        return run(new Call<Boolean>() {
+            public Boolean call() throws Exception {
+                return utils.doesBuildDetailsNoteExist(name);
+            }
+        });
+    }
+
+    /**
+     * Deletes the given build details note from the server.
+     */
+    public CompletableFuture<Void> deleteBuildDetailsNote(final String name) {
+        return run(new Call<Void>() {
+            public Void call() throws Exception {
+                utils.deleteBuildDetailsNote(name);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Create a build details occurrence metadata entry.
+     */
+    public CompletableFuture<Void> createBuildDetailsOccurrence(final String occurrenceName, final String occurrenceUrl, final String noteName) {
+        return run(new Call<Void>() {
+            public Void call() throws Exception {
+                utils.createBuildDetailsOccurrence(occurrenceName, occurrenceUrl, noteName);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Complete with true if the build details occurrence exists, false otherwise.
+     */
+    public CompletableFuture<Boolean> doesBuildDetailsOccurrenceExist(final String occurrenceName) {
+        return run(new Call<Boolean>() {
+            public Boolean call() throws Exception {
+                return utils.doesBuildDetailsOccurrenceExist(occurrenceName);
+            }
+        });
+    }
+
+    /**
+     * Creates a new attestation authority note.
+     */
+    public CompletableFuture<Void> createAttestationAuthorityNote(final String name, final String shortDesc, final String longDesc) {
+        return run(new Call<Void>() {
+            public Void call() throws Exception {
+                utils.createAttestationAuthorityNote(name, shortDesc, longDesc);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Complete with true if build attestation metadata note already exists, false otherwise.
+     */
+    public CompletableFuture<Boolean> doesAttestationAuthorityNoteExist(final String name) {
+        return run(new Call<Boolean>() {
+            public Boolean call() throws Exception {
+                return utils.doesAttestationAuthorityNoteExist(name);
+            }
+        });
+    }
+
+    /**
+     * Deletes the given attestation authority note from the system.
+     */
+    public CompletableFuture<Void> deleteAttestationAuthorityNote(final String authorityName) {
+        return run(new Call<Void>() {
+            public Void call() throws Exception {
+                utils.deleteAttestationAuthorityNote(authorityName);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Creates a new Attestation Authority occurrence.
+     */
+    public CompletableFuture<Void> createAttestationOccurrence(final String authorityName, final String resourceUrl) {
+        return run(new Call<Void>() {
+            public Void call() throws Exception {
+                utils.createAttestationOccurrence(authorityName, resourceUrl);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Creates an Attestation Authority occurrence for every authority and resource URL.
+     */
+    public CompletableFuture<List<Occurrence>> createAttestationOccurrences(final List<String> authorityNames,
+            final List<String> resourceUrls, final int maxConcurrency) {
+        return run(new Call<List<Occurrence>>() {
+            public List<Occurrence> call() throws Exception {
+                return utils.createAttestationOccurrences(authorityNames, resourceUrls, maxConcurrency);
+            }
+        });
+    }
+
+    /**
+     * Complete with true if the attestation occurrence exists, false otherwise.
+     */
+    public CompletableFuture<Boolean> doesAttestationOccurrenceExist(final String occurrenceName) {
+        return run(new Call<Boolean>() {
+            public Boolean call() throws Exception {
+                return utils.doesAttestationOccurrenceExist(occurrenceName);
+            }
+        });
+    }
+
+    /**
+     * Deletes the given occurrence from the system.
+     */
+    public CompletableFuture<Void> deleteOccurrence(final String name) {
+        return run(new Call<Void>() {
+            public Void call() throws Exception {
+                utils.deleteOccurrence(name);
+                return null;
+            }
+        });
+    }
+
+    // Run the call on the executor, completing the future with its result or exception
+    //
+    private <T> CompletableFuture<T> run(final Call<T> call) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    future.complete(call.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t instanceof CompletionException ? t.getCause() : t);
+                }
+            }
+        });
+        return future;
+    }
+
+    // A synchronous GrafeasUtilities call
+    //
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Grafeas Filter
+ * Server side filter expression for Grafeas list queries.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.minidev.json.JSONObject;
+
+/**
+ * Filter on occurrence or note fields, sent to the server as a filter expression
+ * such as <code>resourceUrl="https://host/image@sha256:..." AND kind="ATTESTATION_AUTHORITY"</code>.
+ *
+ * The same conditions are checked again on the returned objects, so that results are
+ * correct even when a server ignores the filter.
+ */
+public class GrafeasFilter {
+
+    private static final String RESOURCE_URL = "resourceUrl";
+    private static final String KIND = "kind";
+    private static final String NOTE_NAME = "noteName";
+
+    // Field name -> required value, in the order the conditions were added
+    private final Map<String, String> conditions = new LinkedHashMap<String, String>();
+
+    /**
+     * Match occurrences of the given resource URL
+     */
+    public GrafeasFilter resourceUrl(String resourceUrl) {
+        return field(RESOURCE_URL, resourceUrl);
+    }
+
+    /**
+     * Match notes or occurrences of the given kind, for example PACKAGE_VULNERABILITY
+     */
+    public GrafeasFilter kind(String kind) {
+        return field(KIND, kind);
+    }
+
+    /**
+     * Match occurrences of the given note name - projects/<project name>/notes/<note name>
+     */
+    public GrafeasFilter noteName(String noteName) {
+        return field(NOTE_NAME, noteName);
+    }
+
+    /**
+     * Match objects whose top level field has the given value
+     */
+    public GrafeasFilter field(String name, String value) {
+        if (value != null) {
+            conditions.put(name, value);
+        }
+        return this;
+    }
+
+    /**
+     * Return true if no condition is set
+     */
+    public boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    /**
+     * Return the filter expression, empty if no condition is set
+     */
+    public String toExpression() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> condition : conditions.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(" AND ");
+            }
+            sb.append(condition.getKey()).append("=\"")
+              .append(condition.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return true if the object satisfies all conditions
+     */
+    public boolean matches(JSONObject object) {
+        for (Map.Entry<String, String> condition : conditions.entrySet()) {
+            if (!condition.getValue().equals(object.get(condition.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return toExpression();
+    }
+}
@@ -0,0 +1,616 @@
+/**
+ * Grafeas HTTP
+ * Concurrency limit and retry shared by all the requests sent to Grafeas servers.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oracle.sscm.client.log.Tracer;
+
+/**
+ * Sends the requests to Grafeas servers through one ConcurrencyLimiter per server, shared by
+ * the OkHttp client of the generated API and the nimbus requests, and retries overloaded and
+ * failed requests.
+ *
+ * A 429, 502, 503 or 504 response is retried after the delay of its Retry-After header when
+ * present, after an exponential backoff with full jitter otherwise. A failure to connect or a
+ * timeout is retried the same way, for GET, PUT and DELETE requests only. A POST or a PATCH is
+ * only retried after a 429 or a 503, the server refused it; behind a 502 or a 504 it may have
+ * been applied, and sent again it would create a duplicate or fail as already existing.
+ *
+ * Under the {@link Deadline} of a goal, the wait for the limiter, every attempt and every
+ * backoff are bounded by the time left: an attempt still running at the deadline is cancelled,
+ * or abandoned for nimbus requests, and the request fails with a DeadlineExceededException.
+ * When the deadline hedges reads, a GET still unanswered after the hedge percentile of the
+ * recent GET latencies of its server is sent a second time, if the limiter has room for it,
+ * and the first response of the two is kept.
+ */
+public final class GrafeasHttp {
+
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    public static final long DEFAULT_BASE_BACKOFF_MILLIS = 200;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30000;
+
+    private static final int HTTP_CONFLICT = 409;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_BAD_GATEWAY = 502;
+    private static final int HTTP_UNAVAILABLE = 503;
+    private static final int HTTP_GATEWAY_TIMEOUT = 504;
+
+    // gRPC status of a resource that already exists, as reported by the gateway
+    private static final int GRPC_ALREADY_EXISTS = 6;
+    private static final String ALREADY_EXISTS = "ALREADY_EXISTS";
+
+    // Shortest delay before a hedge, below it the second request is mostly waste
+    public static final long MIN_HEDGE_DELAY_MILLIS = 10;
+
+    // Tag of the calls made by the interceptor itself, sent as they are
+    private static final Object ATTEMPT = new Object();
+
+    // Server host:port -> limiter
+    private static final ConcurrentMap<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<String, ConcurrencyLimiter>();
+
+    // Server host:port -> latencies of the GETs
+    private static final ConcurrentMap<String, LatencyTracker> latencies = new ConcurrentHashMap<String, LatencyTracker>();
+
+    // Runs the attempts of the requests with a deadline, abandoned ones finish in the background.
+    // The threads are shared by the goals, they drop the Deadline and the Tracer they inherit
+    // from the goal that happened to start them.
+    private static final ExecutorService attempts = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    Deadline.end();
+                    Tracer.detach();
+                    r.run();
+                }
+            }, "grafeas-http-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private static volatile long baseBackoffMillis = DEFAULT_BASE_BACKOFF_MILLIS;
+    private static volatile long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+
+    private GrafeasHttp() {
+    }
+
+    /**
+     * Set the number of retries of a request, 0 to disable the retries
+     */
+    public static void setMaxRetries(int retries) {
+        maxRetries = Math.max(0, retries);
+    }
+
+    /**
+     * Set the first and the longest backoff before a retry
+     */
+    public static void setBackoff(long baseMillis, long maxMillis) {
+        baseBackoffMillis = Math.max(1, baseMillis);
+        maxBackoffMillis = Math.max(baseBackoffMillis, maxMillis);
+    }
+
+    /**
+     * Get the limiter of the server of the URL
+     */
+    public static ConcurrencyLimiter getLimiter(URL url) {
+        String server = getServer(url);
+        ConcurrencyLimiter limiter = limiters.get(server);
+        if (limiter == null) {
+            limiters.putIfAbsent(server, new ConcurrencyLimiter());
+            limiter = limiters.get(server);
+        }
+        return limiter;
+    }
+
+    /**
+     * Get the GET latencies of the server of the URL
+     */
+    public static LatencyTracker getLatencies(URL url) {
+        String server = getServer(url);
+        LatencyTracker tracker = latencies.get(server);
+        if (tracker == null) {
+            latencies.putIfAbsent(server, new LatencyTracker());
+            tracker = latencies.get(server);
+        }
+        return tracker;
+    }
+
+    private static String getServer(URL url) {
+        return url.getHost() + ":" + (url.getPort() != -1 ? url.getPort() : url.getDefaultPort());
+    }
+
+    /**
+     * Add the limit and retry interceptor to the client, once
+     */
+    public static OkHttpClient install(OkHttpClient client) {
+        for (Interceptor interceptor : client.interceptors()) {
+            if (interceptor instanceof LimitInterceptor) {
+                return client;
+            }
+        }
+        client.interceptors().add(new LimitInterceptor(client));
+        return client;
+    }
+
+    /**
+     * Return a new client with the limit and retry interceptor
+     */
+    public static OkHttpClient newClient() {
+        return install(new OkHttpClient());
+    }
+
+    /**
+     * Send the nimbus request through the limiter of its server, with retries
+     *
+     * @throws IOException if the request fails after the retries
+     */
+    public static HTTPResponse send(HTTPRequest request) throws IOException {
+        Deadline deadline = Deadline.current();
+        ConcurrencyLimiter limiter = getLimiter(request.getURL());
+        boolean idempotent = request.getMethod() != HTTPRequest.Method.POST;
+        boolean read = request.getMethod() == HTTPRequest.Method.GET;
+        for (int attempt = 0; ; attempt++) {
+            acquire(limiter, deadline, request.getURL());
+            HTTPResponse response;
+            long start = System.nanoTime();
+            Tracer.Span span = startSpan(request.getMethod().toString(), request.getURL(), attempt);
+            try {
+                if (deadline == null || !deadline.isBounded() && !deadline.isHedging()) {
+                    response = request.send();
+                } else {
+                    Attempt second = (read && deadline.isHedging()) ? new RequestAttempt(copy(request), deadline) : null;
+                    response = (HTTPResponse) race(new RequestAttempt(request, deadline), second, limiter, deadline, request.getURL());
+                }
+                span.arg("status", response.getStatusCode());
+            } catch (IOException e) {
+                span.arg("error", e.toString());
+                if (e instanceof DeadlineExceededException) {
+                    limiter.release();
+                    throw e;
+                }
+                limiter.release(e instanceof SocketTimeoutException);
+                if (!idempotent || attempt >= maxRetries) {
+                    throw e;
+                }
+                sleep(backoff(attempt), deadline);
+                continue;
+            } finally {
+                span.end();
+            }
+            boolean overloaded = isOverloaded(response.getStatusCode());
+            limiter.release(overloaded);
+            if (read && !overloaded) {
+                getLatencies(request.getURL()).record((System.nanoTime() - start) / 1000000);
+            }
+            if (!isRetryable(response.getStatusCode(), idempotent) || attempt >= maxRetries) {
+                return response;
+            }
+            sleep(retryDelay(response.getHeader("Retry-After"), attempt), deadline);
+        }
+    }
+
+    // Copy of a nimbus request, for a hedge
+    //
+    private static HTTPRequest copy(HTTPRequest request) {
+        HTTPRequest copy = new HTTPRequest(request.getMethod(), request.getURL());
+        for (Object header : request.getHeaders().entrySet()) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) header;
+            copy.setHeader(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        copy.setQuery(request.getQuery());
+        copy.setConnectTimeout(request.getConnectTimeout());
+        copy.setReadTimeout(request.getReadTimeout());
+        copy.setFollowRedirects(request.getFollowRedirects());
+        return copy;
+    }
+
+    // Limit and retry the requests of an OkHttp client
+    //
+    private static class LimitInterceptor implements Interceptor {
+
+        // Client of the interceptor, to send cancellable attempts
+        private final OkHttpClient client;
+
+        LimitInterceptor(OkHttpClient client) {
+            this.client = client;
+        }
+
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            if (request.tag() == ATTEMPT) {
+                return chain.proceed(request);
+            }
+            Deadline deadline = Deadline.current();
+            ConcurrencyLimiter limiter = getLimiter(request.url());
+            boolean idempotent = !"POST".equals(request.method()) && !"PATCH".equals(request.method());
+            boolean read = "GET".equals(request.method());
+            for (int attempt = 0; ; attempt++) {
+                acquire(limiter, deadline, request.url());
+                Response response;
+                long start = System.nanoTime();
+                Tracer.Span span = startSpan(request.method(), request.url(), attempt);
+                try {
+                    if (deadline == null || !deadline.isBounded() && !deadline.isHedging()) {
+                        response = chain.proceed(request);
+                    } else {
+                        Attempt second = (read && deadline.isHedging()) ? new CallAttempt(newCall(request)) : null;
+                        response = (Response) race(new CallAttempt(newCall(request)), second, limiter, deadline, request.url());
+                    }
+                    span.arg("status", response.code());
+                } catch (IOException e) {
+                    span.arg("error", e.toString());
+                    if (e instanceof DeadlineExceededException) {
+                        limiter.release();
+                        throw e;
+                    }
+                    limiter.release(e instanceof SocketTimeoutException);
+                    if (!idempotent || attempt >= maxRetries) {
+                        throw e;
+                    }
+                    sleep(backoff(attempt), deadline);
+                    continue;
+                } finally {
+                    span.end();
+                }
+                boolean overloaded = isOverloaded(response.code());
+                limiter.release(overloaded);
+                if (read && !overloaded) {
+                    getLatencies(request.url()).record((System.nanoTime() - start) / 1000000);
+                }
+                if (!isRetryable(response.code(), idempotent) || attempt >= maxRetries) {
+                    return response;
+                }
+                response.body().close();
+                sleep(retryDelay(response.header("Retry-After"), attempt), deadline);
+            }
+        }
+
+        private Call newCall(Request request) {
+            return client.newCall(request.newBuilder().tag(ATTEMPT).build());
+        }
+    }
+
+    // Run the first attempt until the deadline, and the second one, if any, when the first is
+    // still unanswered after the hedge delay. Return the first response, the other attempt is
+    // cancelled or its response discarded. The slot of the hedge counts as a success only when
+    // the hedge answered first, a cancelled hedge says nothing of the server.
+    //
+    private static Object race(Attempt first, Attempt second, ConcurrencyLimiter limiter, Deadline deadline, URL url)
+            throws IOException {
+        Race race = new Race();
+        race.start(first);
+        Attempt finished = null;
+        Attempt winner = null;
+        boolean hedged = false;
+        long hedgeDelay = (second != null) ? getHedgeDelay(url, deadline) : -1;
+        if (hedgeDelay >= 0) {
+            finished = race.next(Math.min(hedgeDelay, deadline.remainingMillis()));
+            if (finished == null && !deadline.isExpired() && limiter.tryAcquire()) {
+                race.start(second);
+                hedged = true;
+            }
+        }
+        try {
+            int failures = 0;
+            while (true) {
+                if (finished == null) {
+                    finished = race.next(deadline.remainingMillis());
+                }
+                if (finished == null) {
+                    throw new DeadlineExceededException("Time budget of the goal exceeded: " + url);
+                }
+                if (finished.failure == null) {
+                    winner = finished;
+                    race.decide(winner);
+                    return winner.response;
+                }
+                if (++failures == race.getStarted()) {
+                    throw finished.failure;
+                }
+                finished = null;
+            }
+        } finally {
+            race.decide(null);
+            if (hedged && winner == second) {
+                limiter.release(false);
+            } else if (hedged) {
+                limiter.release();
+            }
+        }
+    }
+
+    // Span of an attempt of a request, named by its method and path
+    //
+    private static Tracer.Span startSpan(String method, URL url, int attempt) {
+        Tracer.Span span = Tracer.start("http", method + " " + url.getPath());
+        return (attempt > 0) ? span.arg("retry", attempt) : span;
+    }
+
+    // Delay before the hedge of a GET, -1 for no hedge
+    //
+    private static long getHedgeDelay(URL url, Deadline deadline) {
+        if (!deadline.isHedging()) {
+            return -1;
+        }
+        long percentile = getLatencies(url).percentile(deadline.getHedgePercentile());
+        return (percentile < 0) ? -1 : Math.max(MIN_HEDGE_DELAY_MILLIS, percentile);
+    }
+
+    // One attempt of a request, run on the attempts executor
+    //
+    private abstract static class Attempt implements Runnable {
+        // Tracer of the goal that sent the request, the pool threads have none of their own
+        final Tracer tracer = Tracer.current();
+        Race race;
+        boolean hedge;
+        Object response;
+        IOException failure;
+
+        abstract Object send() throws IOException;
+
+        // Stop an attempt that lost, or that is still running at the deadline
+        void cancel() {
+        }
+
+        // Release the response of an attempt that lost
+        void discard() {
+        }
+
+        public void run() {
+            Tracer.Span span = Tracer.start(tracer, "http", hedge ? "hedge" : "attempt");
+            try {
+                response = send();
+            } catch (IOException e) {
+                failure = e;
+            } catch (Throwable e) {
+                // The race must learn of every attempt, or the request waits for the deadline
+                failure = new IOException(e);
+            } finally {
+                span.end();
+            }
+            race.finished(this);
+        }
+    }
+
+    private static class CallAttempt extends Attempt {
+        private final Call call;
+
+        CallAttempt(Call call) {
+            this.call = call;
+        }
+
+        Object send() throws IOException {
+            return call.execute();
+        }
+
+        void cancel() {
+            call.cancel();
+        }
+
+        void discard() {
+            if (response != null) {
+                try {
+                    ((Response) response).body().close();
+                } catch (IOException e) {
+                    // Nothing more to release
+                }
+            }
+        }
+    }
+
+    private static class RequestAttempt extends Attempt {
+        private final HTTPRequest request;
+
+        RequestAttempt(HTTPRequest request, Deadline deadline) {
+            // The socket timeouts keep an abandoned attempt from running long after the deadline
+            request.setConnectTimeout(deadline.boundTimeout(request.getConnectTimeout()));
+            request.setReadTimeout(deadline.boundTimeout(request.getReadTimeout()));
+            this.request = request;
+        }
+
+        Object send() throws IOException {
+            return request.send();
+        }
+    }
+
+    // Attempts of a request, in the order they finish
+    //
+    private static class Race {
+        private final List<Attempt> started = new ArrayList<Attempt>();
+        private final LinkedList<Attempt> finished = new LinkedList<Attempt>();
+        private boolean decided = false;
+
+        synchronized void start(Attempt attempt) {
+            attempt.race = this;
+            attempt.hedge = !started.isEmpty();
+            started.add(attempt);
+            attempts.execute(attempt);
+        }
+
+        synchronized int getStarted() {
+            return started.size();
+        }
+
+        synchronized void finished(Attempt attempt) {
+            if (decided) {
+                attempt.discard();
+            } else {
+                finished.add(attempt);
+                notifyAll();
+            }
+        }
+
+        // Next finished attempt, null if none finished within the timeout
+        //
+        synchronized Attempt next(long timeoutMillis) throws InterruptedIOException {
+            long end = (timeoutMillis == Long.MAX_VALUE) ? Long.MAX_VALUE : System.currentTimeMillis() + timeoutMillis;
+            try {
+                while (finished.isEmpty()) {
+                    long wait = (end == Long.MAX_VALUE) ? 0 : end - System.currentTimeMillis();
+                    if (end != Long.MAX_VALUE && wait <= 0) {
+                        return null;
+                    }
+                    wait(wait);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the Grafeas server");
+            }
+            return finished.removeFirst();
+        }
+
+        // Keep the winner, if any, and stop or discard the other attempts
+        //
+        synchronized void decide(Attempt winner) {
+            if (decided) {
+                return;
+            }
+            decided = true;
+            for (Attempt attempt : started) {
+                if (attempt == winner) {
+                    continue;
+                }
+                if (finished.contains(attempt)) {
+                    attempt.discard();
+                } else if (attempt.response == null && attempt.failure == null) {
+                    attempt.cancel();
+                }
+            }
+            finished.clear();
+        }
+    }
+
+    /**
+     * Return true if the response reports a resource that already exists: a 409, or an error
+     * body with the ALREADY_EXISTS gRPC status, either as code 6 or by name
+     */
+    public static boolean isAlreadyExists(int statusCode, String body) {
+        if (statusCode == HTTP_CONFLICT) {
+            return true;
+        }
+        if (body == null) {
+            return false;
+        }
+        try {
+            JsonElement json = new JsonParser().parse(body);
+            if (!json.isJsonObject()) {
+                return false;
+            }
+            JsonObject error = json.getAsJsonObject();
+            if (error.get("error") != null && error.get("error").isJsonObject()) {
+                error = error.getAsJsonObject("error");
+            }
+            JsonElement code = error.get("code");
+            JsonElement status = error.get("status");
+            return (code != null && code.isJsonPrimitive() && code.getAsJsonPrimitive().isNumber() && code.getAsInt() == GRPC_ALREADY_EXISTS)
+                || (status != null && status.isJsonPrimitive() && ALREADY_EXISTS.equals(status.getAsString()));
+        } catch (RuntimeException e) {
+            // Not a JSON error body
+            return false;
+        }
+    }
+
+    private static boolean isOverloaded(int statusCode) {
+        return statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HTTP_BAD_GATEWAY
+            || statusCode == HTTP_UNAVAILABLE || statusCode == HTTP_GATEWAY_TIMEOUT;
+    }
+
+    // Overloaded response worth sending the request again for. A request that isn't idempotent
+    // is only sent again when the server says it didn't process it.
+    //
+    static boolean isRetryable(int statusCode, boolean idempotent) {
+        if (idempotent) {
+            return isOverloaded(statusCode);
+        }
+        return statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HTTP_UNAVAILABLE;
+    }
+
+    // Delay requested by the server, seconds or HTTP date, backoff if none
+    //
+    static long retryDelay(String retryAfter, int attempt) {
+        if (retryAfter != null) {
+            String value = retryAfter.trim();
+            try {
+                return Math.min(maxBackoffMillis, Math.max(0, Long.parseLong(value) * 1000));
+            } catch (NumberFormatException notSeconds) {
+                try {
+                    long millis = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                        - System.currentTimeMillis();
+                    return Math.min(maxBackoffMillis, Math.max(0, millis));
+                } catch (DateTimeParseException notDate) {
+                    // Ignore an invalid header
+                }
+            }
+        }
+        return backoff(attempt);
+    }
+
+    // Exponential backoff with full jitter
+    //
+    static long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void acquire(ConcurrencyLimiter limiter, Deadline deadline, URL url) throws IOException {
+        try {
+            if (deadline == null || !deadline.isBounded()) {
+                limiter.acquire();
+            } else if (!limiter.acquire(deadline.remainingMillis())) {
+                throw new DeadlineExceededException("Time budget of the goal exceeded waiting for " + url.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Grafeas server");
+        }
+    }
+
+    private static void sleep(long millis, Deadline deadline) throws IOException {
+        if (deadline != null && millis >= deadline.remainingMillis()) {
+            throw new DeadlineExceededException("Time budget of the goal exceeded before a retry");
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Grafeas Query Client
+ * A class that lists notes and occurrences from a Grafeas server one page at a time.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.JSONParser;
+
+import com.oracle.sscm.client.log.GrafeasLog;
+
+/**
+ * Lazy, paginated queries of notes and occurrences.
+ *
+ * Pages are requested with a server side filter, a page size and the page token returned
+ * by the previous page, and only when the caller iterates past the current page. Memory use
+ * and latency depend on the size of the result, not on the history of the project.
+ */
+public class GrafeasQueryClient {
+
+    private static final String GRAFEAS_VERSION = "v1alpha1";
+    private static final String PROJECTS = "projects";
+    private static final String NOTES = "notes";
+    private static final String OCCURRENCES = "occurrences";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    // Grafeas server URL, for example http://localhost:8080
+    private final String grafeasUrl;
+
+    // Number of objects requested per page
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    // Debug output, at info level until debugging is enabled
+    //
+    private GrafeasLog logger = GrafeasLog.console(false);
+
+    public GrafeasQueryClient(String grafeasUrl) {
+        if (grafeasUrl == null) {
+            grafeasUrl = "http://localhost:8080";
+        }
+        if (grafeasUrl.endsWith("/")) {
+            grafeasUrl = grafeasUrl.substring(0, grafeasUrl.length() - 1);
+        }
+        this.grafeasUrl = grafeasUrl;
+    }
+
+    /**
+     * Set the number of objects requested per page
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Get the number of objects requested per page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Enable debugging
+     */
+    public void enableDebugging() {
+        logger.setLevel(GrafeasLog.Level.DEBUG);
+    }
+
+    /**
+     * Set the log of the debug output
+     */
+    public void setLog(GrafeasLog logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Get the log of the debug output
+     */
+    public GrafeasLog getLog() {
+        return logger;
+    }
+
+    /**
+     * List the occurrences of a project matching the filter. Pages are fetched lazily;
+     * a failing page request throws an IllegalStateException from the iterator.
+     */
+    public Iterable<JSONObject> listOccurrences(String projectName, GrafeasFilter filter) {
+        return list(getCollectionUrl(projectName, OCCURRENCES), OCCURRENCES, filter);
+    }
+
+    /**
+     * List the notes of a project matching the filter. Pages are fetched lazily;
+     * a failing page request throws an IllegalStateException from the iterator.
+     */
+    public Iterable<JSONObject> listNotes(String projectName, GrafeasFilter filter) {
+        return list(getCollectionUrl(projectName, NOTES), NOTES, filter);
+    }
+
+    /**
+     * Fetch a single page of occurrences.
+     *
+     * @param pageToken token of the page, null for the first page
+     * @throws IOException if the request fails
+     */
+    public Page getOccurrencesPage(String projectName, GrafeasFilter filter, String pageToken) throws IOException {
+        return getPage(getCollectionUrl(projectName, OCCURRENCES), OCCURRENCES, filter, pageToken);
+    }
+
+    /**
+     * Fetch a single page of notes.
+     *
+     * @param pageToken token of the page, null for the first page
+     * @throws IOException if the request fails
+     */
+    public Page getNotesPage(String projectName, GrafeasFilter filter, String pageToken) throws IOException {
+        return getPage(getCollectionUrl(projectName, NOTES), NOTES, filter, pageToken);
+    }
+
+    private Iterable<JSONObject> list(final String collectionUrl, final String collection, final GrafeasFilter filter) {
+        return new Iterable<JSONObject>() {
+            public Iterator<JSONObject> iterator() {
+                return new PageIterator(collectionUrl, collection, filter);
+            }
+        };
+    }
+
+    // Get collection URL - <URL>/v1alpha1/projects/<project name>/<collection>
+    //
+    private String getCollectionUrl(String projectName, String collection) {
+        return grafeasUrl + "/" + GRAFEAS_VERSION + "/" + PROJECTS + "/" + projectName + "/" + collection;
+    }
+
+    private Page getPage(String collectionUrl, String collection, GrafeasFilter filter, String pageToken) throws IOException {
+        StringBuilder url = new StringBuilder(collectionUrl);
+        url.append("?page_size=").append(pageSize);
+        if (filter != null && !filter.isEmpty()) {
+            url.append("&filter=").append(encode(filter.toExpression()));
+        }
+        if (pageToken != null && !pageToken.isEmpty()) {
+            url.append("&page_token=").append(encode(pageToken));
+        }
+
+        log("GET " + url);
+        HTTPResponse response = GrafeasHttp.send(new HTTPRequest(HTTPRequest.Method.GET, new URL(url.toString())));
+        if (!response.indicatesSuccess()) {
+            throw new IOException("Failed to list " + collection + " from " + collectionUrl + ": "
+                + response.getStatusCode() + " " + response.getContent());
+        }
+
+        Object body;
+        try {
+            body = new JSONParser(JSONParser.MODE_PERMISSIVE).parse(response.getContent());
+        } catch (Exception e) {
+            throw new IOException("Unable to parse JSON from " + collectionUrl, e);
+        }
+        if (!(body instanceof JSONObject)) {
+            throw new IOException("No JSON returned from: " + collectionUrl);
+        }
+
+        JSONArray items = (JSONArray) ((JSONObject) body).get(collection);
+        String nextPageToken = (String) ((JSONObject) body).get("nextPageToken");
+        return new Page(items != null ? items : new JSONArray(), nextPageToken);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Log debug output
+    //
+    private void log(String msg) {
+        logger.debug(msg);
+    }
+
+    /**
+     * One page of a list query
+     */
+    public static class Page {
+        private final JSONArray items;
+        private final String nextPageToken;
+
+        Page(JSONArray items, String nextPageToken) {
+            this.items = items;
+            this.nextPageToken = nextPageToken;
+        }
+
+        /**
+         * Get the notes or occurrences of the page
+         */
+        public JSONArray getItems() {
+            return items;
+        }
+
+        /**
+         * Get the token of the next page, null or empty on the last page
+         */
+        public String getNextPageToken() {
+            return nextPageToken;
+        }
+
+        /**
+         * Return true if there is a page after this one
+         */
+        public boolean hasNextPage() {
+            return nextPageToken != null && !nextPageToken.isEmpty();
+        }
+    }
+
+    // Iterates over the matching objects, fetching the next page when the current one is consumed
+    //
+    private class PageIterator implements Iterator<JSONObject> {
+        private final String collectionUrl;
+        private final String collection;
+        private final GrafeasFilter filter;
+        private final Set<String> pageTokens = new HashSet<String>();
+        private Page page;
+        private int index;
+        private JSONObject next;
+
+        PageIterator(String collectionUrl, String collection, GrafeasFilter filter) {
+            this.collectionUrl = collectionUrl;
+            this.collection = collection;
+            this.filter = filter;
+        }
+
+        public boolean hasNext() {
+            while (next == null) {
+                if (page == null || (index >= page.getItems().size() && page.hasNextPage())) {
+                    // A server that hands out the same token again would be listed forever
+                    if (page != null && !pageTokens.add(page.getNextPageToken())) {
+                        throw new IllegalStateException("Page token " + page.getNextPageToken() + " returned twice by " + collectionUrl);
+                    }
+                    try {
+                        page = getPage(collectionUrl, collection, filter, (page != null) ? page.getNextPageToken() : null);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                    index = 0;
+                }
+                if (index >= page.getItems().size()) {
+                    return false;
+                }
+                JSONObject candidate = (JSONObject) page.getItems().get(index++);
+                if (filter == null || filter.matches(candidate)) {
+                    next = candidate;
+                }
+            }
+            return true;
+        }
+
+        public JSONObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            JSONObject result = next;
+            next = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -37,13 +37,25 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 import java.util.zip.Adler32;
 import java.util.zip.CheckedInputStream;
 
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.log.Tracer;
 import com.oracle.sscm.client.script.GPGScriptWrapper;
 
     /**
  * Utility class for creating Grafeas Build Details and Build Attestation Metadata
+ *
+ * An instance belongs to a single goal execution: it is configured by its setters, then used.
+ * The setters must not be called once occurrences are being created. The attestations created
+ * concurrently by an instance see the configuration set before they were submitted.
  */
 public class GrafeasUtilities {
 
@@ -94,9 +106,28 @@ public class GrafeasUtilities {
     // Build  project number
     private String projectNumber;
 
-    // Debug boolean
+    // Artifacts of at least this size are tree hashed in parallel, 0 disables tree hashing
+    private long largeFileThreshold;
+
+    // Hasher for large artifacts
+    private TreeHasher treeHasher = new TreeHasher();
+
+    // Describes the entries of archive artifacts, null to describe archives as a whole only
+    private ArchiveEntryDigester archiveEntryDigester;
+
+    // Notes and occurrences known to exist, null to always ask the server
+    private MetadataCache metadataCache;
+
+    // Checksums of artifacts and hashes of source files already computed, keyed by file name
+    private Map<String, String> knownChecksums = new HashMap<String, String>();
+    private Map<String, byte[]> knownSourceHashes = new HashMap<String, byte[]>();
+
+    // Chunk artifacts of the tree hashed artifacts checksummed ahead, keyed by file name
+    private Map<String, List<Artifact>> knownChunks = new HashMap<String, List<Artifact>>();
+
+    // Debug output, at info level until debugging is enabled
     //
-    private boolean debug = false;
+    private GrafeasLog logger = GrafeasLog.console(false);
 
     // Constructor - set Grafeas server URL and project name when creating utility class
     //
@@ -106,6 +137,8 @@ public class GrafeasUtilities {
             urlPath = "http://localhost:8080";
         }
         api.getApiClient().setBasePath(urlPath);
+        GrafeasHttp.install(api.getApiClient().getHttpClient());
+        metadataCache = MetadataCache.createDefault(api.getApiClient().getHttpClient(), logger);
     }
 
     public static GrafeasUtilities getGrafeasUtilitiesWithDemoDefaults(String urlPath) {
@@ -255,6 +288,79 @@ public class GrafeasUtilities {
         return buildArtifacts;
     }
 
+    /**
+     * Set the size from which artifacts are tree hashed in parallel chunks, 0 to disable
+     */
+    public void setLargeFileThreshold(long largeFileThreshold) {
+        this.largeFileThreshold = largeFileThreshold;
+    }
+
+    /**
+     * Get the size from which artifacts are tree hashed in parallel chunks
+     */
+    public long getLargeFileThreshold() {
+        return largeFileThreshold;
+    }
+
+    /**
+     * Set the hasher used for large artifacts
+     */
+    public void setTreeHasher(TreeHasher treeHasher) {
+        this.treeHasher = treeHasher;
+    }
+
+    /**
+     * Set the cache of the notes and occurrences known to exist, null to always ask the server
+     */
+    public void setMetadataCache(MetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    /**
+     * Get the cache of the notes and occurrences known to exist
+     */
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * Set the digester describing the entries of jar, war, ear and zip artifacts, null to disable
+     */
+    public void setArchiveEntryDigester(ArchiveEntryDigester archiveEntryDigester) {
+        this.archiveEntryDigester = archiveEntryDigester;
+    }
+
+    /**
+     * Set the checksums of artifacts computed ahead, for example by parallel workers, keyed by
+     * the file names of the build artifacts. Other artifacts are checksummed when published.
+     */
+    public void setKnownChecksums(Map<String, String> knownChecksums) {
+        this.knownChecksums = new HashMap<String, String>(knownChecksums);
+        this.knownChunks = new HashMap<String, List<Artifact>>();
+    }
+
+    /**
+     * Checksum an artifact ahead of the build details, which then reuse the checksum and, for
+     * a tree hashed artifact, its chunks instead of reading the file again
+     */
+    public String createArtifactChecksum(String fileName) {
+        String checksum = knownChecksums.get(fileName);
+        if (checksum == null) {
+            List<Artifact> chunks = new ArrayList<Artifact>();
+            checksum = createChecksum(new File(fileName), chunks);
+            knownChecksums.put(fileName, checksum);
+            knownChunks.put(fileName, chunks);
+        }
+        return checksum;
+    }
+
+    /**
+     * Set the SHA-256 hashes of source files computed ahead, keyed by the names of the source files
+     */
+    public void setKnownSourceHashes(Map<String, byte[]> knownSourceHashes) {
+        this.knownSourceHashes = new HashMap<String, byte[]>(knownSourceHashes);
+    }
+
     /**
      * Set the source files
      */
@@ -273,10 +379,33 @@ public class GrafeasUtilities {
      * Enable debugging
      */
     public void enableDebugging() {
-        debug = true;
+        logger.setLevel(GrafeasLog.Level.DEBUG);
+    }
+
+    /**
+     * Enable the OkHttp wire debugging of the Grafeas API client, every request and response
+     */
+    public void enableWireDebugging() {
         api.getApiClient().setDebugging(true);
     }
 
+    /**
+     * Set the log of the debug output and counts
+     */
+    public void setLog(GrafeasLog logger) {
+        this.logger = logger;
+        if (metadataCache != null) {
+            metadataCache.setLog(logger);
+        }
+    }
+
+    /**
+     * Get the log of the debug output and counts
+     */
+    public GrafeasLog getLog() {
+        return logger;
+    }
+
     /**
      * Create a build details note metadata.
      *
@@ -285,6 +414,44 @@ public class GrafeasUtilities {
     public void createBuildDetailsNote(String name, String shortDesc, String longDesc) throws ApiException {
         log("Creating build detail note for name: " + name);
 
+        Note note = newBuildDetailsNote(name, shortDesc, longDesc);
+        Note createdNote = api.createNote(getInfraName(), name, note);
+        cacheResource(getCreatedName(createdNote, getInfraName(), name), createdNote);
+
+        logger.count("notes created");
+        logger.debug("Created note: %s", createdNote);
+    }
+
+    /**
+     * Create a build details note metadata unless it already exists, with a single request:
+     * a note created concurrently by another build is not an error.
+     *
+     * @return true if the note was created, false if it already existed
+     * @throws ApiException if the Api call fails
+     **/
+    public boolean createBuildDetailsNoteIfAbsent(String name, String shortDesc, String longDesc) throws ApiException {
+        Note note = newBuildDetailsNote(name, shortDesc, longDesc);
+        if (isCached(note.getName())) {
+            return false;
+        }
+        try {
+            Note createdNote = api.createNote(getInfraName(), name, note);
+            cacheResource(getCreatedName(createdNote, getInfraName(), name), createdNote);
+            logger.count("notes created");
+            log("Created build details note: " + name);
+            return true;
+        } catch (ApiException e) {
+            if (!isAlreadyExists(e)) {
+                throw e;
+            }
+            log("Build details note already exists: " + name);
+            return false;
+        }
+    }
+
+    // Build details note with the build type
+    //
+    private Note newBuildDetailsNote(String name, String shortDesc, String longDesc) {
         Note note = new Note();
         note.setName(getNoteName(infraName, name));
         note.setKind(Note.KindEnum.BUILD_DETAILS);
@@ -293,10 +460,7 @@ public class GrafeasUtilities {
         note.setBuildType(createBuildType());
         note.setCreateTime(getCurrenttime());
         note.setOperationName(CREATE_BUILD_NOTE_OPERATION);
-
-        Note createdNote = api.createNote(getInfraName(), name, note);
-
-        log("Created note: " + createdNote);
+        return note;
     }
 
     /**
@@ -306,10 +470,18 @@ public class GrafeasUtilities {
      **/
     public boolean doesBuildDetailsNoteExist(String name) {
 
+        if (metadataCache != null) {
+            try {
+                return getCachedResource(getNoteName(getInfraName(), name), Note.class) != null;
+            } catch (IOException e) {
+                log("Metadata cache lookup failed: " + e);
+            }
+        }
+
         boolean fnd = false;
         try {
             Note note = api.getNote(getInfraName(), name);
-            log("doesBuildDetailsNoteExist: note " + note);
+            logger.debug("doesBuildDetailsNoteExist: note %s", note);
             fnd = true;
         } catch (ApiException e) {
             fnd = false;
@@ -325,6 +497,8 @@ public class GrafeasUtilities {
     public void deleteBuildDetailsNote(String name) throws ApiException {
         String projectsId = getProjectName();
         Empty response = api.deleteNote(projectsId, name);
+        invalidateResource(getNoteName(projectsId, name));
+        invalidateResource(getNoteName(getInfraName(), name));
 
         log("Deleted build details note name: " + name);
     }
@@ -332,10 +506,22 @@ public class GrafeasUtilities {
     /**
      * Create a build details occurrence metadata entry.
      *
+     * @return the name of the occurrence created - projects/<project name>/occurrences/<occurrence name>
      * @throws ApiException if the Api call fails
      **/
-    public void createBuildDetailsOccurrence(String occurrenceName, String occurrenceUrl, String noteName) throws ApiException {
+    public String createBuildDetailsOccurrence(String occurrenceName, String occurrenceUrl, String noteName) throws ApiException {
+        return createBuildDetailsOccurrence(occurrenceName, occurrenceUrl, noteName, createBuildDetails());
+    }
 
+    /**
+     * Create a build details occurrence metadata entry with build details created before,
+     * so that the build artifacts are hashed once for all the occurrences of a build.
+     *
+     * @return the name of the occurrence created - projects/<project name>/occurrences/<occurrence name>
+     * @throws ApiException if the Api call fails
+     **/
+    public String createBuildDetailsOccurrence(String occurrenceName, String occurrenceUrl, String noteName,
+                                               BuildDetails buildDetails) throws ApiException {
         log("Create occurrence name = " + occurrenceName);
 
         Occurrence occurrence = new Occurrence();
@@ -346,11 +532,15 @@ public class GrafeasUtilities {
         occurrence.setCreateTime(getCurrenttime());
         occurrence.setOperationName(CREATE_BUILD_OCCURRENCE_OPERATION);
 
-        occurrence.setBuildDetails(createBuildDetails(getBuildArtifacts()));
+        occurrence.setBuildDetails(buildDetails);
 
         Occurrence createdOccurrence = api.createOccurrence(getProjectName(), occurrence);
+        String createdName = (createdOccurrence.getName() != null) ? createdOccurrence.getName() : occurrence.getName();
+        cacheResource(createdName, createdOccurrence);
 
-        log("Created occurrence = " + createdOccurrence);
+        logger.count("occurrences created");
+        logger.debug("Created occurrence = %s", createdOccurrence);
+        return createdName;
     }
 
     /**
@@ -360,10 +550,18 @@ public class GrafeasUtilities {
      **/
     public boolean doesBuildDetailsOccurrenceExist(String occurrenceName) throws ApiException {
 
+        if (metadataCache != null) {
+            try {
+                return getCachedResource(getOccurrenceName(getProjectName(), occurrenceName), Occurrence.class) != null;
+            } catch (IOException e) {
+                log("Metadata cache lookup failed: " + e);
+            }
+        }
+
         boolean fnd = false;
         try {
             Occurrence occurrence = api.getOccurrence(getProjectName(), occurrenceName);
-            log("doesBuildDetailsOccurrenceExist: occurrence = " + occurrence);
+            logger.debug("doesBuildDetailsOccurrenceExist: occurrence = %s", occurrence);
             fnd = true;
         } catch (ApiException e) {
             fnd = false;
@@ -382,6 +580,17 @@ public class GrafeasUtilities {
 
         log("Create attestation authority name = " + name);
 
+        Note note = newAttestationAuthorityNote(name, shortDesc, longDesc);
+        Note createdNote = api.createNote(getProjectName(), name, note);
+        cacheResource(getCreatedName(createdNote, getProjectName(), name), createdNote);
+
+        logger.count("notes created");
+        logger.debug("Created attestation authority note = %s", createdNote);
+    }
+
+    // Attestation authority note with the authority hint
+    //
+    private Note newAttestationAuthorityNote(String name, String shortDesc, String longDesc) {
         Note note = new Note();
         note.setName(getNoteName(getInfraName(), name));
         note.setKind(Note.KindEnum.ATTESTATION_AUTHORITY);
@@ -390,10 +599,7 @@ public class GrafeasUtilities {
         note.setAttestationAuthority(createAuthority(name));
         note.setCreateTime(getCurrenttime());
         note.setOperationName(CREATE_AUTHORITY_NOTE_OPERATION);
-
-        Note createdNote = api.createNote(getProjectName(), name, note);
-
-        log("Created attestation authority note = " + createdNote);
+        return note;
     }
 
     /**
@@ -427,10 +633,19 @@ public class GrafeasUtilities {
      * @throws ApiException if the Api call fails
      **/
     public boolean doesAttestationAuthorityNoteExist(String name) {
+        if (metadataCache != null) {
+            try {
+                Note note = getCachedResource(getNoteName(getInfraName(), name), Note.class);
+                return note != null && note.getKind() == Note.KindEnum.ATTESTATION_AUTHORITY;
+            } catch (IOException e) {
+                log("Metadata cache lookup failed: " + e);
+            }
+        }
+
         boolean fnd = false;
         try {
             Note note = api.getNote(getInfraName(), name);
-            log("doesAttestationAuthorityNoteExist: note " + note);
+            logger.debug("doesAttestationAuthorityNoteExist: note %s", note);
             if (note.getKind() == Note.KindEnum.ATTESTATION_AUTHORITY) {
                 fnd = true;
             }
@@ -449,6 +664,8 @@ public class GrafeasUtilities {
      */
     public void deleteAttestationAuthorityNote(String authorityName) throws ApiException {
         Empty response = api.deleteNote(getProjectName(), authorityName);
+        invalidateResource(getNoteName(getProjectName(), authorityName));
+        invalidateResource(getNoteName(getInfraName(), authorityName));
 
         log("Deleted attestation authority note " + authorityName);
     }
@@ -460,22 +677,65 @@ public class GrafeasUtilities {
      */
     public void createAttestationOccurrence(String authorityName, String resourceUrl) throws ApiException, IOException {
 
-        Occurrence occurrence = new Occurrence();
-        occurrence.setName(getOccurrenceName(projectName, authorityName + "Attestation-" + System.currentTimeMillis()));
-        occurrence.setResourceUrl(resourceUrl);
-        occurrence.setNoteName(getNoteName(infraName, authorityName + "AttestationAuthority"));
-        occurrence.setKind(Occurrence.KindEnum.ATTESTATION_AUTHORITY);
+        Occurrence occurrence = createSignedAttestationOccurrence(authorityName, resourceUrl,
+            authorityName + "Attestation-" + System.currentTimeMillis());
 
-        occurrence.setCreateTime(getCurrenttime());
-        occurrence.setOperationName(CREATE_ATTESTATION_OCCURRENCE_OPERATION);
+        logger.debug("Attestation occurrence before API call: %s", occurrence);
 
-        occurrence.setAttestation(createSignedAttestation(getAuthorityName(authorityName), resourceUrl));
+        Occurrence createdAttestationOccurrence = api.createOccurrence(getProjectName(), occurrence);
 
-        log("Attestation occurrence before API call: " + occurrence);
+        logger.count("occurrences created");
+        logger.debug("Created attestation occurrence  = %s", createdAttestationOccurrence);
+    }
 
-        Occurrence createdAttestationOccurrence = api.createOccurrence(getProjectName(), occurrence);
+    /**
+     * Creates an Attestation Authority occurrence for every authority and resource URL.
+     * Signatures are computed concurrently, by at most maxConcurrency signing processes,
+     * and the occurrences are published once all of them are signed.
+     *
+     * @return the created occurrences
+     * @throws ApiException if an Api call fails
+     * @throws IOException if a signature can't be computed
+     */
+    public List<Occurrence> createAttestationOccurrences(List<String> authorityNames, List<String> resourceUrls, int maxConcurrency)
+            throws ApiException, IOException {
 
-        log("Created attestation occurrence  = " + createdAttestationOccurrence);
+        log("Create " + authorityNames.size() * resourceUrls.size() + " attestation occurrences");
+
+        String timestamp = "" + System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, maxConcurrency));
+        try {
+            // Sign all attestations
+            List<Future<Occurrence>> signed = new ArrayList<Future<Occurrence>>();
+            int index = 0;
+            for (final String resourceUrl : resourceUrls) {
+                for (final String authorityName : authorityNames) {
+                    final String occurrenceId = authorityName + "Attestation-" + timestamp + "-" + index++;
+                    signed.add(executor.submit(new Callable<Occurrence>() {
+                        public Occurrence call() throws Exception {
+                            return createSignedAttestationOccurrence(authorityName, resourceUrl, occurrenceId);
+                        }
+                    }));
+                }
+            }
+            List<Occurrence> occurrences = awaitAll(signed);
+
+            // Publish them together
+            List<Future<Occurrence>> published = new ArrayList<Future<Occurrence>>();
+            for (final Occurrence occurrence : occurrences) {
+                published.add(executor.submit(new Callable<Occurrence>() {
+                    public Occurrence call() throws Exception {
+                        Occurrence created = api.createOccurrence(getProjectName(), occurrence);
+                        logger.count("occurrences created");
+                        logger.sampled("attestation occurrences", GrafeasLog.Level.DEBUG, "Created attestation occurrence  = %s", created);
+                        return created;
+                    }
+                }));
+            }
+            return awaitAll(published);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
@@ -485,10 +745,19 @@ public class GrafeasUtilities {
      */
     public boolean doesAttestationOccurrenceExist(String occurrenceName) throws ApiException {
 
+        if (metadataCache != null) {
+            try {
+                Occurrence occurrence = getCachedResource(getOccurrenceName(getProjectName(), occurrenceName), Occurrence.class);
+                return occurrence != null && occurrence.getAttestation() != null;
+            } catch (IOException e) {
+                log("Metadata cache lookup failed: " + e);
+            }
+        }
+
         boolean fnd = false;
         try {
             Occurrence occurrence = api.getOccurrence(getProjectName(), occurrenceName);
-            log("doesAttestationOccurrenceExist = " + occurrence);
+            logger.debug("doesAttestationOccurrenceExist = %s", occurrence);
             if (occurrence.getAttestation() != null) {
                 fnd = true;
             }
@@ -508,6 +777,7 @@ public class GrafeasUtilities {
     public void deleteOccurrence(String name) throws ApiException {
 
         Empty occurrence = api.deleteOccurrence(getProjectName(), name);
+        invalidateResource(getOccurrenceName(getProjectName(), name));
         log("Deleted occurrence " + name + " " + occurrence);
     }
 
@@ -552,6 +822,16 @@ public class GrafeasUtilities {
         return date.toString();
     }
 
+    /**
+     * Create the build details of the build artifacts, hashing them.
+     *
+     * @return the build details, shared by the build details occurrences of the build
+     * @throws ApiException if an artifact can't be hashed
+     **/
+    public BuildDetails createBuildDetails() throws ApiException {
+        return createBuildDetails(getBuildArtifacts());
+    }
+
     // Create a build details with info.
     //
     private BuildDetails createBuildDetails(List<String> files) throws ApiException {
@@ -592,7 +872,7 @@ public class GrafeasUtilities {
 
         BuildDetails bldDetails = new BuildDetails();
         bldDetails.setProvenance(bldProv);
-        bldDetails.setProvenanceBytes(bldProv.toString());
+        bldDetails.setProvenanceBytes(ProvenanceSerializer.toCanonicalJson(api.getApiClient().getJSON().getGson(), bldProv));
 
         return bldDetails;
     }
@@ -630,7 +910,7 @@ public class GrafeasUtilities {
 
     }
 
-    // Return set of artifacts for the build
+    // Return set of artifacts for the build, each tree hashed artifact followed by its chunks
     //
     private List<Artifact> getArtifacts(List<String> files) throws ApiException {
 
@@ -638,8 +918,17 @@ public class GrafeasUtilities {
         for (String fileStr : files) {
             Artifact artifact = new Artifact();
             File file = new File(fileStr);
+            List<Artifact> chunks = new ArrayList<Artifact>();
 
-            String checksum = createChecksumForFile(fileStr);
+            String checksum = knownChecksums.get(fileStr);
+            if (checksum != null) {
+                log("Known checksum of " + fileStr);
+                if (knownChunks.containsKey(fileStr)) {
+                    chunks.addAll(knownChunks.get(fileStr));
+                }
+            } else {
+                checksum = createChecksum(file, chunks);
+            }
             artifact.setChecksum(checksum);
 
             artifact.setId(file.toURI().toString());
@@ -649,6 +938,15 @@ public class GrafeasUtilities {
             artifact.setNames(names);
 
             artifacts.add(artifact);
+            artifacts.addAll(chunks);
+
+            if (archiveEntryDigester != null && ArchiveEntryDigester.isArchive(file)) {
+                try {
+                    artifacts.addAll(archiveEntryDigester.getEntryArtifacts(file));
+                } catch (IOException e) {
+                    logger.warn("Failed to read archive entries of %s: %s", file, e);
+                }
+            }
 
         }
 
@@ -656,6 +954,15 @@ public class GrafeasUtilities {
         return artifacts;
     }
 
+    // Tree hash of a large artifact, its chunks added to chunks, checksum of the others
+    //
+    private String createChecksum(File file, List<Artifact> chunks) {
+        if (largeFileThreshold > 0 && file.length() >= largeFileThreshold) {
+            return createTreeHashForFile(file, chunks);
+        }
+        return createChecksumForFile(file.getPath());
+    }
+
     // Return source for the build
     //
     private Source getSource() {
@@ -668,7 +975,8 @@ public class GrafeasUtilities {
             Hash hash = new Hash();
 
             hash.setType(Hash.TypeEnum.SHA256);
-            hash.setValue(createHashForFile(sourceFile));
+            byte[] value = knownSourceHashes.get(sourceFile);
+            hash.setValue((value != null) ? value : createHashForFile(sourceFile));
 
             // Add to list Of Hash
             hashes.add(hash);
@@ -697,6 +1005,53 @@ public class GrafeasUtilities {
         return auth;
     }
 
+    // Return an attestation occurrence signed by the authority for the resource
+    //
+    private Occurrence createSignedAttestationOccurrence(String authorityName, String resourceUrl, String occurrenceId) throws IOException {
+
+        Occurrence occurrence = new Occurrence();
+        occurrence.setName(getOccurrenceName(projectName, occurrenceId));
+        occurrence.setResourceUrl(resourceUrl);
+        occurrence.setNoteName(getNoteName(infraName, authorityName + "AttestationAuthority"));
+        occurrence.setKind(Occurrence.KindEnum.ATTESTATION_AUTHORITY);
+
+        occurrence.setCreateTime(getCurrenttime());
+        occurrence.setOperationName(CREATE_ATTESTATION_OCCURRENCE_OPERATION);
+
+        occurrence.setAttestation(createSignedAttestation(getAuthorityName(authorityName), resourceUrl));
+
+        return occurrence;
+    }
+
+    // Wait for all tasks, rethrowing the first failure once every task is done
+    //
+    private static <T> List<T> awaitAll(List<Future<T>> futures) throws ApiException, IOException {
+        List<T> results = new ArrayList<T>();
+        Throwable failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for attestations", e);
+            }
+        }
+        if (failure instanceof ApiException) {
+            throw (ApiException) failure;
+        } else if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+        return results;
+    }
+
     // Return Attestation
     //
     private Attestation createSignedAttestation(String authorityName, String resourceUrl) throws IOException {
@@ -704,8 +1059,10 @@ public class GrafeasUtilities {
 
         GPGScriptWrapper gpg = new GPGScriptWrapper();
 
-        String signedData = GPGScriptWrapper.sign(authorityName, resourceUrl);
-        String key = GPGScriptWrapper.getKeyID(signedData);
+        String signedData = GPGScriptWrapper.sign(authorityName, resourceUrl, logger);
+
+        // The key that actually signed, which is not necessarily the first key of the authority
+        String key = (signedData != null) ? GPGScriptWrapper.getKeyID(signedData, logger) : null;
 
         //log("Authority name: " + authorityName + ", resourceUrl: " + resourceUrl);
         //log( "Signed data: " + signedData);
@@ -723,7 +1080,8 @@ public class GrafeasUtilities {
         Attestation attest = new Attestation();
         attest.setPgpSignedAttestation(signedAttest);
 
-        log("Returning Attestation element: " + attest.toString());
+        logger.count("attestations signed");
+        logger.debug("Returning Attestation element: %s", attest);
 
         return attest;
     }
@@ -750,18 +1108,98 @@ public class GrafeasUtilities {
         return getProjectPrefix(project) + "/" + OCCURRENCES + "/" + name;
     }
 
+    // Get the URL of a note or occurrence - <base path>/v1alpha1/<resource name>
+    //
+    private String getResourceUrl(String resourceName) {
+        String basePath = api.getApiClient().getBasePath();
+        return (basePath.endsWith("/") ? basePath : basePath + "/") + "v1alpha1/" + resourceName;
+    }
+
+    // Return the note or occurrence from the metadata cache, which asks the server when it isn't
+    // cached or is stale, null if the server doesn't know it
+    //
+    private <T> T getCachedResource(String resourceName, Class<T> type) throws IOException {
+        String json = metadataCache.get(getResourceUrl(resourceName));
+        if (json == null) {
+            return null;
+        }
+        try {
+            return api.getApiClient().getJSON().deserialize(json, type);
+        } catch (RuntimeException e) {
+            metadataCache.invalidate(getResourceUrl(resourceName));
+            throw new IOException("Invalid cached " + resourceName + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Return true if the note or occurrence is known to exist without asking the server
+    //
+    private boolean isCached(String resourceName) {
+        return metadataCache != null && metadataCache.isFresh(getResourceUrl(resourceName));
+    }
+
+    // Return true if the Api call failed because the resource already exists
+    //
+    static boolean isAlreadyExists(ApiException e) {
+        return GrafeasHttp.isAlreadyExists(e.getCode(), e.getResponseBody());
+    }
+
+    // Name of a note as created by the server, else the name it was created under
+    //
+    private String getCreatedName(Note createdNote, String project, String name) {
+        return (createdNote != null && createdNote.getName() != null) ? createdNote.getName() : getNoteName(project, name);
+    }
+
+    // Record a note or occurrence known to exist
+    //
+    private void cacheResource(String resourceName, Object resource) {
+        if (metadataCache != null && resourceName != null) {
+            metadataCache.put(getResourceUrl(resourceName), api.getApiClient().getJSON().serialize(resource));
+        }
+    }
+
+    private void invalidateResource(String resourceName) {
+        if (metadataCache != null) {
+            metadataCache.invalidate(getResourceUrl(resourceName));
+        }
+    }
+
     // Get authority name - projects/<project name>/attestationAuthorities/<authority name>
     //
     private String getAuthorityName(String name) {
         return getProjectPrefix(getInfraName()) + "/" + AUTHORITIES + "/" + name;
     }
 
+    /**
+     * Convert a glob, where * matches any sequence and ? any single character, to a regular
+     * expression matching the same strings. Everything else is matched literally.
+     */
+    public static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+
     // Create a checksum for a file using a message digest.
     //
-    private String createChecksumForFile(String filename) {
+    public static String createChecksumForFile(String filename) {
 
         long versionNumber = 0;
         CheckedInputStream cis = null;
+        Tracer.Span span = Tracer.start("hash", "checksum").arg("file", filename);
         try {
             // Compute checksum for file using Adler32
             cis = new CheckedInputStream(new FileInputStream(filename), new Adler32());
@@ -775,21 +1213,53 @@ public class GrafeasUtilities {
                 try {
                     cis.close();
                 } catch (IOException ignore) {}
+            span.end();
         }
 
         String versionString = (new Long(versionNumber)).toString();
         return versionString;
     }
 
+    // Create a tree hash for a large file, hashing its chunks in parallel. Each chunk is added
+    // to chunks as an artifact of its own, identified as <file URI>#chunk=<index>
+    //
+    private String createTreeHashForFile(File file, List<Artifact> chunks) {
+        Tracer.Span span = Tracer.start("hash", "treeHash").arg("file", file.getPath());
+        try {
+            TreeHasher.TreeHash treeHash = treeHasher.hash(file);
+
+            List<byte[]> digests = treeHash.getChunkDigests();
+            for (int i = 0; i < digests.size(); i++) {
+                String id = file.toURI().toString() + "#chunk=" + i;
+                Artifact chunk = new Artifact();
+                chunk.setId(id);
+                chunk.setChecksum(ArchiveEntryDigester.SHA256_PREFIX + TreeHasher.toHex(digests.get(i)));
+                List<String> names = new ArrayList<String>();
+                names.add(id);
+                chunk.setNames(names);
+                chunks.add(chunk);
+            }
+
+            log("Tree hashed " + file + " in " + digests.size() + " chunks");
+            return treeHash.toChecksum();
+        } catch (IOException e) {
+            logger.warn("Failed to tree hash %s: %s", file, e);
+            return createChecksumForFile(file.getPath());
+        } finally {
+            span.end();
+        }
+    }
+
     // Create a checksum for a file using a message digest.
     //
     public static byte[] createHashForFile(String filename) {
 
+        Tracer.Span span = Tracer.start("hash", "sha256").arg("file", filename);
         try {
             InputStream fis = new FileInputStream(filename);
 
             byte[] buffer = new byte[1024];
-            MessageDigest complete = MessageDigest.getInstance("SHA2");
+            MessageDigest complete = MessageDigest.getInstance("SHA-256");
             int numRead;
             do {
                 numRead = fis.read(buffer);
@@ -801,21 +1271,21 @@ public class GrafeasUtilities {
             return complete.digest();
         } catch (Exception e) {
             return null;
+        } finally {
+            span.end();
         }
     }
 
     // Log debug output
     //
     private void log(String msg) {
-        if (debug) {
-            System.out.println(msg);
-        }
+        logger.debug(msg);
     }
 
     // Log the fields in an ApiException
     //
     private void logException(ApiException e) {
-        if (!debug)
+        if (!logger.isDebugEnabled())
             return;
 
         log("ApiException: msg = " + e);
@@ -0,0 +1,60 @@
+/**
+ * JSON Stream Body
+ * Request body writing a JSON object straight to the connection.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.RequestBody;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import net.minidev.json.JSONObject;
+import net.minidev.json.JSONStyle;
+
+import okio.BufferedSink;
+
+/**
+ * Serializes a json-smart object into the request body while it is sent, without building the
+ * JSON string first. Slashes are not escaped, so resource URLs are sent as they are.
+ * The body can be written more than once, for retries.
+ */
+public class JSONStreamBody extends RequestBody {
+
+    public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    // FLAG_PROTECT_4WEB turns off the escaping of '/'
+    //
+    private static final JSONStyle NO_SLASH_ESCAPING = new JSONStyle(JSONStyle.FLAG_PROTECT_4WEB);
+
+    private final JSONObject json;
+
+    public JSONStreamBody(JSONObject json) {
+        this.json = json;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        Writer out = new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8);
+        json.writeJSONString(out, NO_SLASH_ESCAPING);
+        out.flush();
+    }
+
+    /**
+     * Return the JSON as sent, for logging
+     */
+    public static String toString(JSONObject json) {
+        return json.toJSONString(NO_SLASH_ESCAPING);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Latency Tracker
+ * Recent latencies of the reads from a server.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the last reads from a server in a ring, to derive the delay after
+ * which a read is hedged. A percentile is only given once enough reads were seen.
+ */
+public class LatencyTracker {
+
+    public static final int DEFAULT_SIZE = 256;
+    public static final int MIN_SAMPLES = 20;
+
+    private final long[] samples;
+    private int count = 0;
+    private int next = 0;
+
+    public LatencyTracker() {
+        this(DEFAULT_SIZE);
+    }
+
+    public LatencyTracker(int size) {
+        this.samples = new long[size];
+    }
+
+    /**
+     * Record the latency of a read
+     */
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    /**
+     * Get the latency percentile of the recent reads, -1 if there are not enough of them
+     *
+     * @param percentile  0 to 100
+     */
+    public long percentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * Metadata Cache
+ * Persistent local mirror of the Grafeas notes and occurrences already seen.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.oracle.sscm.client.log.GrafeasLog;
+
+/**
+ * Keeps the notes and occurrences known to exist on the Grafeas server in a directory shared by
+ * the builds of an agent, when one is configured, one properties file per resource URL holding the JSON, the ETag and
+ * Last-Modified headers, the update time of the resource and the time it was last validated.
+ *
+ * A lookup within the TTL is answered from disk. After the TTL the entry is revalidated with a
+ * conditional GET, so an unchanged resource costs a 304 without body. Resources that don't
+ * exist are never cached, as they are usually created right after the lookup.
+ */
+public class MetadataCache {
+
+    public static final String CACHE_ENV_VAR = "GRAFEAS_METADATA_CACHE";
+    public static final String CACHE_TTL_ENV_VAR = "GRAFEAS_METADATA_CACHE_TTL";
+    public static final String CACHE_DISABLED = "none";
+    public static final long DEFAULT_TTL_SECONDS = 3600;
+
+    private static final String URL = "url";
+    private static final String BODY = "body";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String UPDATE_TIME = "updateTime";
+    private static final String VALIDATED = "validated";
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_NOT_FOUND = 404;
+
+    // Directory of the entries
+    private final File directory;
+
+    // Time an entry is used without revalidation
+    private final long ttlMillis;
+
+    // Client sending the conditional requests
+    private final OkHttpClient client;
+
+    // Entries that can't be stored or deleted
+    private volatile GrafeasLog logger = GrafeasLog.console(false);
+
+    /**
+     * @param directory  directory of the entries, created if needed
+     * @param ttlMillis  time an entry is used without revalidation
+     * @param client     client sending the requests, the client of the caller
+     * @throws IOException if the directory can't be created
+     */
+    public MetadataCache(File directory, long ttlMillis, OkHttpClient client) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create metadata cache directory " + directory);
+        }
+        this.directory = directory;
+        this.ttlMillis = ttlMillis;
+        this.client = GrafeasHttp.install(client);
+    }
+
+    /**
+     * Return the cache configured by the environment, null if disabled.
+     *
+     * The cache is opt-in: GRAFEAS_METADATA_CACHE is the directory of the entries, unset or
+     * "none" to disable the cache. GRAFEAS_METADATA_CACHE_TTL is the TTL in seconds, one hour
+     * by default.
+     *
+     * @param client  client sending the requests, the client of the caller
+     * @param logger  log of the configuration and storage problems
+     */
+    public static MetadataCache createDefault(OkHttpClient client, GrafeasLog logger) {
+        String cacheDir = System.getenv(CACHE_ENV_VAR);
+        if (cacheDir == null || cacheDir.trim().isEmpty() || CACHE_DISABLED.equals(cacheDir)) {
+            return null;
+        }
+
+        long ttlSeconds = DEFAULT_TTL_SECONDS;
+        String ttl = System.getenv(CACHE_TTL_ENV_VAR);
+        if (ttl != null) {
+            try {
+                ttlSeconds = Long.parseLong(ttl.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid %s '%s', using %d", CACHE_TTL_ENV_VAR, ttl, DEFAULT_TTL_SECONDS);
+            }
+        }
+
+        try {
+            MetadataCache cache = new MetadataCache(new File(cacheDir), TimeUnit.SECONDS.toMillis(ttlSeconds), client);
+            cache.setLog(logger);
+            return cache;
+        } catch (IOException ioe) {
+            logger.warn("Metadata cache is disabled: %s", ioe);
+            return null;
+        }
+    }
+
+    /**
+     * Set the log of the entries that can't be stored or deleted
+     */
+    public void setLog(GrafeasLog logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Return the JSON of the resource, null if it doesn't exist on the server. The server is
+     * only asked when the resource isn't cached or its TTL has expired.
+     *
+     * @throws IOException if the server can't be asked or answers with an error
+     */
+    public String get(String url) throws IOException {
+        Properties entry = read(url);
+        long now = System.currentTimeMillis();
+        if (entry != null && now - Long.parseLong(entry.getProperty(VALIDATED, "0")) < ttlMillis) {
+            return entry.getProperty(BODY);
+        }
+
+        Request.Builder request = new Request.Builder().url(url).get();
+        if (entry != null) {
+            if (entry.getProperty(ETAG) != null) {
+                request.header("If-None-Match", entry.getProperty(ETAG));
+            }
+            if (entry.getProperty(LAST_MODIFIED) != null) {
+                request.header("If-Modified-Since", entry.getProperty(LAST_MODIFIED));
+            }
+        }
+
+        Response response = client.newCall(request.build()).execute();
+        try {
+            int code = response.code();
+            if (code == HTTP_NOT_MODIFIED && entry != null) {
+                entry.setProperty(VALIDATED, Long.toString(now));
+                write(url, entry);
+                return entry.getProperty(BODY);
+            }
+            if (code == HTTP_NOT_FOUND) {
+                invalidate(url);
+                return null;
+            }
+            if (code != HTTP_OK) {
+                throw new IOException("GET " + url + " failed: " + code + " " + response.message());
+            }
+
+            String body = response.body().string();
+            put(url, body, response.header("ETag"), response.header("Last-Modified"));
+            return body;
+        } finally {
+            response.body().close();
+        }
+    }
+
+    /**
+     * Return true if the resource is cached and within its TTL, without asking the server
+     */
+    public boolean isFresh(String url) {
+        Properties entry = read(url);
+        return entry != null && System.currentTimeMillis() - Long.parseLong(entry.getProperty(VALIDATED, "0")) < ttlMillis;
+    }
+
+    /**
+     * Return true if the resource exists on the server
+     *
+     * @throws IOException if the server can't be asked or answers with an error
+     */
+    public boolean exists(String url) throws IOException {
+        return get(url) != null;
+    }
+
+    /**
+     * Record a resource just created or read, such as the response of a POST
+     */
+    public void put(String url, String body) {
+        put(url, body, null, null);
+    }
+
+    /**
+     * Forget the resource, for example after deleting it
+     */
+    public void invalidate(String url) {
+        File file = getFile(url);
+        if (file.exists() && !file.delete()) {
+            logger.warn("Failed to delete metadata cache entry %s", file);
+        }
+    }
+
+    private void put(String url, String body, String etag, String lastModified) {
+        Properties entry = new Properties();
+        entry.setProperty(URL, url);
+        entry.setProperty(BODY, body);
+        if (etag != null) {
+            entry.setProperty(ETAG, etag);
+        }
+        if (lastModified != null) {
+            entry.setProperty(LAST_MODIFIED, lastModified);
+        }
+        String updateTime = getUpdateTime(body);
+        if (updateTime != null) {
+            entry.setProperty(UPDATE_TIME, updateTime);
+        }
+        entry.setProperty(VALIDATED, Long.toString(System.currentTimeMillis()));
+        write(url, entry);
+    }
+
+    // Return the entry of the URL, null if not cached or unreadable
+    //
+    private Properties read(String url) {
+        File file = getFile(url);
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties entry = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                entry.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException ioe) {
+            return null;
+        }
+        // Guard against hash collisions and partial entries
+        return (url.equals(entry.getProperty(URL)) && entry.getProperty(BODY) != null) ? entry : null;
+    }
+
+    // Write then rename, so that concurrent builds never read a partial entry
+    //
+    private void write(String url, Properties entry) {
+        File target = getFile(url);
+        try {
+            File tmp = File.createTempFile(target.getName(), ".tmp", directory);
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                entry.store(out, null);
+            } finally {
+                out.close();
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            logger.warn("Failed to store metadata cache entry for %s: %s", url, ioe);
+        }
+    }
+
+    private File getFile(String url) {
+        return new File(directory, TreeHasher.toHex(TreeHasher.newDigest().digest(url.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    // Extract the top level updateTime, or else createTime, of the resource JSON
+    //
+    private static String getUpdateTime(String body) {
+        try {
+            JsonElement json = new JsonParser().parse(body);
+            if (!json.isJsonObject()) {
+                return null;
+            }
+            for (String field : new String[] {"updateTime", "createTime"}) {
+                JsonElement time = json.getAsJsonObject().get(field);
+                if (time != null && time.isJsonPrimitive()) {
+                    return time.getAsString();
+                }
+            }
+        } catch (RuntimeException e) {
+            // Not JSON, keep the entry without update time
+        }
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Provenance Serializer
+ * Canonical, compact JSON form of the Grafeas models.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Serializes models, such as a BuildProvenance, to canonical JSON: no whitespace, object
+ * members sorted by name, null members omitted and no HTML escaping. The same model always
+ * gives the same bytes, so the payload can be signed or diffed. Models are converted with the
+ * Gson of the Grafeas ApiClient, so that their fields are named and typed as on the wire.
+ */
+public final class ProvenanceSerializer {
+
+    private ProvenanceSerializer() {
+    }
+
+    /**
+     * Return the canonical JSON of the model
+     *
+     * @param gson Gson of the ApiClient - ApiClient.getJSON().getGson()
+     */
+    public static String toCanonicalJson(Gson gson, Object model) {
+        StringWriter out = new StringWriter(1024);
+        try {
+            write(gson, model, out);
+        } catch (IOException e) {
+            // Not thrown by a StringWriter
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Stream the canonical JSON of the model to the writer, the writer is not closed
+     *
+     * @param gson Gson of the ApiClient - ApiClient.getJSON().getGson()
+     * @throws IOException if the writer fails
+     */
+    public static void write(Gson gson, Object model, Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setHtmlSafe(false);
+        writeElement(gson.toJsonTree(model), writer);
+        writer.flush();
+    }
+
+    private static void writeElement(JsonElement element, JsonWriter writer) throws IOException {
+        if (element == null || element.isJsonNull()) {
+            writer.nullValue();
+        } else if (element.isJsonObject()) {
+            // Sort the members so that the output doesn't depend on field or map order
+            TreeMap<String, JsonElement> members = new TreeMap<String, JsonElement>();
+            for (Map.Entry<String, JsonElement> member : ((JsonObject) element).entrySet()) {
+                if (!member.getValue().isJsonNull()) {
+                    members.put(member.getKey(), member.getValue());
+                }
+            }
+            writer.beginObject();
+            for (Map.Entry<String, JsonElement> member : members.entrySet()) {
+                writer.name(member.getKey());
+                writeElement(member.getValue(), writer);
+            }
+            writer.endObject();
+        } else if (element.isJsonArray()) {
+            writer.beginArray();
+            for (JsonElement item : (JsonArray) element) {
+                writeElement(item, writer);
+            }
+            writer.endArray();
+        } else {
+            JsonPrimitive primitive = (JsonPrimitive) element;
+            if (primitive.isBoolean()) {
+                writer.value(primitive.getAsBoolean());
+            } else if (primitive.isNumber()) {
+                writer.value(primitive.getAsNumber());
+            } else {
+                writer.value(primitive.getAsString());
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Tree Hasher
+ * Parallel, chunked SHA-256 hashing of large files.
+ *
+ */
+
+
+package com.oracle.sscm.client.grafeas;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.oracle.sscm.client.log.Tracer;
+
+/**
+ * Hashes a file as a one level tree: the file is split into fixed-size chunks, each chunk
+ * is read through a bounded buffer and hashed with SHA-256 on a fork-join pool, and the tree
+ * hash is the SHA-256 of the concatenated chunk digests. Hashing time scales with the number
+ * of cores.
+ */
+public class TreeHasher {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    public static final String TREE_HASH_PREFIX = "sha256tree:";
+
+    private static final String SHA256 = "SHA-256";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Size of the chunks, the last chunk may be smaller
+    private final int chunkSize;
+
+    // Pool hashing the chunks
+    private final ForkJoinPool pool;
+
+    public TreeHasher() {
+        this(DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public TreeHasher(int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Get the chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Hash the file.
+     *
+     * @throws IOException if the file can't be read
+     */
+    public TreeHash hash(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            int chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+            byte[][] digests = new byte[chunks][];
+
+            try {
+                pool.invoke(new HashChunks(Tracer.current(), channel, size, digests, 0, chunks));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            MessageDigest root = newDigest();
+            List<byte[]> chunkDigests = new ArrayList<byte[]>(chunks);
+            for (byte[] digest : digests) {
+                root.update(digest);
+                chunkDigests.add(digest);
+            }
+            return new TreeHash(root.digest(), chunkDigests);
+        } finally {
+            raf.close();
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(SHA256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    public static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Tree hash of a file with the digests of its chunks, in file order
+     */
+    public static class TreeHash {
+        private final byte[] root;
+        private final List<byte[]> chunkDigests;
+
+        TreeHash(byte[] root, List<byte[]> chunkDigests) {
+            this.root = root;
+            this.chunkDigests = Collections.unmodifiableList(chunkDigests);
+        }
+
+        /**
+         * Get the SHA-256 of the concatenated chunk digests
+         */
+        public byte[] getRoot() {
+            return root;
+        }
+
+        /**
+         * Get the SHA-256 digests of the chunks
+         */
+        public List<byte[]> getChunkDigests() {
+            return chunkDigests;
+        }
+
+        /**
+         * Get the tree hash as checksum string - sha256tree:<hex digest>
+         */
+        public String toChecksum() {
+            return TREE_HASH_PREFIX + toHex(root);
+        }
+    }
+
+    // Hash the chunks [from, to), splitting the range until a single chunk is left
+    //
+    private class HashChunks extends RecursiveAction {
+        // Tracer of the goal, the pool threads don't reliably inherit it
+        private final Tracer tracer;
+        private final FileChannel channel;
+        private final long size;
+        private final byte[][] digests;
+        private final int from;
+        private final int to;
+
+        HashChunks(Tracer tracer, FileChannel channel, long size, byte[][] digests, int from, int to) {
+            this.tracer = tracer;
+            this.channel = channel;
+            this.size = size;
+            this.digests = digests;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new HashChunks(tracer, channel, size, digests, from, middle),
+                          new HashChunks(tracer, channel, size, digests, middle, to));
+                return;
+            }
+
+            long position = (long) from * chunkSize;
+            long end = position + Math.min(chunkSize, size - position);
+            MessageDigest md = newDigest();
+            Tracer.Span span = Tracer.start(tracer, "hash", "chunk").arg("index", from);
+            try {
+                hash(md, position, end);
+            } finally {
+                span.end();
+            }
+            digests[from] = md.digest();
+        }
+
+        // Digest the bytes [position, end) of the file
+        //
+        private void hash(MessageDigest md, long position, long end) {
+            if (end > position) {
+                // Positional reads, the channel is shared by the tasks
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, end - position));
+                try {
+                    while (position < end) {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                        int read = channel.read(buffer, position);
+                        if (read < 0) {
+                            throw new IOException("File truncated while hashing at " + position);
+                        }
+                        md.update(buffer.array(), 0, buffer.position());
+                        position += read;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Grafeas Log
+ * Level-aware, lazy and sampled logging of the goals and utilities.
+ *
+ */
+
+
+package com.oracle.sscm.client.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Writes messages to a sink, such as the Maven log, when their level is enabled. A message is
+ * only built when it is written: it is either a format whose arguments are rendered by
+ * String.format, or a Supplier.
+ *
+ * Repetitive lines, such as one line per occurrence, are logged under a category. Only the
+ * first lines of a category and then one line out of every N are written, but all of them are
+ * counted, and the counts are reported by the end-of-run summary.
+ */
+public class GrafeasLog {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    /**
+     * Destination of the messages
+     */
+    public interface Sink {
+        void write(Level level, String message);
+    }
+
+    /**
+     * Debug and info to the standard output, warnings and errors to the standard error
+     */
+    public static final Sink CONSOLE = new Sink() {
+        public void write(Level level, String message) {
+            if (level.compareTo(Level.WARN) >= 0) {
+                System.err.println(message);
+            } else {
+                System.out.println(message);
+            }
+        }
+    };
+
+    public static final int DEFAULT_SAMPLE_FIRST = 10;
+    public static final int DEFAULT_SAMPLE_EVERY = 100;
+
+    private final Sink sink;
+    private volatile Level level;
+
+    // Lines of a category written before sampling starts, then one out of sampleEvery
+    private volatile int sampleFirst = DEFAULT_SAMPLE_FIRST;
+    private volatile int sampleEvery = DEFAULT_SAMPLE_EVERY;
+
+    // Category -> lines counted and written
+    private final ConcurrentMap<String, Counts> categories = new ConcurrentHashMap<String, Counts>();
+
+    private final long startTime = System.nanoTime();
+
+    public GrafeasLog(Sink sink, Level level) {
+        this.sink = sink;
+        this.level = level;
+    }
+
+    /**
+     * Return a log to the console, at debug level if debug is true, info level otherwise
+     */
+    public static GrafeasLog console(boolean debug) {
+        return new GrafeasLog(CONSOLE, debug ? Level.DEBUG : Level.INFO);
+    }
+
+    /**
+     * Set the lowest level written
+     */
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the lowest level written
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Set the number of lines of a category written before sampling, then one line out of every
+     */
+    public void setSampling(int first, int every) {
+        this.sampleFirst = Math.max(0, first);
+        this.sampleEvery = Math.max(1, every);
+    }
+
+    /**
+     * Return true if messages of the level are written
+     */
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public void debug(String format, Object... args) {
+        log(Level.DEBUG, format, args);
+    }
+
+    public void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public void info(String format, Object... args) {
+        log(Level.INFO, format, args);
+    }
+
+    public void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    public void warn(String format, Object... args) {
+        log(Level.WARN, format, args);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    public void error(String format, Object... args) {
+        log(Level.ERROR, format, args);
+    }
+
+    public void log(Level messageLevel, String message) {
+        if (isEnabled(messageLevel)) {
+            sink.write(messageLevel, message);
+        }
+    }
+
+    public void log(Level messageLevel, String format, Object... args) {
+        if (isEnabled(messageLevel)) {
+            sink.write(messageLevel, String.format(format, args));
+        }
+    }
+
+    public void log(Level messageLevel, Supplier<String> message) {
+        if (isEnabled(messageLevel)) {
+            sink.write(messageLevel, message.get());
+        }
+    }
+
+    /**
+     * Count a line of the category, and write it unless sampled out
+     */
+    public void sampled(String category, Level messageLevel, String format, Object... args) {
+        Counts counts = getCounts(category);
+        long n = counts.total.incrementAndGet();
+        if (!isEnabled(messageLevel) || (n > sampleFirst && n % sampleEvery != 0)) {
+            return;
+        }
+        counts.written.incrementAndGet();
+        String message = String.format(format, args);
+        sink.write(messageLevel, (n > sampleFirst) ? message + " [" + category + " #" + n + "]" : message);
+    }
+
+    /**
+     * Count an event of the category without writing anything
+     */
+    public void count(String category) {
+        getCounts(category).total.incrementAndGet();
+    }
+
+    /**
+     * Get the number of lines or events counted for the category
+     */
+    public long getCount(String category) {
+        Counts counts = categories.get(category);
+        return (counts != null) ? counts.total.get() : 0;
+    }
+
+    /**
+     * Get the summary lines: elapsed time and count of every category
+     */
+    public List<String> getSummary() {
+        List<String> lines = new ArrayList<String>();
+        lines.add(String.format("Elapsed: %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+        for (Map.Entry<String, Counts> category : new TreeMap<String, Counts>(categories).entrySet()) {
+            long total = category.getValue().total.get();
+            long written = category.getValue().written.get();
+            if (written > 0 && written < total) {
+                lines.add(String.format("%s: %d (%d logged)", category.getKey(), total, written));
+            } else {
+                lines.add(String.format("%s: %d", category.getKey(), total));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Write the summary at info level
+     */
+    public void logSummary() {
+        for (String line : getSummary()) {
+            info(line);
+        }
+    }
+
+    private Counts getCounts(String category) {
+        Counts counts = categories.get(category);
+        if (counts == null) {
+            categories.putIfAbsent(category, new Counts());
+            counts = categories.get(category);
+        }
+        return counts;
+    }
+
+    private static class Counts {
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong written = new AtomicLong();
+    }
+}
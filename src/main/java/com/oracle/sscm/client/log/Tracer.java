@@ -0,0 +1,235 @@
+/**
+ * Tracer
+ * Timeline of the operations of a goal, in the Chrome trace event format.
+ *
+ */
+
+
+package com.oracle.sscm.client.log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.minidev.json.JSONObject;
+
+/**
+ * Records the start, duration and thread of the operations of a goal - Grafeas requests,
+ * file and chunk hashing, GPG script calls, uploads - and writes them as complete ("X") events of the Chrome trace
+ * event format, which chrome://tracing and Perfetto open. Each thread is a track of the
+ * timeline, so overlapping and stalled operations are visible.
+ *
+ * A goal begins the tracer on the thread that runs it. The tracer is inherited by the threads
+ * that thread starts, as the Deadline is, so the operations of the executors of the goal are
+ * recorded too. The tasks of shared pools, such as the chunk hashing on the common pool, are
+ * given the tracer explicitly. An event is written when its operation ends, nothing is kept in memory.
+ * Without a tracer, starting a span costs a thread local lookup.
+ */
+public final class Tracer {
+
+    private static final InheritableThreadLocal<Tracer> current = new InheritableThreadLocal<Tracer>();
+
+    // Span of the operations that are not traced
+    private static final Span NO_SPAN = new Span(null, null, null);
+
+    private final File file;
+    private final Writer writer;
+    private final long origin = System.nanoTime();
+
+    // Thread ids named in the trace
+    private final ConcurrentMap<Long, Boolean> threads = new ConcurrentHashMap<Long, Boolean>();
+
+    private boolean closed = false;
+    private int events = 0;
+
+    private Tracer(File file) throws IOException {
+        this.file = file;
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 64 * 1024);
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+    }
+
+    /**
+     * Begin tracing the current thread and the threads it starts
+     *
+     * @param traceFile  file of the trace, null or empty for no tracing
+     * @throws IOException if the file can't be created
+     */
+    public static Tracer begin(String traceFile) throws IOException {
+        if (traceFile == null || traceFile.isEmpty()) {
+            current.remove();
+            return null;
+        }
+        Tracer tracer = new Tracer(new File(traceFile));
+        current.set(tracer);
+        return tracer;
+    }
+
+    /**
+     * End the tracing of the current thread and complete the trace file. The operations still
+     * running in other threads are not recorded.
+     *
+     * @throws IOException if the file can't be written
+     */
+    public static void end() throws IOException {
+        Tracer tracer = current.get();
+        current.remove();
+        if (tracer != null) {
+            tracer.close();
+        }
+    }
+
+    /**
+     * Stop tracing the current thread without completing the trace, for a thread of a shared
+     * pool that would otherwise keep the tracer of the goal that started it
+     */
+    public static void detach() {
+        current.remove();
+    }
+
+    /**
+     * Get the tracer of the current thread, null if none
+     */
+    public static Tracer current() {
+        return current.get();
+    }
+
+    /**
+     * Start a span of the current thread, to end in a finally block
+     *
+     * @param category  kind of operation: goal, http, hash, upload, or the GPG script command
+     *                  such as sign or verify-signature
+     */
+    public static Span start(String category, String name) {
+        return start(current.get(), category, name);
+    }
+
+    /**
+     * Start a span of the given tracer, for a thread of a shared pool that doesn't inherit
+     * the tracer of the goal it works for
+     *
+     * @param tracer  tracer of the goal, null if not traced
+     */
+    public static Span start(Tracer tracer, String category, String name) {
+        return (tracer != null) ? new Span(tracer, category, name) : NO_SPAN;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the number of events written
+     */
+    public synchronized int getEvents() {
+        return events;
+    }
+
+    private synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writer.write("\n]}\n");
+        writer.close();
+    }
+
+    // Write the complete event of a span, and the name of its thread the first time
+    //
+    private void record(Span span, long end) {
+        Thread thread = Thread.currentThread();
+        long tid = thread.getId();
+        JSONObject nameEvent = null;
+        if (threads.putIfAbsent(tid, Boolean.TRUE) == null) {
+            JSONObject args = new JSONObject();
+            args.put("name", thread.getName());
+            nameEvent = new JSONObject();
+            nameEvent.put("name", "thread_name");
+            nameEvent.put("ph", "M");
+            nameEvent.put("pid", 1);
+            nameEvent.put("tid", tid);
+            nameEvent.put("args", args);
+        }
+        JSONObject event = new JSONObject();
+        event.put("name", span.name);
+        event.put("cat", span.category);
+        event.put("ph", "X");
+        event.put("ts", (span.start - origin) / 1000);
+        event.put("dur", Math.max(0, (end - span.start) / 1000));
+        event.put("pid", 1);
+        event.put("tid", tid);
+        if (span.args != null) {
+            event.put("args", span.args);
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (nameEvent != null) {
+                    writeEvent(nameEvent);
+                }
+                writeEvent(event);
+            } catch (IOException e) {
+                // A trace that can't be written must not fail the goal
+                closed = true;
+            }
+        }
+    }
+
+    private void writeEvent(JSONObject event) throws IOException {
+        if (events++ > 0) {
+            writer.write(",\n");
+        }
+        event.writeJSONString(writer);
+    }
+
+    /**
+     * An operation being traced
+     */
+    public static final class Span {
+        private final Tracer tracer;
+        private final String category;
+        private final String name;
+        private final long start;
+        private JSONObject args;
+
+        private Span(Tracer tracer, String category, String name) {
+            this.tracer = tracer;
+            this.category = category;
+            this.name = name;
+            this.start = (tracer != null) ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Add an argument shown with the event
+         */
+        public Span arg(String key, Object value) {
+            if (tracer != null) {
+                if (args == null) {
+                    args = new JSONObject();
+                }
+                args.put(key, value);
+            }
+            return this;
+        }
+
+        /**
+         * End the operation, on the thread that started it
+         */
+        public void end() {
+            if (tracer != null) {
+                tracer.record(this, System.nanoTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * NVD Feed Reader
+ * Streaming reader of the NVD JSON vulnerability feeds.
+ *
+ */
+
+
+package com.oracle.sscm.client.nvd;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import net.minidev.json.JSONObject;
+
+/**
+ * Reads the CVE_Items of an NVD JSON feed (nvdcve-1.1-*.json, optionally gzipped) one item at
+ * a time and turns each of them into a PACKAGE_VULNERABILITY note of the build-infrastructure
+ * project, the same note the securityScan goal creates for a CVE. Only the current item is
+ * kept in memory, so the full yearly feeds can be read with a small heap.
+ */
+public class NvdFeedReader implements Closeable {
+
+    public static final String NOTES_PROJECT_ID = "build-infrastructure";
+    public static final String NOTE_NAME = "projects/" + NOTES_PROJECT_ID + "/notes/%s";
+
+    private static final String CVE_ITEMS = "CVE_Items";
+
+    private final JsonReader reader;
+    private final JsonParser parser = new JsonParser();
+
+    // True once positioned inside the CVE_Items array
+    private boolean inItems = false;
+
+    /**
+     * Open the feed file, a name ending with .gz is read as gzipped
+     *
+     * @throws IOException if the file can't be opened
+     */
+    public NvdFeedReader(File feedFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(feedFile), 64 * 1024);
+        if (feedFile.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        this.reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return the note of the next CVE item, null at the end of the feed
+     *
+     * @throws IOException if the feed can't be read or isn't an NVD JSON feed
+     */
+    public JSONObject nextNote() throws IOException {
+        while (true) {
+            JsonElement item = nextItem();
+            if (item == null) {
+                return null;
+            }
+            JSONObject note = toNote(item.getAsJsonObject());
+            if (note != null) {
+                return note;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // Return the next element of the CVE_Items array, null at the end
+    //
+    private JsonElement nextItem() throws IOException {
+        if (!inItems) {
+            if (reader.peek() == JsonToken.END_DOCUMENT) {
+                return null;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (CVE_ITEMS.equals(reader.nextName())) {
+                    reader.beginArray();
+                    inItems = true;
+                    break;
+                }
+                reader.skipValue();
+            }
+            if (!inItems) {
+                throw new IOException("No " + CVE_ITEMS + " in NVD feed");
+            }
+        }
+        if (!reader.hasNext()) {
+            return null;
+        }
+        try {
+            return parser.parse(reader);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid NVD feed item: " + e.getMessage(), e);
+        }
+    }
+
+    // Build the note of a CVE item, null if the item has no CVE ID
+    //
+    static JSONObject toNote(JsonObject item) {
+        JsonObject cve = getObject(item, "cve");
+        String id = getString(getObject(cve, "CVE_data_meta"), "ID");
+        if (id == null) {
+            return null;
+        }
+
+        // CVSS v3 when scored, v2 otherwise
+        String severity = null;
+        Double cvssScore = null;
+        JsonObject impact = getObject(item, "impact");
+        JsonObject v3 = getObject(getObject(impact, "baseMetricV3"), "cvssV3");
+        JsonObject v2Metric = getObject(impact, "baseMetricV2");
+        if (v3 != null && v3.has("baseScore")) {
+            severity = getString(v3, "baseSeverity");
+            cvssScore = v3.get("baseScore").getAsDouble();
+        } else if (v2Metric != null) {
+            severity = getString(v2Metric, "severity");
+            JsonObject v2 = getObject(v2Metric, "cvssV2");
+            if (v2 != null && v2.has("baseScore")) {
+                cvssScore = v2.get("baseScore").getAsDouble();
+            }
+        }
+
+        JSONObject vulnerabilityType = new JSONObject();
+        vulnerabilityType.put("severity", (severity != null) ? severity.toUpperCase() : "SEVERITY_UNSPECIFIED");
+        if (cvssScore != null) {
+            vulnerabilityType.put("cvssScore", cvssScore);
+        }
+
+        JSONObject note = new JSONObject();
+        note.put("name", String.format(NOTE_NAME, id));
+        note.put("shortDescription", id);
+        String description = getEnglishDescription(cve);
+        if (description != null) {
+            note.put("longDescription", description);
+        }
+        note.put("kind", "PACKAGE_VULNERABILITY");
+        note.put("vulnerabilityType", vulnerabilityType);
+        return note;
+    }
+
+    private static String getEnglishDescription(JsonObject cve) {
+        JsonObject description = getObject(cve, "description");
+        if (description == null || !description.has("description_data")) {
+            return null;
+        }
+        JsonArray data = description.getAsJsonArray("description_data");
+        for (JsonElement d : data) {
+            if (d.isJsonObject() && "en".equals(getString(d.getAsJsonObject(), "lang"))) {
+                return getString(d.getAsJsonObject(), "value");
+            }
+        }
+        return null;
+    }
+
+    private static JsonObject getObject(JsonObject parent, String name) {
+        if (parent == null) {
+            return null;
+        }
+        JsonElement child = parent.get(name);
+        return (child != null && child.isJsonObject()) ? child.getAsJsonObject() : null;
+    }
+
+    private static String getString(JsonObject parent, String name) {
+        if (parent == null) {
+            return null;
+        }
+        JsonElement child = parent.get(name);
+        return (child != null && child.isJsonPrimitive()) ? child.getAsString() : null;
+    }
+}
@@ -0,0 +1,331 @@
+/**
+ * NVD Note Provisioner
+ * Bulk creation of the CVE notes used by the security scan occurrences.
+ *
+ */
+
+
+package com.oracle.sscm.client.nvd;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+
+import net.minidev.json.JSONObject;
+
+import com.oracle.sscm.client.grafeas.GrafeasAsyncUtilities;
+import com.oracle.sscm.client.grafeas.GrafeasHttp;
+import com.oracle.sscm.client.log.GrafeasLog;
+
+/**
+ * Creates or refreshes the CVE notes of an NVD feed on a Grafeas server, so that the
+ * securityScan goal finds every note already present and only posts occurrences.
+ *
+ * Notes are sent in batches, the notes of a batch concurrently. A note that already exists
+ * is updated. The SHA-256 of every note successfully sent is kept in a state file, keyed by
+ * the note URL on the server, and a note whose content has not changed since the previous run
+ * to the same server is skipped.
+ */
+public class NvdNoteProvisioner {
+
+    private static final String GRAFEAS_VERSION = "v1alpha1/";
+    private static final int HTTP_CONFLICT = 409;
+    private static final int DEFAULT_THREADS = 8;
+    private static final int DEFAULT_BATCH_SIZE = 200;
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    // Grafeas server URL ending with a slash
+    private final String grafeasUrl;
+
+    // Note URL -> SHA-256 of the note content last sent, null to always send
+    private final File stateFile;
+    private final Properties state = new Properties();
+
+    // Client of the note updates, which are PATCH requests
+    private final OkHttpClient client = GrafeasHttp.newClient();
+
+    private int threads = DEFAULT_THREADS;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger updated = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private int unchanged = 0;
+
+    // Debug output and failures, at info level until debugging is enabled
+    //
+    private GrafeasLog logger = GrafeasLog.console(false);
+
+    /**
+     * @param grafeasUrl  Grafeas server URL, for example http://localhost:8080
+     * @param stateFile   file keeping the content hashes of the notes sent, null for none
+     */
+    public NvdNoteProvisioner(String grafeasUrl, File stateFile) throws IOException {
+        this.grafeasUrl = grafeasUrl.endsWith("/") ? grafeasUrl : grafeasUrl + "/";
+        this.stateFile = stateFile;
+        if (stateFile != null && stateFile.isFile()) {
+            InputStream in = new FileInputStream(stateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Set the number of notes sent concurrently
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Set the number of notes read from the feed before waiting for them to be sent
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Enable debugging
+     */
+    public void enableDebugging() {
+        logger.setLevel(GrafeasLog.Level.DEBUG);
+    }
+
+    /**
+     * Set the log of the debug output and failures
+     */
+    public void setLog(GrafeasLog logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Get the log of the debug output and failures
+     */
+    public GrafeasLog getLog() {
+        return logger;
+    }
+
+    /**
+     * Send the changed notes of the feed, then save the state file.
+     *
+     * @throws IOException if the feed or the state file can't be read or written
+     */
+    public void provision(NvdFeedReader feed) throws IOException {
+        ExecutorService executor = GrafeasAsyncUtilities.newPlatformExecutor(threads);
+        try {
+            List<JSONObject> batch = new ArrayList<JSONObject>(batchSize);
+            JSONObject note;
+            while ((note = feed.nextNote()) != null) {
+                if (isUnchanged(note)) {
+                    unchanged++;
+                    continue;
+                }
+                batch.add(note);
+                if (batch.size() == batchSize) {
+                    sendBatch(batch, executor);
+                    batch.clear();
+                }
+            }
+            sendBatch(batch, executor);
+        } finally {
+            executor.shutdownNow();
+            saveState();
+        }
+    }
+
+    /**
+     * Get the number of notes created
+     */
+    public int getCreated() {
+        return created.get();
+    }
+
+    /**
+     * Get the number of existing notes replaced
+     */
+    public int getUpdated() {
+        return updated.get();
+    }
+
+    /**
+     * Get the number of notes skipped because their content has not changed
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Get the number of notes that couldn't be sent
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Get a one line summary of the provisioning
+     */
+    public String getSummary() {
+        return String.format("CVE notes: %d created, %d updated, %d unchanged, %d failed",
+                getCreated(), getUpdated(), getUnchanged(), getFailed());
+    }
+
+    // Send the notes concurrently and wait for all of them
+    //
+    private void sendBatch(List<JSONObject> batch, ExecutorService executor) throws IOException {
+        List<Future<?>> futures = new ArrayList<Future<?>>(batch.size());
+        for (final JSONObject note : batch) {
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() {
+                    send(note);
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sending CVE notes", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    // Create the note, replace it if it already exists
+    //
+    private void send(JSONObject note) {
+        String name = (String) note.get("name");
+        String content = note.toJSONString();
+        try {
+            URL postUrl = new URL(grafeasUrl + GRAFEAS_VERSION + "projects/" + NvdFeedReader.NOTES_PROJECT_ID
+                    + "/notes?noteId=" + note.get("shortDescription"));
+            HTTPResponse response = sendJson(HTTPRequest.Method.POST, postUrl, content);
+            int status = response.getStatusCode();
+            boolean success = response.indicatesSuccess();
+            String error = response.getContent();
+            if (status == HTTP_CONFLICT) {
+                // Grafeas UpdateNote is a PATCH, which the nimbus request doesn't support
+                Response patched = patchJson(getNoteUrl(name), content);
+                try {
+                    status = patched.code();
+                    success = patched.isSuccessful();
+                    error = success ? null : patched.body().string();
+                } finally {
+                    patched.body().close();
+                }
+                if (success) {
+                    updated.incrementAndGet();
+                }
+            } else if (success) {
+                created.incrementAndGet();
+            }
+
+            if (success) {
+                log("Sent note " + name);
+                synchronized (state) {
+                    state.setProperty(getNoteUrl(name).toString(), hash(content));
+                }
+            } else {
+                failed.incrementAndGet();
+                logger.warn("Failed to send note %s: %d %s", name, status, error);
+            }
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            logger.warn("Failed to send note %s: %s", name, e);
+        }
+    }
+
+    private static HTTPResponse sendJson(HTTPRequest.Method method, URL url, String content) throws IOException {
+        HTTPRequest request = new HTTPRequest(method, url);
+        request.setHeader("Content-Type", "application/json");
+        request.setQuery(content);
+        return GrafeasHttp.send(request);
+    }
+
+    private Response patchJson(URL url, String content) throws IOException {
+        Request request = new Request.Builder().url(url).patch(RequestBody.create(JSON, content)).build();
+        return client.newCall(request).execute();
+    }
+
+    // URL of the note on the server, also its key in the state file
+    //
+    private URL getNoteUrl(String name) throws IOException {
+        return new URL(grafeasUrl + GRAFEAS_VERSION + name);
+    }
+
+    private boolean isUnchanged(JSONObject note) throws IOException {
+        String key = getNoteUrl((String) note.get("name")).toString();
+        synchronized (state) {
+            return hash(note.toJSONString()).equals(state.getProperty(key));
+        }
+    }
+
+    // Write then rename, so that an interrupted run never leaves a partial state file
+    //
+    private void saveState() throws IOException {
+        if (stateFile == null) {
+            return;
+        }
+        File directory = stateFile.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        File tmp = File.createTempFile(stateFile.getName(), ".tmp", directory);
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            synchronized (state) {
+                state.store(out, "SHA-256 of the CVE notes sent to " + grafeasUrl);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String hash(String content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : md.digest(content.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void log(String msg) {
+        logger.debug(msg);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Goal Defaults
+ * Default values of the goal parameters.
+ *
+ */
+
+
+package com.oracle.sscm.client.plugins.maven;
+
+import com.oracle.sscm.client.grafeas.TreeHasher;
+import com.oracle.sscm.client.scan.ReportFormat;
+import com.oracle.sscm.client.scan.VulnerabilityIndex;
+
+/**
+ * Default values of the goal parameters, as the defaultValue of their @Parameter annotation.
+ * They are shared with the command line entry point, so that a goal has the same defaults
+ * whether it is run by Maven or not.
+ */
+public final class GoalDefaults {
+
+    public static final String UNKNOWN = "UNKNOWN";
+
+    // Common to the goals that send requests to Grafeas
+    public static final String TIME_BUDGET = "0";
+    public static final String HEDGE_PERCENTILE = "0";
+
+    // buildDetails
+    public static final String BUILD_INFRA_NAME = "build-infrastructure";
+    public static final String BUILD_AUTHORITY_NAME = "Build";
+    public static final String BUILDER_DESCRIPTION = "Oracle Grafeas Build Details Metadata Generator";
+    public static final String SIGNING_THREADS = "4";
+    public static final String LARGE_FILE_THRESHOLD = "0";
+    public static final String HASH_CHUNK_SIZE = "" + TreeHasher.DEFAULT_CHUNK_SIZE;
+
+    // securityScan
+    public static final String DEPENDENCY_REPORT_JSON = "./dependency-check-report.json";
+    public static final String SCAN_AUTHORITY_NAME = "SecurityScan";
+    public static final String MIN_CVSS_SCORE = "0";
+    public static final String MIN_CONFIDENCE = "LOW";
+    public static final String EXPORT_ROLL_SIZE = "0";
+    public static final String INDEX_COMPACT_SEGMENTS = "" + VulnerabilityIndex.DEFAULT_COMPACT_SEGMENTS;
+    public static final String REPORT_FORMAT = ReportFormat.AUTO;
+
+    // testAttestation
+    public static final String TEST_AUTHORITY_NAME = "Test";
+
+    // sbasCheck
+    public static final String EVALUATE_POLICY = "true";
+    public static final String SBAS_THREADS = "8";
+
+    // nvdNotes
+    public static final String NVD_STATE_FILE = "./nvd-notes.properties";
+    public static final String NVD_THREADS = "8";
+    public static final String NVD_BATCH_SIZE = "200";
+
+    private GoalDefaults() {
+    }
+}
@@ -10,32 +10,44 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
+import com.oracle.sscm.client.grafeas.ArchiveEntryDigester;
+import com.oracle.sscm.client.grafeas.Deadline;
+import com.oracle.sscm.client.grafeas.BuildFingerprint;
 import com.oracle.sscm.client.grafeas.GrafeasUtilities;
+import com.oracle.sscm.client.grafeas.TreeHasher;
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.log.Tracer;
+import com.oracle.sscm.client.script.GPGScriptWrapper;
+import io.grafeas.v1alpha1.model.BuildDetails;
 
-@Mojo(name = "buildDetails")
+@Mojo(name = "buildDetails", threadSafe = true)
 public class GrafeasBuildMojo extends AbstractMojo {
 
     private static final String URL_SLASH = "/";
 
-    @Parameter(property = "buildDetails.grafeasUrl", defaultValue = "UNKNOWN")
+    @Parameter(property = "buildDetails.grafeasUrl", defaultValue = GoalDefaults.UNKNOWN)
     private String grafeasUrl;
 
     @Parameter(property = "buildDetails.projectName")
     private String projectName;
 
-    @Parameter(property = "buildDetails.infraName", defaultValue = "build-infrastructure")
+    @Parameter(property = "buildDetails.infraName", defaultValue = GoalDefaults.BUILD_INFRA_NAME)
     private String infraName;
 
-    @Parameter(property = "buildDetails.authorityName", defaultValue = "Build")
+    @Parameter(property = "buildDetails.authorityName", defaultValue = GoalDefaults.BUILD_AUTHORITY_NAME)
     private String authorityName;
 
     @Parameter(property = "buildDetails.builderName")
     private String builderName;
 
-    @Parameter(property = "buildDetails.builderDescription", defaultValue = "Oracle Grafeas Build Details Metadata Generator")
+    @Parameter(property = "buildDetails.builderDescription", defaultValue = GoalDefaults.BUILDER_DESCRIPTION)
     private String builderDescription;
 
     @Parameter(property = "buildDetails.builderVersion")
@@ -44,6 +56,15 @@ public class GrafeasBuildMojo extends AbstractMojo {
     @Parameter(property = "buildDetails.resourceUrl")
     private String resourceUrl;
 
+    @Parameter(property = "buildDetails.resourceUrls")
+    private List<String> resourceUrls;
+
+    @Parameter(property = "buildDetails.authorityNames")
+    private List<String> authorityNames;
+
+    @Parameter(property = "buildDetails.signingThreads", defaultValue = GoalDefaults.SIGNING_THREADS)
+    private int signingThreads;
+
     @Parameter(property = "buildDetails.userName")
     private String userName;
 
@@ -68,9 +89,44 @@ public class GrafeasBuildMojo extends AbstractMojo {
     @Parameter(property = "buildDetails.projectNumber")
     private String projectNumber;
 
-    @Parameter(property = "buildDetails.debugLog", defaultValue = "true")
+    @Parameter(property = "buildDetails.largeFileThreshold", defaultValue = GoalDefaults.LARGE_FILE_THRESHOLD)
+    private long largeFileThreshold;
+
+    @Parameter(property = "buildDetails.hashChunkSize", defaultValue = GoalDefaults.HASH_CHUNK_SIZE)
+    private int hashChunkSize;
+
+    @Parameter(property = "buildDetails.archiveEntries", defaultValue = "false")
+    private boolean archiveEntries;
+
+    @Parameter(property = "buildDetails.archiveDigestPatterns")
+    private List<String> archiveDigestPatterns;
+
+    // Seconds the goal may spend on Grafeas requests, 0 for no limit
+    @Parameter(property = "buildDetails.timeBudget", defaultValue = GoalDefaults.TIME_BUDGET)
+    private long timeBudget;
+
+    // Latency percentile after which a GET is sent again, 0 for no hedging
+    @Parameter(property = "buildDetails.hedgePercentile", defaultValue = GoalDefaults.HEDGE_PERCENTILE)
+    private double hedgePercentile;
+
+    // Chrome trace event file of the operations of the goal, empty for no tracing
+    @Parameter(property = "buildDetails.traceFile")
+    private String traceFile;
+
+    @Parameter(property = "buildDetails.debugLog", defaultValue = "false")
     private String debugLog;
 
+    @Parameter(property = "buildDetails.wireDebug", defaultValue = "false")
+    private boolean wireDebug;
+
+    // Inputs of the last successful publication, empty to always publish
+    @Parameter(property = "buildDetails.fingerprintFile", defaultValue = "${project.build.directory}/grafeas/build-details.fingerprint")
+    private String fingerprintFile;
+
+    // Publish even if the inputs are those of the last successful publication
+    @Parameter(property = "buildDetails.force", defaultValue = "false")
+    private boolean force;
+
 
 
     private void log(String msg) {
@@ -78,33 +134,99 @@ public class GrafeasBuildMojo extends AbstractMojo {
     }
 
     public void execute() throws MojoExecutionException {
+        try {
+            Deadline.begin(timeBudget * 1000, hedgePercentile);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        try {
+            Tracer.begin(traceFile);
+        } catch (IOException e) {
+            Deadline.end();
+            throw new MojoExecutionException("Failed to open the trace file " + traceFile, e);
+        }
+        Tracer.Span span = Tracer.start("goal", "buildDetails");
+        try {
+            executeGoal();
+        } finally {
+            span.end();
+            Deadline.end();
+            endTrace();
+        }
+    }
 
+    // Complete the trace, a trace that can't be written doesn't fail the goal
+    //
+    private void endTrace() {
+        Tracer tracer = Tracer.current();
+        if (tracer == null) {
+            return;
+        }
         try {
-            log("\nCreating Build Details Occurrences Metadata.");
+            Tracer.end();
+            getLog().info("Wrote " + tracer.getEvents() + " trace events to " + tracer.getFile());
+        } catch (IOException e) {
+            getLog().warn("Failed to write the trace file " + tracer.getFile() + ": " + e.getMessage());
+        }
+    }
 
+    private void executeGoal() throws MojoExecutionException {
+
+        GrafeasLog logger = MavenLogSink.createLog(getLog(), "true".equals(debugLog));
+        try {
             // Setup arguments from parameters...
-            GrafeasUtilities utils = getUtils(false);
-            if (!utils.doesBuildDetailsNoteExist(builderName)) {
-                utils.createBuildDetailsNote(builderName, infraName + "-" + builderName, builderDescription);
+            GrafeasUtilities utils = getUtils(false, logger);
+
+            BuildFingerprint fingerprint = getFingerprint(utils);
+            if (!force && fingerprint.isUnchanged()) {
+                log("\nBuild details unchanged since the last publication of " + fingerprint.getPreviousOccurrences() + ", skipping.");
+                return;
+            }
+
+            log("\nCreating Build Details Occurrences Metadata.");
+
+            if (utils.createBuildDetailsNoteIfAbsent(builderName, infraName + "-" + builderName, builderDescription)) {
                 log("\nCreated Build Details Note Metadata.");
             }
+            List<String> resources = getResources();
             String uniqueId = builderName + System.currentTimeMillis();
-            utils.createBuildDetailsOccurrence(uniqueId, resourceUrl, builderName);
+            List<String> occurrences = new ArrayList<String>();
+            BuildDetails buildDetails;
+            Tracer.Span hashing = Tracer.start("hash", "createBuildDetails");
+            try {
+                buildDetails = utils.createBuildDetails();
+            } finally {
+                hashing.end();
+            }
+            for (int i = 0; i < resources.size(); i++) {
+                String occurrenceId = (resources.size() == 1) ? uniqueId : uniqueId + "-" + i;
+                occurrences.add(utils.createBuildDetailsOccurrence(occurrenceId, resources.get(i), builderName, buildDetails));
+            }
             log("\nCreated Build Details Occurrences Metadata.");
 
             log("\nCreating Build Attestation Metadata.");
 
             // Setup arguments from parameters...
-            utils = getUtils(true);
+            utils = getUtils(true, logger);
 
             //if (!utils.doesAttestationAuthorityNoteExist(authorityName)) {
             //    utils.createAttestationAuthorityNote(authorityName, infraName + ":" + authorityName, builderDescription);
             //    log("\nCreated Build Attestation Note Metadata.");
             //}
-            utils.createAttestationOccurrence(authorityName, resourceUrl);
+            List<String> authorities = (authorityNames != null && !authorityNames.isEmpty())
+                ? authorityNames : Collections.singletonList(authorityName);
+            if (resources.size() == 1 && authorities.size() == 1) {
+                utils.createAttestationOccurrence(authorities.get(0), resources.get(0));
+            } else {
+                utils.createAttestationOccurrences(authorities, resources, signingThreads);
+            }
             log("\nGenerated Build Attestation.");
+
+            fingerprint.save(occurrences);
         } catch (Exception e) {
             throw new MojoExecutionException("Error loading build metatdata into grafeas", e);
+        } finally {
+            logger.logSummary();
         }
 
     }
@@ -174,6 +296,30 @@ public class GrafeasBuildMojo extends AbstractMojo {
         this.resourceUrl = resourceUrl;
     }
 
+    public List<String> getResourceUrls() {
+        return resourceUrls;
+    }
+
+    public void setResourceUrls(List<String> resourceUrls) {
+        this.resourceUrls = resourceUrls;
+    }
+
+    public List<String> getAuthorityNames() {
+        return authorityNames;
+    }
+
+    public void setAuthorityNames(List<String> authorityNames) {
+        this.authorityNames = authorityNames;
+    }
+
+    public int getSigningThreads() {
+        return signingThreads;
+    }
+
+    public void setSigningThreads(int signingThreads) {
+        this.signingThreads = signingThreads;
+    }
+
     public String getUserName() {
         return userName;
     }
@@ -238,31 +384,174 @@ public class GrafeasBuildMojo extends AbstractMojo {
         return sourceFiles;
     }
 
+    public long getLargeFileThreshold() {
+        return largeFileThreshold;
+    }
+
+    public void setLargeFileThreshold(long largeFileThreshold) {
+        this.largeFileThreshold = largeFileThreshold;
+    }
+
+    public int getHashChunkSize() {
+        return hashChunkSize;
+    }
+
+    public void setHashChunkSize(int hashChunkSize) {
+        this.hashChunkSize = hashChunkSize;
+    }
+
+    public boolean isArchiveEntries() {
+        return archiveEntries;
+    }
+
+    public void setArchiveEntries(boolean archiveEntries) {
+        this.archiveEntries = archiveEntries;
+    }
+
+    public List<String> getArchiveDigestPatterns() {
+        return archiveDigestPatterns;
+    }
+
+    public void setArchiveDigestPatterns(List<String> archiveDigestPatterns) {
+        this.archiveDigestPatterns = archiveDigestPatterns;
+    }
+
     public void setDebugLog(String debugLog) {
         this.debugLog = debugLog;
     }
 
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public String getTraceFile() {
+        return traceFile;
+    }
+
+    public void setTraceFile(String traceFile) {
+        this.traceFile = traceFile;
+    }
+
     public String getDebugLog() {
         return debugLog;
     }
 
+    public boolean isWireDebug() {
+        return wireDebug;
+    }
+
+    public void setWireDebug(boolean wireDebug) {
+        this.wireDebug = wireDebug;
+    }
+
+    public String getFingerprintFile() {
+        return fingerprintFile;
+    }
+
+    public void setFingerprintFile(String fingerprintFile) {
+        this.fingerprintFile = fingerprintFile;
+    }
+
+    public boolean isForce() {
+        return force;
+    }
+
+    public void setForce(boolean force) {
+        this.force = force;
+    }
+
+    // Fingerprint of every parameter that changes the published metadata, of the content
+    // of the artifacts and source files, and of the keyring the attestations are signed with
+    //
+    // Fingerprint of the inputs, the artifacts and sources digested by the utilities that
+    // publish them, which keep the checksums for the build details instead of hashing again
+    //
+    private BuildFingerprint getFingerprint(final GrafeasUtilities utils) throws IOException {
+        BuildFingerprint fingerprint = new BuildFingerprint(
+            (fingerprintFile != null && !fingerprintFile.isEmpty()) ? new File(fingerprintFile) : null);
+        fingerprint.addInput("grafeasUrl", grafeasUrl);
+        fingerprint.addInput("projectName", projectName);
+        fingerprint.addInput("infraName", infraName);
+        fingerprint.addInput("authorityName", authorityName);
+        fingerprint.addInput("authorityNames", authorityNames);
+        fingerprint.addInput("builderName", builderName);
+        fingerprint.addInput("builderDescription", builderDescription);
+        fingerprint.addInput("builderVersion", builderVersion);
+        fingerprint.addInput("resources", getResources());
+        fingerprint.addInput("userName", userName);
+        fingerprint.addInput("userEmailAddress", userEmailAddress);
+        fingerprint.addInput("buildOptions", buildOptions);
+        fingerprint.addInput("buildPublicKey", buildPublicKey);
+        fingerprint.addInput("buildKeyId", buildKeyId);
+        fingerprint.addInput("gpgScript", System.getenv("GPG_SCRIPT"));
+        fingerprint.addInput("keyring", GPGScriptWrapper.getKeyringFingerprint());
+        fingerprint.addInput("projectNumber", projectNumber);
+        fingerprint.addInput("largeFileThreshold", largeFileThreshold);
+        fingerprint.addInput("hashChunkSize", hashChunkSize);
+        fingerprint.addInput("archiveEntries", archiveEntries);
+        fingerprint.addInput("archiveDigestPatterns", archiveDigestPatterns);
+        fingerprint.addFiles("buildArtifacts", buildArtifacts, new BuildFingerprint.Digester() {
+            public String digest(String fileName) {
+                return utils.createArtifactChecksum(fileName);
+            }
+        });
+        Map<String, String> sourceDigests = fingerprint.addFiles("sourceFiles", sourceFiles, new BuildFingerprint.Digester() {
+            public String digest(String fileName) throws IOException {
+                byte[] hash = GrafeasUtilities.createHashForFile(fileName);
+                if (hash == null) {
+                    throw new IOException("Failed to hash " + fileName);
+                }
+                return TreeHasher.toHex(hash);
+            }
+        });
+        Map<String, byte[]> sourceHashes = new HashMap<String, byte[]>();
+        for (Map.Entry<String, String> digest : sourceDigests.entrySet()) {
+            sourceHashes.put(digest.getKey(), TreeHasher.fromHex(digest.getValue()));
+        }
+        utils.setKnownSourceHashes(sourceHashes);
+        return fingerprint;
+    }
+
+
+    // Resource URLs to publish metadata for, resourceUrls or else the single resourceUrl
+    //
+    private List<String> getResources() {
+        if (resourceUrls != null && !resourceUrls.isEmpty()) {
+            return resourceUrls;
+        }
+        return Collections.singletonList(resourceUrl);
+    }
 
-    private GrafeasUtilities getUtils(boolean isAttestation) {
+    private GrafeasUtilities getUtils(boolean isAttestation, GrafeasLog logger) {
 
-        // Location of Grafeas API server
-        if (grafeasUrl != null && !grafeasUrl.equals("UNKNOWN")) {
-            if (grafeasUrl != null && grafeasUrl.endsWith(URL_SLASH)) {
-                grafeasUrl = grafeasUrl.substring(0, grafeasUrl.length() - 1);
+        // Location of Grafeas API server, the parameter itself is left as configured
+        String url = grafeasUrl;
+        if (url != null && !url.equals("UNKNOWN")) {
+            if (url.endsWith(URL_SLASH)) {
+                url = url.substring(0, url.length() - 1);
             }
-            if (grafeasUrl.equals("http://:")) {
-                 grafeasUrl = null;
+            if (url.equals("http://:")) {
+                url = null;
             }
         }
 
-        GrafeasUtilities utils = new GrafeasUtilities(grafeasUrl, projectName);
+        GrafeasUtilities utils = new GrafeasUtilities(url, projectName);
 
-        if ("true".equals(debugLog))
-            utils.enableDebugging();
+        utils.setLog(logger);
+        if (wireDebug)
+            utils.enableWireDebugging();
 
         if (builderVersion != null) {
             utils.setBuilderVersion(builderVersion);
@@ -275,6 +564,11 @@ public class GrafeasBuildMojo extends AbstractMojo {
         utils.setProjectNumber(projectNumber);
         utils.setBuildArtifacts(buildArtifacts);
         utils.setSourceFiles(sourceFiles);
+        utils.setLargeFileThreshold(largeFileThreshold);
+        utils.setTreeHasher(new TreeHasher(hashChunkSize, ForkJoinPool.commonPool()));
+        if (archiveEntries) {
+            utils.setArchiveEntryDigester(new ArchiveEntryDigester(archiveDigestPatterns));
+        }
 
         return utils;
 
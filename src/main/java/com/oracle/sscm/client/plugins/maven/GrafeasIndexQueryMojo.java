@@ -0,0 +1,90 @@
+package com.oracle.sscm.client.plugins.maven;
+
+import com.oracle.sscm.client.scan.VulnerabilityIndex;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Mojo(name = "indexQuery", requiresProject = false)
+public class GrafeasIndexQueryMojo extends AbstractMojo {
+
+    // Directory of the index the securityScan goal writes with securityScan.indexDir
+    @Parameter(property = "indexQuery.indexDir", required = true)
+    private String indexDir;
+
+    // CVEs or other vulnerability ids to look up
+    @Parameter(property = "indexQuery.vulnerabilities")
+    private List<String> vulnerabilities;
+
+    // Merge the segments into the index file before the lookup
+    @Parameter(property = "indexQuery.compact", defaultValue = "false")
+    private boolean compact;
+
+    // Found entries, for the callers that run the goal directly
+    private final List<VulnerabilityIndex.Entry> entries = new ArrayList<VulnerabilityIndex.Entry>();
+
+    private void log(String msg) {
+      getLog().info(msg);
+    }
+
+    public void execute() throws MojoExecutionException {
+        VulnerabilityIndex index = new VulnerabilityIndex(new File(indexDir));
+        entries.clear();
+        try {
+            if (compact) {
+                log(index.compact() ? "Vulnerability index compacted" : "Vulnerability index is being compacted by another build");
+            }
+            if (vulnerabilities == null) {
+                return;
+            }
+            for (String vulnerability : vulnerabilities) {
+                long start = System.nanoTime();
+                List<VulnerabilityIndex.Entry> found = index.find(vulnerability);
+                log(vulnerability + ": " + found.size() + " artifact(s) in " + (System.nanoTime() - start) / 1000000 + " ms");
+                for (VulnerabilityIndex.Entry entry : found) {
+                    log(entry.toJSON().toJSONString());
+                }
+                entries.addAll(found);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read the vulnerability index " + indexDir, e);
+        }
+    }
+
+    /**
+     * Get the entries found by the last execution
+     */
+    public List<VulnerabilityIndex.Entry> getEntries() {
+        return entries;
+    }
+
+    public String getIndexDir() {
+        return indexDir;
+    }
+
+    public void setIndexDir(String indexDir) {
+        this.indexDir = indexDir;
+    }
+
+    public List<String> getVulnerabilities() {
+        return vulnerabilities;
+    }
+
+    public void setVulnerabilities(List<String> vulnerabilities) {
+        this.vulnerabilities = vulnerabilities;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+}
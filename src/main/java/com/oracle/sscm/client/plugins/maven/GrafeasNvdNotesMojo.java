@@ -0,0 +1,157 @@
+package com.oracle.sscm.client.plugins.maven;
+
+import com.oracle.sscm.client.grafeas.Deadline;
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.nvd.NvdFeedReader;
+import com.oracle.sscm.client.nvd.NvdNoteProvisioner;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+
+@Mojo(name = "nvdNotes", requiresProject = false)
+public class GrafeasNvdNotesMojo extends AbstractMojo {
+
+    @Parameter(property = "nvdNotes.feedFile", required = true)
+    private String feedFile;
+
+    @Parameter(property = "nvdNotes.grafeasUrl", required = true)
+    private String grafeasUrl;
+
+    @Parameter(property = "nvdNotes.stateFile", defaultValue = GoalDefaults.NVD_STATE_FILE)
+    private String stateFile;
+
+    @Parameter(property = "nvdNotes.threads", defaultValue = GoalDefaults.NVD_THREADS)
+    private int threads;
+
+    @Parameter(property = "nvdNotes.batchSize", defaultValue = GoalDefaults.NVD_BATCH_SIZE)
+    private int batchSize;
+
+    // Seconds the goal may spend on Grafeas requests, 0 for no limit
+    @Parameter(property = "nvdNotes.timeBudget", defaultValue = GoalDefaults.TIME_BUDGET)
+    private long timeBudget;
+
+    // Latency percentile after which a GET is sent again, 0 for no hedging
+    @Parameter(property = "nvdNotes.hedgePercentile", defaultValue = GoalDefaults.HEDGE_PERCENTILE)
+    private double hedgePercentile;
+
+    @Parameter(property = "nvdNotes.debugLog", defaultValue = "false")
+    private String debugLog;
+
+    private void log(String msg) {
+      getLog().info(msg);
+    }
+
+    public void execute() throws MojoExecutionException {
+        try {
+            Deadline.begin(timeBudget * 1000, hedgePercentile);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        try {
+            executeGoal();
+        } finally {
+            Deadline.end();
+        }
+    }
+
+    private void executeGoal() throws MojoExecutionException {
+
+        log("feedFile is '" + feedFile + "'");
+        log("grafeasUrl is '" + grafeasUrl + "'");
+        log("stateFile is '" + stateFile + "'");
+
+        NvdNoteProvisioner provisioner;
+        try {
+            provisioner = new NvdNoteProvisioner(grafeasUrl, (stateFile != null && !stateFile.isEmpty()) ? new File(stateFile) : null);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read the state file " + stateFile, e);
+        }
+        provisioner.setThreads(threads);
+        provisioner.setBatchSize(batchSize);
+        provisioner.setLog(MavenLogSink.createLog(getLog(), "true".equals(debugLog)));
+
+        try {
+            NvdFeedReader feed = new NvdFeedReader(new File(feedFile));
+            try {
+                provisioner.provision(feed);
+            } finally {
+                feed.close();
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to provision the CVE notes of " + feedFile, e);
+        }
+
+        log(provisioner.getSummary());
+        if (provisioner.getFailed() > 0) {
+            throw new MojoExecutionException(provisioner.getFailed() + " CVE notes couldn't be sent to " + grafeasUrl);
+        }
+    }
+
+    public String getFeedFile() {
+        return feedFile;
+    }
+
+    public void setFeedFile(String feedFile) {
+        this.feedFile = feedFile;
+    }
+
+    public String getGrafeasUrl() {
+        return grafeasUrl;
+    }
+
+    public void setGrafeasUrl(String grafeasUrl) {
+        this.grafeasUrl = grafeasUrl;
+    }
+
+    public String getStateFile() {
+        return stateFile;
+    }
+
+    public void setStateFile(String stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public String getDebugLog() {
+        return debugLog;
+    }
+
+    public void setDebugLog(String debugLog) {
+        this.debugLog = debugLog;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+}
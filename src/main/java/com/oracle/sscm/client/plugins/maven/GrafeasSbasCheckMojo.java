@@ -0,0 +1,177 @@
+package com.oracle.sscm.client.plugins.maven;
+
+import com.oracle.sscm.client.grafeas.Deadline;
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.sbas.SbasCheckException;
+import com.oracle.sscm.client.sbas.SbasChecker;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+@Mojo(name = "sbasCheck", requiresProject = false)
+public class GrafeasSbasCheckMojo extends AbstractMojo {
+
+    @Parameter(property = "sbasCheck.grafeasUrl", defaultValue = GoalDefaults.UNKNOWN)
+    private String grafeasUrl;
+
+    @Parameter(property = "sbasCheck.projectName", required = true)
+    private String projectName;
+
+    @Parameter(property = "sbasCheck.resourceUrl", required = true)
+    private String resourceUrl;
+
+    @Parameter(property = "sbasCheck.clusterName", required = true)
+    private String clusterName;
+
+    @Parameter(property = "sbasCheck.authorityFile")
+    private String authorityFile;
+
+    @Parameter(property = "sbasCheck.evaluatePolicy", defaultValue = GoalDefaults.EVALUATE_POLICY)
+    private boolean evaluatePolicy;
+
+    @Parameter(property = "sbasCheck.threads", defaultValue = GoalDefaults.SBAS_THREADS)
+    private int threads;
+
+    // Seconds the goal may spend on Grafeas requests, 0 for no limit
+    @Parameter(property = "sbasCheck.timeBudget", defaultValue = GoalDefaults.TIME_BUDGET)
+    private long timeBudget;
+
+    // Latency percentile after which a GET is sent again, 0 for no hedging
+    @Parameter(property = "sbasCheck.hedgePercentile", defaultValue = GoalDefaults.HEDGE_PERCENTILE)
+    private double hedgePercentile;
+
+    @Parameter(property = "sbasCheck.debugLog", defaultValue = "false")
+    private String debugLog;
+
+    private void log(String msg) {
+      getLog().info(msg);
+    }
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        try {
+            Deadline.begin(timeBudget * 1000, hedgePercentile);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        try {
+            executeGoal();
+        } finally {
+            Deadline.end();
+        }
+    }
+
+    private void executeGoal() throws MojoExecutionException, MojoFailureException {
+
+        log("projectName is '" + projectName + "'");
+        log("resourceUrl is '" + resourceUrl + "'");
+        log("clusterName is '" + clusterName + "'");
+
+        // Same environment variables as sbas-check.sh when not configured
+        String url = grafeasUrl;
+        if (url == null || url.equals("UNKNOWN")) {
+            url = "http://" + System.getenv("GRAFEAS_SERVER_ADDRESS") + ":" + System.getenv("GRAFEAS_SERVER_PORT");
+        }
+        String authorities = authorityFile;
+        if (authorities == null) {
+            authorities = System.getenv("ATTESTATION_AUTHORITY_FILE");
+        }
+
+        GrafeasLog logger = MavenLogSink.createLog(getLog(), "true".equals(debugLog));
+
+        SbasChecker checker = new SbasChecker(url);
+        checker.setThreads(threads);
+        checker.setEvaluatePolicy(evaluatePolicy);
+        checker.setLog(logger);
+
+        try {
+            checker.loadAuthorities(authorities);
+            checker.check(projectName, resourceUrl, clusterName);
+        } catch (SbasCheckException e) {
+            log("false");
+            throw new MojoFailureException("Deployment of " + resourceUrl + " to " + clusterName + " denied: " + e.getMessage(), e);
+        }
+        log("true");
+    }
+
+    public String getGrafeasUrl() {
+        return grafeasUrl;
+    }
+
+    public void setGrafeasUrl(String grafeasUrl) {
+        this.grafeasUrl = grafeasUrl;
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public String getResourceUrl() {
+        return resourceUrl;
+    }
+
+    public void setResourceUrl(String resourceUrl) {
+        this.resourceUrl = resourceUrl;
+    }
+
+    public String getClusterName() {
+        return clusterName;
+    }
+
+    public void setClusterName(String clusterName) {
+        this.clusterName = clusterName;
+    }
+
+    public String getAuthorityFile() {
+        return authorityFile;
+    }
+
+    public void setAuthorityFile(String authorityFile) {
+        this.authorityFile = authorityFile;
+    }
+
+    public boolean isEvaluatePolicy() {
+        return evaluatePolicy;
+    }
+
+    public void setEvaluatePolicy(boolean evaluatePolicy) {
+        this.evaluatePolicy = evaluatePolicy;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setDebugLog(String debugLog) {
+        this.debugLog = debugLog;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public String getDebugLog() {
+        return debugLog;
+    }
+}
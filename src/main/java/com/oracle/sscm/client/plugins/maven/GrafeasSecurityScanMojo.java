@@ -1,6 +1,9 @@
 package com.oracle.sscm.client.plugins.maven;
 
+import com.oracle.sscm.client.grafeas.Deadline;
 import com.oracle.sscm.client.grafeas.GrafeasUtilities;
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.log.Tracer;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -9,13 +12,12 @@ import org.apache.maven.plugins.annotations.Parameter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Random;
-
-import com.nimbusds.oauth2.sdk.http.HTTPRequest;
-import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import java.util.concurrent.ThreadLocalRandom;
 
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
@@ -23,23 +25,75 @@ import net.minidev.json.parser.JSONParser;
 
 import io.grafeas.v1alpha1.model.Attestation;
 import io.grafeas.v1alpha1.model.PgpSignedAttestation;
-import com.oracle.sscm.client.script.GPGScriptWrapper;
-
-@Mojo(name = "securityScan")
+import com.oracle.sscm.client.scan.OccurrenceExporter;
+import com.oracle.sscm.client.scan.OccurrenceSink;
+import com.oracle.sscm.client.scan.OccurrenceUploader;
+import com.oracle.sscm.client.scan.ReportFormat;
+import com.oracle.sscm.client.scan.SbomFinding;
+import com.oracle.sscm.client.scan.SbomReader;
+import com.oracle.sscm.client.scan.VulnerabilityIndex;
+
+@Mojo(name = "securityScan", threadSafe = true)
 public class GrafeasSecurityScanMojo extends AbstractMojo {
 
-    @Parameter(property = "securityScan.dependencyReportJSON", defaultValue = "./dependency-check-report.json")
+    @Parameter(property = "securityScan.dependencyReportJSON", defaultValue = GoalDefaults.DEPENDENCY_REPORT_JSON)
     private String dependencyReportJSON;
 
-    @Parameter(property = "securityScan.grafeasUrl", defaultValue = "UNKNOWN")
+    @Parameter(property = "securityScan.grafeasUrl", defaultValue = GoalDefaults.UNKNOWN)
     private String grafeasUrl;
 
-    @Parameter(property = "securityScan.resourceUrl", defaultValue = "UNKNOWN")
+    @Parameter(property = "securityScan.resourceUrl", defaultValue = GoalDefaults.UNKNOWN)
     private String resourceUrl;
 
-    @Parameter(property = "authorityName", defaultValue = "SecurityScan")
+    @Parameter(property = "authorityName", defaultValue = GoalDefaults.SCAN_AUTHORITY_NAME)
     private String authorityName;
 
+    @Parameter(property = "securityScan.minCvssScore", defaultValue = GoalDefaults.MIN_CVSS_SCORE)
+    private double minCvssScore;
+
+    @Parameter(property = "securityScan.minConfidence", defaultValue = GoalDefaults.MIN_CONFIDENCE)
+    private String minConfidence;
+
+    @Parameter(property = "securityScan.suppressionFile")
+    private String suppressionFile;
+
+    // NDJSON file the occurrences are written to when there is no Grafeas URL, gzipped if
+    // its name ends with .gz
+    @Parameter(property = "securityScan.exportFile")
+    private String exportFile;
+
+    // Bytes of JSON per export file, the next occurrences go to name-00002.ndjson... 0 to never roll
+    @Parameter(property = "securityScan.exportRollSize", defaultValue = GoalDefaults.EXPORT_ROLL_SIZE)
+    private long exportRollSize;
+
+    // Directory of the local index of the artifacts affected by each vulnerability, may be
+    // shared by the builds, empty for no index
+    @Parameter(property = "securityScan.indexDir")
+    private String indexDir;
+
+    // Segments of the index that trigger its compaction, 0 to never compact during a scan
+    @Parameter(property = "securityScan.indexCompactSegments", defaultValue = GoalDefaults.INDEX_COMPACT_SEGMENTS)
+    private int indexCompactSegments;
+
+    // dependency-check, cyclonedx, spdx, or auto to detect it from the report
+    @Parameter(property = "securityScan.reportFormat", defaultValue = GoalDefaults.REPORT_FORMAT)
+    private String reportFormat;
+
+    // Seconds the goal may spend on Grafeas requests, 0 for no limit
+    @Parameter(property = "securityScan.timeBudget", defaultValue = GoalDefaults.TIME_BUDGET)
+    private long timeBudget;
+
+    // Latency percentile after which a GET is sent again, 0 for no hedging
+    @Parameter(property = "securityScan.hedgePercentile", defaultValue = GoalDefaults.HEDGE_PERCENTILE)
+    private double hedgePercentile;
+
+    // Chrome trace event file of the operations of the goal, empty for no tracing
+    @Parameter(property = "securityScan.traceFile")
+    private String traceFile;
+
+    @Parameter(property = "securityScan.debugLog", defaultValue = "false")
+    private String debugLog;
+
     // @Parameter(property = "securityScanResource", defaultValue = "$WERCKER_CACHE_DIR/weblogic-kubernetes-operator-0.1.0.jar")
     // private String securityScanResource;
 
@@ -58,6 +112,7 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
     public static final String GRAFEAS_PROJECTS = "projects/";
     public static final String GRAFEAS_OCCURRENCES_KEY = "occurrences/";
     public static final String GRAFEAS_NOTEID_QUERY_PARAM = "noteId";
+    public static final int HTTP_CONFLICT = 409;
     public static final String GRAFEAS_NOTE_NAME = GRAFEAS_PROJECTS + "%s/notes/%s";
     public static final String GRAFEAS_NOTE_NAME_PREFIX = GRAFEAS_VERSION;
     public static final String GRAFEAS_NOTES_PROJECTID = "build-infrastructure";
@@ -71,18 +126,65 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
 
 
     // Ordered to allow finding the best Confidence from a List
-    private enum Confidence {
+    enum Confidence {
       LOW, MEDIUM, HIGH, HIGHEST
     }
 
+    // Log of the goal execution, with sampling of the per occurrence lines
+    private GrafeasLog logger;
+
     private void log(String msg) {
-      getLog().info(msg);
+      if (logger != null) logger.info(msg);
+      else getLog().info(msg);
     }
 
     public void execute()
+      throws MojoExecutionException {
+      try {
+        Deadline.begin(timeBudget * 1000, hedgePercentile);
+      }
+      catch (IllegalArgumentException e) {
+        throw new MojoExecutionException(e.getMessage(), e);
+      }
+      try {
+        Tracer.begin(traceFile);
+      }
+      catch (IOException e) {
+        Deadline.end();
+        throw new MojoExecutionException("Failed to open the trace file " + traceFile, e);
+      }
+      Tracer.Span span = Tracer.start("goal", "securityScan");
+      try {
+        executeGoal();
+      }
+      finally {
+        span.end();
+        Deadline.end();
+        endTrace();
+      }
+    }
+
+    // Complete the trace, a trace that can't be written doesn't fail the goal
+    //
+    private void endTrace() {
+      Tracer tracer = Tracer.current();
+      if (tracer == null) {
+        return;
+      }
+      try {
+        Tracer.end();
+        getLog().info("Wrote " + tracer.getEvents() + " trace events to " + tracer.getFile());
+      }
+      catch (IOException e) {
+        getLog().warn("Failed to write the trace file " + tracer.getFile() + ": " + e.getMessage());
+      }
+    }
+
+    private void executeGoal()
       throws MojoExecutionException {
       // Setup arguments from parameters...
       boolean postGrafeas = false;
+      logger = MavenLogSink.createLog(getLog(), "true".equals(debugLog));
 
       log("dependencyReportJSON is '" + dependencyReportJSON + "'");
       log("grafeasUrl is '" + grafeasUrl + "'");
@@ -90,7 +192,9 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       log("authorityName is '" + authorityName + "'");
       // log("securityScanResource is '" + securityScanResource + "'");
 
-      // Location of dependency-check report
+      // Location of dependency-check report, parameters are left as configured
+      // since a parallel build may run several executions of the goal...
+      String dependencyReportJSON = this.dependencyReportJSON;
       if (new File(dependencyReportJSON).isDirectory()) {
         StringBuilder file = new StringBuilder(dependencyReportJSON);
         if (!dependencyReportJSON.endsWith(File.separator)) file.append(File.separator);
@@ -98,6 +202,7 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       }
 
       // Location of Grafeas API server
+      String grafeasUrl = this.grafeasUrl;
       if (!grafeasUrl.equals("UNKNOWN")) {
         postGrafeas = true;
         if (!grafeasUrl.endsWith(URL_SLASH)) grafeasUrl += URL_SLASH;
@@ -119,91 +224,41 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       }
       catch (Exception e) { /* ignore */ }
 
-      // Parse the OWSAP dependency-check-report.json...
-      JSONObject report = null;
-      String projectId = null;
-
+      // Read the report in its format, SBOMs are streamed...
+      ReportFormat format;
       try {
-        if (postGrafeas) log("OWASP dependency-check report: " + projectReportCompleteFileName);
-        report = parseDependencyCheckReport(dependencyReportJSON);
-        JSONObject projectInfo = (JSONObject) report.get("projectInfo");
-        String projectReportDate = (projectInfo != null) ? (String) projectInfo.get("reportDate") : "UNKNOWN";
-        projectId = (projectInfo != null) ? (String) projectInfo.get("name"): "UNKNOWN";
-
-        if (postGrafeas) {
-          log("OWASP dependency-check report was generated on: " + projectReportDate);
-          log("Grafeas {projectsId} for Occurrences: " + projectId);
-        }
+        format = ReportFormat.fromName(reportFormat);
+        if (format == null) format = ReportFormat.detect(new File(dependencyReportJSON));
       }
-      catch (Exception e) {
-        log("Exception: " + e.toString());
-        e.printStackTrace();
-        System.exit(1);
+      catch (IllegalArgumentException e) {
+        throw new MojoExecutionException(e.getMessage(), e);
       }
-
-      // Generate Grafeas Occurrences base on reported vulnerabilities...
-      JSONObject occurrences = new JSONObject();
-      try {
-        JSONArray listOccurrences = generateOccurrenceList(report, resourceUrl);
-        if (listOccurrences != null) {
-          occurrences.put("occurrences", listOccurrences);
-          if (postGrafeas) log("Grafeas Occurrences generated: " + listOccurrences.size());
-        }
-        else if (postGrafeas) log("No Grafeas Occurrences generated!");
-      }
-      catch (Exception e) {
-        log("Exception: " + e.toString());
-        e.printStackTrace();
-        System.exit(1);
+      catch (IOException e) {
+        throw new MojoExecutionException("Failed to read the report " + projectReportCompleteFileName, e);
       }
-      //
-      // Handle the generated occurrence data:
-      //
-      // A) Fill out Grafeas URLs then upload (i.e. POST) the results using
-      // the Grafeas API checking/creating any Notes for referenced CVEs!
-      //
-      //   OR
-      //
-      // B) Output the list of occurrences in their JSON format so that the
-      // occurrence JSON data can be saved or piped into another tool!
-      //
-      // NOTE: The Grafeas URL specified on command line was checked
-      //       to ensure that there is a trailing '/' character...
-      //
-     String grafeasNotesUrl = grafeasUrl + GRAFEAS_NOTES;
-     String grafeasNotesUrlPrefix = grafeasUrl + GRAFEAS_NOTE_NAME_PREFIX;
-     String grafeasOccurrencesUrl = String.format(GRAFEAS_OCCURRENCES, grafeasUrl, projectId);
-     try {
-       JSONArray listOccurrences = (JSONArray) occurrences.get("occurrences");
-        if ((listOccurrences != null) && (listOccurrences.size() > 0)) {
-          if (postGrafeas) {
-            log("Creating Notes at: " + grafeasNotesUrl);
-            log("Creating Occurrences at: " + grafeasOccurrencesUrl);
-
-            uploadOccurrenceList(listOccurrences, grafeasNotesUrlPrefix, grafeasOccurrencesUrl);
-          }
-          else {
-            log(occurrences.toJSONString());
-          }
-        }
-        else log("No Occurrences generated from reading file: " + projectReportCompleteFileName);
+
+      if (format == ReportFormat.DEPENDENCY_CHECK) {
+        scanDependencyCheckReport(dependencyReportJSON, projectReportCompleteFileName, grafeasUrl, postGrafeas);
       }
-      catch (Exception e) {
-        log("Exception: " + e.toString());
-        e.printStackTrace();
-        System.exit(1);
+      else {
+        scanSbom(format, dependencyReportJSON, projectReportCompleteFileName, grafeasUrl, postGrafeas);
       }
 
       if (postGrafeas) {
          log("Creating SecurityScan attestation");
          try {
-             GrafeasUtilities.getGrafeasUtilitiesWithDemoDefaults(grafeasUrl).createAttestationOccurrence(authorityName, resourceUrl);
+             GrafeasUtilities utils = GrafeasUtilities.getGrafeasUtilitiesWithDemoDefaults(grafeasUrl);
+             utils.setLog(logger);
+             utils.createAttestationOccurrence(authorityName, resourceUrl);
          } catch(Throwable t) {
              log("Caught something while creating attestation: " + t);
          }
       }
 
-      if (postGrafeas) log("\nDone.");
+      if (postGrafeas) {
+        logger.logSummary();
+        log("\nDone.");
+      }
     }
 
     public String getDependencyReportJSON() {
@@ -222,6 +277,14 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
         this.grafeasUrl = grafeasUrl;
     }
 
+    public String getResourceUrl() {
+        return resourceUrl;
+    }
+
+    public void setResourceUrl(String resourceUrl) {
+        this.resourceUrl = resourceUrl;
+    }
+
     public String getAuthorityName() {
         return authorityName;
     }
@@ -230,6 +293,102 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
         this.authorityName = authorityName;
     }
 
+    public double getMinCvssScore() {
+        return minCvssScore;
+    }
+
+    public void setMinCvssScore(double minCvssScore) {
+        this.minCvssScore = minCvssScore;
+    }
+
+    public String getMinConfidence() {
+        return minConfidence;
+    }
+
+    public void setMinConfidence(String minConfidence) {
+        this.minConfidence = minConfidence;
+    }
+
+    public String getSuppressionFile() {
+        return suppressionFile;
+    }
+
+    public void setSuppressionFile(String suppressionFile) {
+        this.suppressionFile = suppressionFile;
+    }
+
+    public String getIndexDir() {
+        return indexDir;
+    }
+
+    public void setIndexDir(String indexDir) {
+        this.indexDir = indexDir;
+    }
+
+    public int getIndexCompactSegments() {
+        return indexCompactSegments;
+    }
+
+    public void setIndexCompactSegments(int indexCompactSegments) {
+        this.indexCompactSegments = indexCompactSegments;
+    }
+
+    public String getReportFormat() {
+        return reportFormat;
+    }
+
+    public void setReportFormat(String reportFormat) {
+        this.reportFormat = reportFormat;
+    }
+
+    public String getExportFile() {
+        return exportFile;
+    }
+
+    public void setExportFile(String exportFile) {
+        this.exportFile = exportFile;
+    }
+
+    public long getExportRollSize() {
+        return exportRollSize;
+    }
+
+    public void setExportRollSize(long exportRollSize) {
+        this.exportRollSize = exportRollSize;
+    }
+
+    public String getDebugLog() {
+        return debugLog;
+    }
+
+    public void setDebugLog(String debugLog) {
+        this.debugLog = debugLog;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public String getTraceFile() {
+        return traceFile;
+    }
+
+    public void setTraceFile(String traceFile) {
+        this.traceFile = traceFile;
+    }
+
     /* public String getSecurityScanResource() {
         return securityScanResource;
     }
@@ -254,6 +413,253 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
         this.securityScanKeyId = keyId;
     }*/
 
+    // Generate the occurrences of an OWASP dependency-check report, then upload or print them
+    //
+    private void scanDependencyCheckReport(String dependencyReportJSON, String projectReportCompleteFileName,
+                                           String grafeasUrl, boolean postGrafeas) throws MojoExecutionException {
+      // Parse the OWSAP dependency-check-report.json...
+      JSONObject report = null;
+      String projectId = null;
+
+      try {
+        if (postGrafeas) log("OWASP dependency-check report: " + projectReportCompleteFileName);
+        report = parseDependencyCheckReport(dependencyReportJSON);
+        JSONObject projectInfo = (JSONObject) report.get("projectInfo");
+        String projectReportDate = (projectInfo != null) ? (String) projectInfo.get("reportDate") : "UNKNOWN";
+        projectId = (projectInfo != null) ? (String) projectInfo.get("name"): "UNKNOWN";
+
+        if (postGrafeas) {
+          log("OWASP dependency-check report was generated on: " + projectReportDate);
+          log("Grafeas {projectsId} for Occurrences: " + projectId);
+        }
+      }
+      catch (Exception e) {
+        throw new MojoExecutionException("Failed to read the dependency-check report " + projectReportCompleteFileName, e);
+      }
+
+      //
+      // Generate Grafeas Occurrences base on reported vulnerabilities, each of
+      // them is handled as soon as it is generated:
+      //
+      // A) Fill out Grafeas URLs then upload (i.e. POST) the results using
+      // the Grafeas API checking/creating any Notes for referenced CVEs!
+      //
+      //   OR
+      //
+      // B) Write the occurrences to the export file, one JSON object per line,
+      // for another tool to consume or upload!
+      //
+      //   OR
+      //
+      // C) Output the list of occurrences in their JSON format so that the
+      // occurrence JSON data can be saved or piped into another tool!
+      //
+      // NOTE: The Grafeas URL specified on command line was checked
+      //       to ensure that there is a trailing '/' character...
+      //
+      JSONArray listOccurrences = new JSONArray();
+      OccurrenceSink sink = null;
+      IndexSegment segment = null;
+      try {
+        VulnerabilityFilter filter = VulnerabilityFilter.create(minCvssScore, Confidence.valueOf(minConfidence.toUpperCase()), suppressionFile);
+        sink = createOccurrenceSink(grafeasUrl, postGrafeas, projectId, listOccurrences);
+        segment = openIndexSegment(postGrafeas);
+        int generated = generateOccurrences(report, resourceUrl, filter, sink, segment);
+        log(filter.getSummary());
+        finishOccurrences(sink, listOccurrences, generated, projectReportCompleteFileName);
+        if (segment != null) segment.commit();
+      }
+      catch (Exception e) {
+        throw new MojoExecutionException("Failed to generate the occurrences of " + projectReportCompleteFileName
+            + (postGrafeas ? " at " + grafeasUrl : ""), e);
+      }
+      finally {
+        closeOccurrenceSink(sink);
+        if (segment != null) segment.close();
+      }
+    }
+
+    // Stream the findings of a CycloneDX or SPDX SBOM: each occurrence is uploaded or exported
+    // as soon as it is generated, the SBOM is never held in memory. Without a Grafeas URL or an
+    // export file the occurrences are collected and printed, as for a dependency-check report.
+    //
+    private void scanSbom(ReportFormat format, String reportFileName, String projectReportCompleteFileName,
+                          String grafeasUrl, boolean postGrafeas) throws MojoExecutionException {
+      final SbomReader reader = new SbomReader(new File(reportFileName), format);
+      final VulnerabilityFilter filter;
+      try {
+        reader.index();
+        filter = VulnerabilityFilter.create(minCvssScore, Confidence.valueOf(minConfidence.toUpperCase()), suppressionFile);
+      }
+      catch (IOException e) {
+        throw new MojoExecutionException("Failed to read the " + format + " SBOM " + projectReportCompleteFileName, e);
+      }
+      final String projectId = (reader.getProjectName() != null) ? reader.getProjectName() : "UNKNOWN";
+      final String createTime = reader.getTimestamp();
+      if (postGrafeas) {
+        log(format + " SBOM: " + projectReportCompleteFileName);
+        log("Grafeas {projectsId} for Occurrences: " + projectId);
+      }
+
+      // An SBOM lists the exact packages, their identification has the highest confidence
+      JSONArray listOccurrences = new JSONArray();
+      final int[] generated = new int[1];
+      OccurrenceSink sink = null;
+      IndexSegment segment = null;
+      try {
+        final OccurrenceSink occurrenceSink = createOccurrenceSink(grafeasUrl, postGrafeas, projectId, listOccurrences);
+        sink = occurrenceSink;
+        final IndexSegment indexSegment = openIndexSegment(postGrafeas);
+        segment = indexSegment;
+        reader.read(new SbomReader.FindingHandler() {
+          public void finding(SbomFinding finding) throws IOException {
+            if (!filter.accept(finding.getCve(), finding.getCvssScore(), Confidence.HIGHEST, finding.getPackageNames())) return;
+            JSONObject occurrence = createOccurrenceForFinding(finding, projectId, createTime);
+            occurrenceSink.accept(occurrence);
+            generated[0]++;
+            if (indexSegment != null) {
+              List<String> names = finding.getPackageNames();
+              indexSegment.add(new VulnerabilityIndex.Entry(finding.getCve(), projectId, resourceUrl, finding.getSha1(),
+                                                            names.isEmpty() ? null : names.get(0)));
+            }
+          }
+        });
+        log(filter.getSummary());
+        finishOccurrences(sink, listOccurrences, generated[0], projectReportCompleteFileName);
+        if (segment != null) segment.commit();
+      }
+      catch (IOException e) {
+        throw new MojoExecutionException("Failed to generate the occurrences of " + projectReportCompleteFileName
+            + (postGrafeas ? " at " + grafeasUrl : ""), e);
+      }
+      finally {
+        closeOccurrenceSink(sink);
+        if (segment != null) segment.close();
+      }
+    }
+
+    // Destination of the occurrences: the Grafeas server, else the export file, else the
+    // list printed once the report is read
+    //
+    private OccurrenceSink createOccurrenceSink(String grafeasUrl, boolean postGrafeas, String projectId,
+                                                final JSONArray listOccurrences) {
+      if (postGrafeas) {
+        String grafeasOccurrencesUrl = String.format(GRAFEAS_OCCURRENCES, grafeasUrl, projectId);
+        log("Creating Notes at: " + grafeasUrl + GRAFEAS_NOTES);
+        log("Creating Occurrences at: " + grafeasOccurrencesUrl);
+        if (exportFile != null && !exportFile.isEmpty()) log("Occurrences are uploaded, exportFile is ignored");
+        return new OccurrenceUploader(grafeasUrl + GRAFEAS_NOTE_NAME_PREFIX, grafeasOccurrencesUrl, logger);
+      }
+      if (exportFile != null && !exportFile.isEmpty()) {
+        log("Exporting Occurrences to: " + exportFile);
+        return new OccurrenceExporter(new File(exportFile), exportRollSize);
+      }
+      return new OccurrenceSink() {
+        public void accept(JSONObject occurrence) {
+          listOccurrences.add(occurrence);
+        }
+      };
+    }
+
+    private void finishOccurrences(OccurrenceSink sink, JSONArray listOccurrences, int generated,
+                                   String projectReportCompleteFileName) throws IOException {
+      if (generated == 0) {
+        log("No Occurrences generated from reading file: " + projectReportCompleteFileName);
+      }
+      if (sink instanceof OccurrenceUploader) {
+        log("Grafeas Occurrences generated: " + generated);
+      }
+      else if (sink instanceof OccurrenceExporter) {
+        OccurrenceExporter exporter = (OccurrenceExporter) sink;
+        exporter.close();
+        log("Occurrences exported: " + exporter.getExported() + " in " + exporter.getFiles().size() + " file(s)");
+      }
+      else if (generated > 0) {
+        JSONObject occurrences = new JSONObject();
+        occurrences.put("occurrences", listOccurrences);
+        log(occurrences.toJSONString());
+      }
+    }
+
+    // Discard the part being exported when the scan failed, so that neither a temporary nor a
+    // truncated part is left. Nothing to do once the export is complete.
+    //
+    private void closeOccurrenceSink(OccurrenceSink sink) {
+      if (sink instanceof OccurrenceExporter) {
+        ((OccurrenceExporter) sink).abort();
+      }
+    }
+
+    // Segment of the vulnerability index for the findings of the scan, null without an index.
+    // The index answers which published artifacts are affected, printed and exported scans
+    // are not indexed.
+    //
+    private IndexSegment openIndexSegment(boolean postGrafeas) {
+      if (indexDir == null || indexDir.isEmpty()) return null;
+      if (!postGrafeas) {
+        log("Occurrences are not uploaded, indexDir is ignored");
+        return null;
+      }
+      try {
+        return new IndexSegment(new VulnerabilityIndex(new File(indexDir)).newSegment());
+      }
+      catch (IOException e) {
+        getLog().warn("Unable to update the vulnerability index " + indexDir + ": " + e);
+        return null;
+      }
+    }
+
+    // The index is a convenience, a scan is not failed because it can't be written: the
+    // segment is dropped with a warning on the first failure, and the scan goes on
+    //
+    private class IndexSegment {
+      private VulnerabilityIndex.Segment segment;
+
+      IndexSegment(VulnerabilityIndex.Segment segment) {
+        this.segment = segment;
+      }
+
+      void add(VulnerabilityIndex.Entry entry) {
+        if (segment == null) return;
+        try {
+          segment.add(entry);
+        }
+        catch (IOException e) {
+          getLog().warn("Unable to update the vulnerability index " + indexDir + ", the scan is not indexed: " + e);
+          close();
+        }
+      }
+
+      // Make the findings of the scan visible in the index, and compact it if it has enough segments
+      //
+      void commit() {
+        if (segment == null) return;
+        try {
+          segment.commit();
+          log("Vulnerability index: " + segment.getAdded() + " finding(s) added to " + indexDir);
+          VulnerabilityIndex index = new VulnerabilityIndex(new File(indexDir));
+          index.setCompactSegments(indexCompactSegments);
+          if (index.compactIfNeeded()) log("Vulnerability index compacted");
+        }
+        catch (IOException e) {
+          getLog().warn("Unable to update the vulnerability index " + indexDir + ": " + e);
+        }
+      }
+
+      // Discard the segment of a failed scan, or of a dropped one
+      //
+      void close() {
+        if (segment == null) return;
+        try {
+          segment.close();
+        }
+        catch (IOException e) {
+          log("Unable to close the vulnerability index segment: " + e);
+        }
+        segment = null;
+      }
+    }
+
     JSONObject parseDependencyCheckReport(String reportFileName) throws Exception {
       File reportJSON = new File(reportFileName);
       if (!reportJSON.canRead()) {
@@ -272,19 +678,9 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       return (JSONObject) object;
     }
 
-    private JSONObject parseCreatedOccurrence(String json) throws Exception {
-      JSONParser parser = new JSONParser(JSONParser.USE_HI_PRECISION_FLOAT | JSONParser.ACCEPT_TAILLING_SPACE);
-      //JSONParser parser = new JSONParser(JSONParser.USE_HI_PRECISION_FLOAT);
-      Object object = parser.parse(json);
-      if (!(object instanceof JSONObject)) {
-        log("Unable to read occurrence JSON: " + json);
-        throw new IOException("Unable to parse JSON: " + json);
-      }
-      return (JSONObject) object;
-    }
-
-    JSONArray generateOccurrenceList(JSONObject report, String scanResourceUrl) throws Exception {
-      JSONArray listOccurrences = null;
+    int generateOccurrences(JSONObject report, String scanResourceUrl, VulnerabilityFilter filter, OccurrenceSink sink,
+                            IndexSegment segment) throws Exception {
+      int generated = 0;
       JSONObject projectInfo = (JSONObject) report.get("projectInfo");
       String projectId = (projectInfo != null) ? (String) projectInfo.get("name"): "UNKNOWN";
       //String projectReportDate = (projectInfo != null) ? ((String) projectInfo.get("reportDate")) : "UNKNOWN";
@@ -298,7 +694,6 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       // Look through each scanned dependency...
       JSONArray listDependencies = (JSONArray) report.get("dependencies");
       if (listDependencies != null) {
-        listOccurrences = new JSONArray();
         for (Object d: listDependencies) {
           JSONObject dependency = (JSONObject) d;
 
@@ -309,10 +704,14 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
           // Build the occurrence from the vulnerability and dependency data...
           JSONObject occurrence = null;
           JSONObject packageIssue = createPackageIssue(dependency);
+          Confidence dependencyConfidence = getBestConfidence(dependency);
+          List<String> packageNames = getPackageNames(dependency);
 
           // For each vulnerability, create occurrence, add info and place into the list of Occurrences...
           for (Object v: listVulnerabilities) {
             JSONObject vulnerability = (JSONObject) v;
+            if ((filter != null) && !filter.accept((String) vulnerability.get("name"),
+                getCvssScore(vulnerability), dependencyConfidence, packageNames)) continue;
             JSONObject issue = (packageIssue != null) ? new JSONObject(packageIssue) : null;
             occurrence = createOccurrenceForVulnerability(vulnerability, issue);
             if (occurrence != null) {
@@ -320,12 +719,17 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
               occurrence.put("name", GRAFEAS_PROJECTS + projectId + URL_SLASH + GRAFEAS_OCCURRENCES_KEY + randomId);
               occurrence.put("resourceUrl", scanResourceUrl);
               occurrence.put("createTime", projectReportDate);
-              listOccurrences.add(occurrence);
+              sink.accept(occurrence);
+              generated++;
+              if (segment != null && vulnerability.get("name") != null) {
+                segment.add(new VulnerabilityIndex.Entry((String) vulnerability.get("name"), projectId, scanResourceUrl,
+                                                         (String) dependency.get("sha1"), (String) dependency.get("fileName")));
+              }
             }
           }
         }
       }
-      return listOccurrences;
+      return generated;
     }
 
     private String createResourceURL(JSONObject dependency, JSONArray listDependencies) {
@@ -359,11 +763,6 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       Confidence cpeConfidence = null;
       JSONObject packageIdentifier = null;
       Confidence packageConfidence = null;
-      JSONObject packageIssue = null;
-      JSONObject fixedLocation = null;
-      JSONObject affectedLocation = new JSONObject();
-      JSONObject affectedVersion = new JSONObject();
-      JSONObject fixedVerion = new JSONObject();
 
       // Find best confidence CPE and Package information
       JSONArray listIdentifiers = (JSONArray) dependency.get("identifiers");
@@ -390,19 +789,28 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       if (cpeIdentifier != null) cpeUri = (String) cpeIdentifier.get("name");
       if (packageIdentifier != null) packageName = (String) packageIdentifier.get("name");
 
+      // Parse GAV into two parts to cover package information
+      if (packageName != null) {
+        int versionIndex = packageName.lastIndexOf(':');
+        if (versionIndex != -1) {
+          packageVersion = packageName.substring(versionIndex+1);
+          packageName = packageName.substring(0, versionIndex);
+        }
+      }
+      return createPackageIssue(cpeUri, packageName, packageVersion);
+    }
+
+    private JSONObject createPackageIssue(String cpeUri, String packageName, String packageVersion) {
+      JSONObject packageIssue = null;
+      JSONObject fixedLocation = null;
+      JSONObject affectedLocation = new JSONObject();
+      JSONObject affectedVersion = new JSONObject();
+      JSONObject fixedVerion = new JSONObject();
+
       // Build the package issue details...
       if ((packageName != null) || (cpeUri != null)) {
         packageIssue = new JSONObject();
 
-        // Parse GAV into two parts to cover package information
-        if (packageName != null) {
-          int versionIndex = packageName.lastIndexOf(':');
-          if (versionIndex != -1) {
-            packageVersion = packageName.substring(versionIndex+1);
-            packageName = packageName.substring(0, versionIndex);
-          }
-        }
-
         // Affected package
         if (cpeUri != null) affectedLocation.put("cpeUri", cpeUri);
         if (packageName != null) affectedLocation.put("package", packageName);
@@ -442,6 +850,44 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       return confidence;
     }
 
+    private Confidence getBestConfidence(JSONObject dependency) {
+      Confidence best = null;
+      JSONArray listIdentifiers = (JSONArray) dependency.get("identifiers");
+      if (listIdentifiers != null) {
+        for (Object id: listIdentifiers) {
+          Confidence confidence = getConfidence((JSONObject) id);
+          if (higherConfidence(confidence, best)) best = confidence;
+        }
+      }
+      return best;
+    }
+
+    // Names a suppression rule can match: identifier names (GAV or CPE) and the file name
+    private List<String> getPackageNames(JSONObject dependency) {
+      List<String> names = new ArrayList<String>();
+      JSONArray listIdentifiers = (JSONArray) dependency.get("identifiers");
+      if (listIdentifiers != null) {
+        for (Object id: listIdentifiers) {
+          String name = (String) ((JSONObject) id).get("name");
+          if (name != null) names.add(name);
+        }
+      }
+      String fileName = (String) dependency.get("fileName");
+      if (fileName != null) names.add(fileName);
+      return names;
+    }
+
+    private Double getCvssScore(JSONObject vulnerability) {
+      Object score = vulnerability.get("cvssScore");
+      if (score == null) return null;
+      try {
+        return Double.valueOf(score.toString());
+      }
+      catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
     private boolean higherConfidence(Confidence confidence, Confidence other) {
       if (confidence == null) return false;
       if (other == null) return true;
@@ -468,9 +914,9 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
 
       // Build the vulnerability details...
       JSONObject vulnerabilityDetails = new JSONObject();
-      Double cvssScore = new Double((String) vulnerability.get("cvssScore"));
+      Double cvssScore = getCvssScore(vulnerability);
       vulnerabilityDetails.put("severity", severity);
-      vulnerabilityDetails.put("cvssScore", cvssScore);
+      if (cvssScore != null) vulnerabilityDetails.put("cvssScore", cvssScore);
       if (listPackageIssues != null) vulnerabilityDetails.put("packageIssue", listPackageIssues);
 
       // Build the occurrence...
@@ -483,55 +929,21 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       return occurrence;
     }
 
-    private JSONObject createNoteForOccurrence(JSONObject occurrence) {
-      JSONObject note = null;
-      note = new JSONObject();
-
-      // Get note data...
-      String name = (String) occurrence.get("noteName");
-      int cveIndex = name.lastIndexOf('/');
-      String CVE = (cveIndex != -1) ? name.substring(cveIndex+1) : name;
-      String attestNoteName = GRAFEAS_PROJECTS + GRAFEAS_NOTES_PROJECTID + URL_SLASH + "notes/SecurityScan";
-      if (!(((String) occurrence.get("noteName")).equals(attestNoteName))) {
-        JSONObject vulnerabilityDetails = (JSONObject) occurrence.get("vulnerabilityDetails");
-        Double cvssScore = (Double) vulnerabilityDetails.get("cvssScore");
-        String severity = (String) vulnerabilityDetails.get("severity");
-
-        // Build the vulnerability type...
-        JSONObject vulnerabilityType = new JSONObject();
-        vulnerabilityType.put("severity", severity);
-        vulnerabilityType.put("cvssScore", cvssScore);
-
-        // Build the note...
-        note.put("name", name);
-        note.put("shortDescription", CVE);
-        note.put("kind", "PACKAGE_VULNERABILITY");
-        note.put("vulnerabilityType", vulnerabilityType);
-      } else {
-        JSONObject vulnerabilityType = new JSONObject();
-        vulnerabilityType.put("severity", "LOW");
-        vulnerabilityType.put("cvssScore", new Double("1"));
-
-        note.put("name", name);
-        note.put("shortDescription", "SecurityScan");
-        note.put("longDescription", "Oracle Grafeas Security Scan Metadata Generator");
-        note.put("kind", "KIND_UNSPECIFIED");
-      }
-
-      // Done
-      return note;
-    }
-
-    void uploadOccurrenceList(JSONArray listOccurrences, String notePrefixUrl, String occurrencesUrl) throws Exception {
-      for (Object o: listOccurrences) {
-        JSONObject occurrence = (JSONObject) o;
-        //String attestNoteName = GRAFEAS_PROJECTS + GRAFEAS_NOTES_PROJECTID + URL_SLASH + "notes/SecurityScan";
-        //if (!(((String) occurrence.get("noteName")).equals(attestNoteName))) {
-          String noteUrl = notePrefixUrl + ((String) occurrence.get("noteName"));
-          checkNoteForOccurrence(noteUrl, occurrence);
-        //}
-        createOccurrence(occurrencesUrl, occurrence);
-      }
+    // Occurrence of an SBOM finding, named and dated like those of a dependency-check report
+    //
+    private JSONObject createOccurrenceForFinding(SbomFinding finding, String projectId, String createTime) {
+      JSONObject vulnerability = new JSONObject();
+      vulnerability.put("name", finding.getCve());
+      vulnerability.put("severity", finding.getSeverity());
+      vulnerability.put("source", finding.getSource());
+      vulnerability.put("cvssScore", finding.getCvssScore());
+      JSONObject packageIssue = createPackageIssue(finding.getCpeUri(), finding.getPackageName(), finding.getPackageVersion());
+      JSONObject occurrence = createOccurrenceForVulnerability(vulnerability, packageIssue);
+      String randomId = authorityName + "-" + generateRandomChars(RANDOMID_CANDIDATE_CHARS,20);
+      occurrence.put("name", GRAFEAS_PROJECTS + projectId + URL_SLASH + GRAFEAS_OCCURRENCES_KEY + randomId);
+      occurrence.put("resourceUrl", resourceUrl);
+      if (createTime != null) occurrence.put("createTime", createTime);
+      return occurrence;
     }
 
     String convertDateFormat(String origDateString, SimpleDateFormat origDateFormat, SimpleDateFormat targetDateFormat) {
@@ -556,7 +968,7 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
 
     public String generateRandomChars(String candidateChars, int length) {
       StringBuilder sb = new StringBuilder();
-      Random random = new Random();
+      Random random = ThreadLocalRandom.current();
       for (int i = 0; i < length; i++) {
         sb.append(candidateChars.charAt(random.nextInt(candidateChars
                 .length())));
@@ -565,38 +977,4 @@ public class GrafeasSecurityScanMojo extends AbstractMojo {
       return sb.toString();
     }
 
-    private void checkNoteForOccurrence(String noteUrl, JSONObject occurrence) throws Exception {
-      log(String.format("\nChecking for Note '%s'", noteUrl));
-      HTTPRequest checkRequest = new HTTPRequest(HTTPRequest.Method.GET, new URL(noteUrl));
-      HTTPResponse checkResponse = checkRequest.send();
-      if (!checkResponse.indicatesSuccess()) {
-        // Create Note when not present to satisfy checks...
-        JSONObject note = createNoteForOccurrence(occurrence);
-        int cveIndex = noteUrl.lastIndexOf('/');
-        String url = (cveIndex != -1) ? noteUrl.substring(0, cveIndex) : noteUrl;
-        String postQuery = String.format("%s=%s", GRAFEAS_NOTEID_QUERY_PARAM, note.get("shortDescription"));
-        URL postUrl = new URL(String.format("%s?%s", url, postQuery));
-        log(String.format("Creating Note '%s'", postUrl.toString()));
-        HTTPRequest request = new HTTPRequest(HTTPRequest.Method.POST, postUrl);
-        request.setHeader("Content-Type", "application/json");
-        request.setQuery(note.toJSONString());
-        HTTPResponse response = request.send();
-        if (!response.indicatesSuccess())
-          throw new IOException("Failed to create Note: " + response.getContent());
-      }
-    }
-
-    private void createOccurrence(String occurrenceUrl, JSONObject occurrence) throws Exception {
-      log(String.format("Creating Occurrence for '%s'", occurrence.get("resourceUrl")));
-      log(String.format("Occurrence string unescape is '%s'", occurrence.toJSONString().replace("\\/\\/", "//")));
-      HTTPRequest request = new HTTPRequest(HTTPRequest.Method.POST, new URL(occurrenceUrl));
-      request.setHeader("Content-Type", "application/json");
-      request.setQuery(occurrence.toJSONString().replace("\\/\\/", "//"));
-      HTTPResponse response = request.send();
-      if (!response.indicatesSuccess())
-        throw new IOException("Failed to create Occurrence: " + response.getContent());
-      JSONObject created = parseCreatedOccurrence(response.getContent());
-      log("Created Occurrence: " + created.get("name"));
-    }
-
 }
@@ -1,29 +1,60 @@
 package com.oracle.sscm.client.plugins.maven;
 
+import com.oracle.sscm.client.grafeas.Deadline;
 import com.oracle.sscm.client.grafeas.GrafeasUtilities;
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.log.Tracer;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
-@Mojo(name = "testAttestation")
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+@Mojo(name = "testAttestation", threadSafe = true)
 public class GrafeasTestMojo extends AbstractMojo {
 
-    @Parameter(property = "testAttestation.projectName", defaultValue = "UNKNOWN")
+    @Parameter(property = "testAttestation.projectName", defaultValue = GoalDefaults.UNKNOWN)
     private String projectName;
 
-    @Parameter(property = "testAttestation.grafeasUrl", defaultValue = "UNKNOWN")
+    @Parameter(property = "testAttestation.grafeasUrl", defaultValue = GoalDefaults.UNKNOWN)
     private String grafeasUrl;
 
-    @Parameter(property = "testAttestation.resourceUrl", defaultValue = "UNKNOWN")
+    @Parameter(property = "testAttestation.resourceUrl", defaultValue = GoalDefaults.UNKNOWN)
     private String resourceUrl;
 
-    @Parameter(property = "testAttestation.authorityName", defaultValue = "Test")
+    @Parameter(property = "testAttestation.authorityName", defaultValue = GoalDefaults.TEST_AUTHORITY_NAME)
     private String authorityName;
 
-    @Parameter(property = "testAttestation.debugLog", defaultValue = "true")
+    @Parameter(property = "testAttestation.resourceUrls")
+    private List<String> resourceUrls;
+
+    @Parameter(property = "testAttestation.authorityNames")
+    private List<String> authorityNames;
+
+    @Parameter(property = "testAttestation.signingThreads", defaultValue = GoalDefaults.SIGNING_THREADS)
+    private int signingThreads;
+
+    // Seconds the goal may spend on Grafeas requests, 0 for no limit
+    @Parameter(property = "testAttestation.timeBudget", defaultValue = GoalDefaults.TIME_BUDGET)
+    private long timeBudget;
+
+    // Latency percentile after which a GET is sent again, 0 for no hedging
+    @Parameter(property = "testAttestation.hedgePercentile", defaultValue = GoalDefaults.HEDGE_PERCENTILE)
+    private double hedgePercentile;
+
+    // Chrome trace event file of the operations of the goal, empty for no tracing
+    @Parameter(property = "testAttestation.traceFile")
+    private String traceFile;
+
+    @Parameter(property = "testAttestation.debugLog", defaultValue = "false")
     private String debugLog;
 
+    @Parameter(property = "testAttestation.wireDebug", defaultValue = "false")
+    private boolean wireDebug;
+
     private String grafeasOccurrence;
 
     //
@@ -39,44 +70,188 @@ public class GrafeasTestMojo extends AbstractMojo {
     }
 
     public void execute() throws MojoExecutionException {
+        try {
+            Deadline.begin(timeBudget * 1000, hedgePercentile);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        try {
+            Tracer.begin(traceFile);
+        } catch (IOException e) {
+            Deadline.end();
+            throw new MojoExecutionException("Failed to open the trace file " + traceFile, e);
+        }
+        Tracer.Span span = Tracer.start("goal", "testAttestation");
+        try {
+            executeGoal();
+        } finally {
+            span.end();
+            Deadline.end();
+            endTrace();
+        }
+    }
 
-        System.out.println("GrafeasUrl = " + grafeasUrl);
-        System.out.println("projectName = " + projectName);
-        System.out.println("resourceUrl = " + resourceUrl);
-        System.out.println("authorityName = " + authorityName);
+    // Complete the trace, a trace that can't be written doesn't fail the goal
+    //
+    private void endTrace() {
+        Tracer tracer = Tracer.current();
+        if (tracer == null) {
+            return;
+        }
+        try {
+            Tracer.end();
+            getLog().info("Wrote " + tracer.getEvents() + " trace events to " + tracer.getFile());
+        } catch (IOException e) {
+            getLog().warn("Failed to write the trace file " + tracer.getFile() + ": " + e.getMessage());
+        }
+    }
+
+    private void executeGoal() throws MojoExecutionException {
 
+        GrafeasLog logger = MavenLogSink.createLog(getLog(), "true".equals(debugLog));
+        logger.debug("GrafeasUrl = %s", grafeasUrl);
+        logger.debug("projectName = %s", projectName);
+        logger.debug("resourceUrl = %s", resourceUrl);
+        logger.debug("authorityName = %s", authorityName);
         try {
             // Setup arguments from parameters...
-            GrafeasUtilities utils = getUtils();
+            GrafeasUtilities utils = getUtils(logger);
 
             log("\nCreating test Attestation Occurrence.");
 
-            utils.createAttestationOccurrence(authorityName, resourceUrl);
+            List<String> resources = (resourceUrls != null && !resourceUrls.isEmpty())
+                ? resourceUrls : Collections.singletonList(resourceUrl);
+            List<String> authorities = (authorityNames != null && !authorityNames.isEmpty())
+                ? authorityNames : Collections.singletonList(authorityName);
+            if (resources.size() == 1 && authorities.size() == 1) {
+                utils.createAttestationOccurrence(authorities.get(0), resources.get(0));
+            } else {
+                utils.createAttestationOccurrences(authorities, resources, signingThreads);
+            }
             log("\nGenerated Test Attestation.");
       } catch (Exception ex) {
-         log("Exception = " + ex.toString());
-         ex.printStackTrace();
+         throw new MojoExecutionException("Error creating the test attestations in grafeas", ex);
+      } finally {
+         logger.logSummary();
       }
     }
 
-    private GrafeasUtilities getUtils() {
+    private GrafeasUtilities getUtils(GrafeasLog logger) {
 
-        // Location of Grafeas API server
-        if (grafeasUrl != null && !grafeasUrl.equals("UNKNOWN")) {
-            if (grafeasUrl != null && grafeasUrl.endsWith(URL_SLASH)) {
-                grafeasUrl = grafeasUrl.substring(0, grafeasUrl.length() - 1);
+        // Location of Grafeas API server, the parameter itself is left as configured
+        String url = grafeasUrl;
+        if (url != null && !url.equals("UNKNOWN")) {
+            if (url.endsWith(URL_SLASH)) {
+                url = url.substring(0, url.length() - 1);
             }
-            if (grafeasUrl.equals("http://:")) {
-                grafeasUrl = null;
+            if (url.equals("http://:")) {
+                url = null;
             }
         }
 
-        GrafeasUtilities utils = GrafeasUtilities.getGrafeasUtilitiesWithDemoDefaults(grafeasUrl);
+        GrafeasUtilities utils = GrafeasUtilities.getGrafeasUtilitiesWithDemoDefaults(url);
 
-        if ("true".equals(debugLog))
-            utils.enableDebugging();
+        utils.setLog(logger);
+        if (wireDebug)
+            utils.enableWireDebugging();
 
         return utils;
 
     }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public String getGrafeasUrl() {
+        return grafeasUrl;
+    }
+
+    public void setGrafeasUrl(String grafeasUrl) {
+        this.grafeasUrl = grafeasUrl;
+    }
+
+    public String getResourceUrl() {
+        return resourceUrl;
+    }
+
+    public void setResourceUrl(String resourceUrl) {
+        this.resourceUrl = resourceUrl;
+    }
+
+    public String getAuthorityName() {
+        return authorityName;
+    }
+
+    public void setAuthorityName(String authorityName) {
+        this.authorityName = authorityName;
+    }
+
+    public List<String> getResourceUrls() {
+        return resourceUrls;
+    }
+
+    public void setResourceUrls(List<String> resourceUrls) {
+        this.resourceUrls = resourceUrls;
+    }
+
+    public List<String> getAuthorityNames() {
+        return authorityNames;
+    }
+
+    public void setAuthorityNames(List<String> authorityNames) {
+        this.authorityNames = authorityNames;
+    }
+
+    public int getSigningThreads() {
+        return signingThreads;
+    }
+
+    public void setSigningThreads(int signingThreads) {
+        this.signingThreads = signingThreads;
+    }
+
+    public String getDebugLog() {
+        return debugLog;
+    }
+
+    public void setDebugLog(String debugLog) {
+        this.debugLog = debugLog;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public String getTraceFile() {
+        return traceFile;
+    }
+
+    public void setTraceFile(String traceFile) {
+        this.traceFile = traceFile;
+    }
+
+    public boolean isWireDebug() {
+        return wireDebug;
+    }
+
+    public void setWireDebug(boolean wireDebug) {
+        this.wireDebug = wireDebug;
+    }
 }
@@ -0,0 +1,43 @@
+package com.oracle.sscm.client.plugins.maven;
+
+import com.oracle.sscm.client.log.GrafeasLog;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Writes GrafeasLog messages to the Maven log. Debug messages go to the Maven debug level
+ * when Maven runs with -X, and to the info level when only the goal's debugLog is set.
+ */
+class MavenLogSink implements GrafeasLog.Sink {
+  private final Log log;
+
+  MavenLogSink(Log log) {
+    this.log = log;
+  }
+
+  /**
+   * @return a log at debug level if debug is set or Maven runs with -X, info level otherwise
+   */
+  static GrafeasLog createLog(Log log, boolean debug) {
+    return new GrafeasLog(new MavenLogSink(log), (debug || log.isDebugEnabled()) ? GrafeasLog.Level.DEBUG : GrafeasLog.Level.INFO);
+  }
+
+  public void write(GrafeasLog.Level level, String message) {
+    switch (level) {
+      case DEBUG:
+        if (log.isDebugEnabled()) {
+          log.debug(message);
+        } else {
+          log.info(message);
+        }
+        break;
+      case INFO:
+        log.info(message);
+        break;
+      case WARN:
+        log.warn(message);
+        break;
+      default:
+        log.error(message);
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package com.oracle.sscm.client.plugins.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.oracle.sscm.client.grafeas.GrafeasUtilities;
+import com.oracle.sscm.client.plugins.maven.GrafeasSecurityScanMojo.Confidence;
+
+/**
+ * Pre-upload filter for reported vulnerabilities.
+ *
+ * A finding is dropped when its CVSS score is below the minimum score, when the best
+ * identifier confidence of its dependency is below the minimum confidence, or when it
+ * matches a rule of the suppression file. The suppression file holds one rule per line:
+ * <pre>
+ *   # comment
+ *   CVE-2017-5645                        suppress the CVE everywhere
+ *   CVE-2018-*                           glob patterns are allowed
+ *   CVE-2016-1000031 commons-fileupload* suppress the CVE for matching packages only
+ *   * org.bouncycastle:*                 suppress every CVE for matching packages
+ * </pre>
+ * Rules are compiled once: exact CVE names go into a hash set, CVE-only globs into a
+ * single alternation pattern and package rules are grouped by exact CVE name.
+ */
+class VulnerabilityFilter {
+
+  private final double minCvssScore;
+  private final Confidence minConfidence;
+
+  // CVE-only rules
+  private final Set<String> suppressedCves = new HashSet<String>();
+  private final Pattern suppressedCvePattern;
+
+  // CVE and package rules, keyed by exact CVE name or kept as glob pairs
+  private final Map<String, List<Pattern>> packageRulesByCve = new HashMap<String, List<Pattern>>();
+  private final List<Pattern[]> packageRules = new ArrayList<Pattern[]>();
+
+  private int accepted;
+  private int filteredByScore;
+  private int filteredByConfidence;
+  private int suppressed;
+
+  VulnerabilityFilter(double minCvssScore, Confidence minConfidence, List<String> suppressionRules) {
+    this.minCvssScore = minCvssScore;
+    this.minConfidence = (minConfidence != null) ? minConfidence : Confidence.LOW;
+
+    StringBuilder cveGlobs = new StringBuilder();
+    if (suppressionRules != null) {
+      for (String rule : suppressionRules) {
+        String line = rule.trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+
+        String[] parts = line.split("\\s+");
+        String cve = parts[0].toUpperCase(Locale.ROOT);
+        if (parts.length == 1) {
+          if (isGlob(cve)) {
+            if (cveGlobs.length() > 0) cveGlobs.append('|');
+            cveGlobs.append(GrafeasUtilities.globToRegex(cve));
+          }
+          else suppressedCves.add(cve);
+        }
+        else {
+          Pattern packagePattern = compileGlob(parts[1]);
+          if (isGlob(cve)) {
+            packageRules.add(new Pattern[] {compileGlob(cve), packagePattern});
+          }
+          else {
+            List<Pattern> rules = packageRulesByCve.get(cve);
+            if (rules == null) {
+              rules = new ArrayList<Pattern>();
+              packageRulesByCve.put(cve, rules);
+            }
+            rules.add(packagePattern);
+          }
+        }
+      }
+    }
+    suppressedCvePattern = (cveGlobs.length() > 0)
+      ? Pattern.compile(cveGlobs.toString(), Pattern.CASE_INSENSITIVE) : null;
+  }
+
+  /**
+   * Create a filter, reading the suppression rules from the given file when it is set.
+   */
+  static VulnerabilityFilter create(double minCvssScore, Confidence minConfidence, String suppressionFile) throws IOException {
+    List<String> rules = new ArrayList<String>();
+    if (suppressionFile != null && !suppressionFile.isEmpty()) {
+      File file = new File(suppressionFile);
+      if (!file.canRead()) {
+        throw new IOException("Cannot Read Suppression File: " + suppressionFile);
+      }
+      BufferedReader in = new BufferedReader(new FileReader(file));
+      try {
+        String line;
+        while ((line = in.readLine()) != null) {
+          rules.add(line);
+        }
+      }
+      finally {
+        in.close();
+      }
+    }
+    return new VulnerabilityFilter(minCvssScore, minConfidence, rules);
+  }
+
+  /**
+   * Return true if the finding should be turned into an occurrence, false if it is filtered.
+   *
+   * @param cve name of the vulnerability
+   * @param cvssScore CVSS score of the vulnerability, null when unknown
+   * @param confidence best identifier confidence of the dependency, null when unknown
+   * @param packageNames package names, CPE URIs and file name of the dependency
+   */
+  boolean accept(String cve, Double cvssScore, Confidence confidence, List<String> packageNames) {
+    if (cvssScore != null && cvssScore < minCvssScore) {
+      filteredByScore++;
+      return false;
+    }
+    if ((confidence != null ? confidence : Confidence.LOW).compareTo(minConfidence) < 0) {
+      filteredByConfidence++;
+      return false;
+    }
+    if (isSuppressed(cve, packageNames)) {
+      suppressed++;
+      return false;
+    }
+    accepted++;
+    return true;
+  }
+
+  int getAccepted() {
+    return accepted;
+  }
+
+  int getFiltered() {
+    return filteredByScore + filteredByConfidence + suppressed;
+  }
+
+  String getSummary() {
+    return String.format("Findings kept: %d, filtered: %d (CVSS score below %s: %d, confidence below %s: %d, suppressed: %d)",
+      accepted, getFiltered(), minCvssScore, filteredByScore, minConfidence, filteredByConfidence, suppressed);
+  }
+
+  private boolean isSuppressed(String cve, List<String> packageNames) {
+    if (cve == null) return false;
+    String name = cve.toUpperCase(Locale.ROOT);
+    if (suppressedCves.contains(name)) return true;
+    if (suppressedCvePattern != null && suppressedCvePattern.matcher(name).matches()) return true;
+    if (packageNames == null || packageNames.isEmpty()) return false;
+
+    List<Pattern> rules = packageRulesByCve.get(name);
+    if (rules != null) {
+      for (Pattern packagePattern : rules) {
+        if (matchesAny(packagePattern, packageNames)) return true;
+      }
+    }
+    for (Pattern[] rule : packageRules) {
+      if (rule[0].matcher(name).matches() && matchesAny(rule[1], packageNames)) return true;
+    }
+    return false;
+  }
+
+  private static boolean matchesAny(Pattern pattern, List<String> values) {
+    for (String value : values) {
+      if (value != null && pattern.matcher(value).matches()) return true;
+    }
+    return false;
+  }
+
+  private static boolean isGlob(String s) {
+    return s.indexOf('*') != -1 || s.indexOf('?') != -1;
+  }
+
+  private static Pattern compileGlob(String glob) {
+    return Pattern.compile(GrafeasUtilities.globToRegex(glob), Pattern.CASE_INSENSITIVE);
+  }
+}
@@ -0,0 +1,17 @@
+package com.oracle.sscm.client.sbas;
+
+/**
+ * Thrown when a deployment is denied, with the reason as message.
+ */
+public class SbasCheckException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public SbasCheckException(String message) {
+        super(message);
+    }
+
+    public SbasCheckException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,469 @@
+/**
+ * SBAS Checker
+ * Java implementation of the deployment authorization done by scripts/sbas/sbas-check.sh.
+ *
+ */
+
+
+package com.oracle.sscm.client.sbas;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.JSONParser;
+
+import com.oracle.sscm.client.grafeas.GrafeasFilter;
+import com.oracle.sscm.client.grafeas.GrafeasHttp;
+import com.oracle.sscm.client.grafeas.GrafeasQueryClient;
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.script.AuthorityRegistry;
+import com.oracle.sscm.client.script.GPGScriptWrapper;
+import com.oracle.sscm.client.script.VerifiedSignature;
+
+/**
+ * Decides whether a resource may be deployed, based on its attestation occurrences.
+ *
+ * The decision is the same as the one made by sbas-check.sh: every signed attestation of
+ * the resource must verify and be signed by the key it declares, the key must belong to the
+ * attestation authority when an authority file is given, and Sphinx must allow the deployment.
+ * Occurrences of the resource are fetched once with a server side filter, notes are fetched concurrently and only once per note name
+ * during a check, and signatures are verified in parallel.
+ */
+public class SbasChecker {
+
+    private static final String GRAFEAS_VERSION = "v1alpha1";
+    private static final String DEFAULT_SPHINX_TMS_ENDPOINT = "https://a.authz.fun:6735/bak8dhbp5c8g00dbaup0/tenant-mgmt/v1/token";
+    private static final String DEFAULT_SPHINX_ARS_ENDPOINT = "https://a.authz.fun:6734/bak8dhbp5c8g00dbaup0/authz-check/v1/is-allowed";
+    private static final String DEFAULT_SPHINX_CLIENT_ID = "client-BDIuVS";
+    private static final String DEFAULT_SPHINX_CLIENT_SECRET = "eYHNuaFZBH";
+    private static final String DEFAULT_SPHINX_SERVICE_NAME = "grafeas";
+    private static final int DEFAULT_THREADS = 8;
+
+    // Grafeas server URL, for example http://localhost:8080
+    private final String grafeasUrl;
+
+    // Paginated, filtered occurrence queries
+    private final GrafeasQueryClient queryClient;
+
+    // Attestation authorities and their public key ids, null if the authority check is skipped
+    private AuthorityRegistry authorities;
+
+    // Sphinx settings
+    private String sphinxTmsEndpoint = getEnv("SPHINX_TMS_ENDPOINT", DEFAULT_SPHINX_TMS_ENDPOINT);
+    private String sphinxArsEndpoint = getEnv("SPHINX_ARS_ENDPOINT", DEFAULT_SPHINX_ARS_ENDPOINT);
+    private String sphinxClientId = getEnv("SPHINX_CLIENT_ID", DEFAULT_SPHINX_CLIENT_ID);
+    private String sphinxClientSecret = getEnv("SPHINX_CLIENT_SECRET", DEFAULT_SPHINX_CLIENT_SECRET);
+    private String sphinxServiceName = getEnv("SPHINX_SERVICE_NAME", DEFAULT_SPHINX_SERVICE_NAME);
+    private boolean evaluatePolicy = true;
+
+    // Number of threads used to fetch notes and verify signatures
+    private int threads = DEFAULT_THREADS;
+
+    // Debug output, at info level until debugging is enabled
+    //
+    private GrafeasLog logger = GrafeasLog.console(false);
+
+    public SbasChecker(String grafeasUrl) {
+        if (grafeasUrl.endsWith("/")) {
+            grafeasUrl = grafeasUrl.substring(0, grafeasUrl.length() - 1);
+        }
+        this.grafeasUrl = grafeasUrl;
+        this.queryClient = new GrafeasQueryClient(grafeasUrl);
+    }
+
+    /**
+     * Set the number of threads used to fetch notes and verify signatures
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Enable or disable the Sphinx policy evaluation
+     */
+    public void setEvaluatePolicy(boolean evaluatePolicy) {
+        this.evaluatePolicy = evaluatePolicy;
+    }
+
+    /**
+     * Set the Sphinx token endpoint
+     */
+    public void setSphinxTmsEndpoint(String endpoint) {
+        this.sphinxTmsEndpoint = endpoint;
+    }
+
+    /**
+     * Set the Sphinx authorization check endpoint
+     */
+    public void setSphinxArsEndpoint(String endpoint) {
+        this.sphinxArsEndpoint = endpoint;
+    }
+
+    /**
+     * Set the Sphinx client credentials
+     */
+    public void setSphinxClient(String clientId, String clientSecret) {
+        this.sphinxClientId = clientId;
+        this.sphinxClientSecret = clientSecret;
+    }
+
+    /**
+     * Set the Sphinx service name
+     */
+    public void setSphinxServiceName(String serviceName) {
+        this.sphinxServiceName = serviceName;
+    }
+
+    /**
+     * Enable debugging
+     */
+    public void enableDebugging() {
+        logger.setLevel(GrafeasLog.Level.DEBUG);
+        queryClient.enableDebugging();
+    }
+
+    /**
+     * Set the log of the debug output, also used by the occurrence queries
+     */
+    public void setLog(GrafeasLog logger) {
+        this.logger = logger;
+        queryClient.setLog(logger);
+    }
+
+    /**
+     * Get the log of the debug output
+     */
+    public GrafeasLog getLog() {
+        return logger;
+    }
+
+    /**
+     * Load the attestation authorities from the JSON file, an array of objects with a
+     * "name" and a "public_keys" array. A null file name skips the authority check.
+     *
+     * @throws SbasCheckException if the file can't be read or is invalid
+     */
+    public void loadAuthorities(String authorityFile) throws SbasCheckException {
+        if (authorityFile == null || authorityFile.isEmpty()) {
+            log("Attestation authority file not set, authority check will be skipped.");
+            return;
+        }
+        try {
+            authorities = AuthorityRegistry.fromFile(authorityFile);
+        } catch (IOException e) {
+            throw new SbasCheckException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Return true if the resource may be deployed to the cluster, false otherwise.
+     * The reason for a denial is logged.
+     */
+    public boolean isAllowed(String projectName, String resourceUrl, String clusterName) {
+        try {
+            check(projectName, resourceUrl, clusterName);
+            return true;
+        } catch (SbasCheckException e) {
+            logger.warn("Deployment of %s to %s denied: %s", resourceUrl, clusterName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Authorize the deployment of the resource to the cluster.
+     *
+     * @throws SbasCheckException with the reason if the deployment is denied
+     */
+    public void check(String projectName, String resourceUrl, String clusterName) throws SbasCheckException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Note name -> attestation authority name, fetched once per note during this check only,
+            // a failed or cancelled lookup is not reused by the next check
+            Map<String, Future<String>> noteAuthorities = new HashMap<String, Future<String>>();
+            List<SignedAttestation> attestations = loadMetadata(projectName, resourceUrl, noteAuthorities, executor);
+            binaryAuthorize(attestations, executor);
+
+            if (evaluatePolicy) {
+                evaluatePolicy(clusterName, attestations);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Read occurrences and notes from grafeas and extract values.
+    //
+    private List<SignedAttestation> loadMetadata(String projectName, String resourceUrl, Map<String, Future<String>> noteAuthorities,
+                                                 ExecutorService executor) throws SbasCheckException {
+        log("Get the occurrences of the resourceUrl from Grafeas server");
+        List<SignedAttestation> attestations = new ArrayList<SignedAttestation>();
+        boolean found = false;
+        try {
+            for (JSONObject occurrence : queryClient.listOccurrences(projectName, new GrafeasFilter().resourceUrl(resourceUrl))) {
+                found = true;
+                SignedAttestation attestation = extractAttestation(occurrence, noteAuthorities, executor);
+                if (attestation != null) {
+                    attestations.add(attestation);
+                }
+            }
+        } catch (IllegalStateException e) {
+            throw new SbasCheckException("Failed get occurrences of the project \"" + projectName + "\": " + e.getMessage(), e);
+        }
+        if (!found) {
+            throw new SbasCheckException("Not found occurrence for the resourceUrl \"" + resourceUrl + "\"!");
+        }
+
+        log("Extract signatures and note name from occurrences");
+        for (SignedAttestation attestation : attestations) {
+            attestation.authority = await(attestation.authorityFuture);
+            if (attestation.authority == null) {
+                throw new SbasCheckException("Not get attestation, invalid note: \"" + attestation.noteName + "\"!");
+            }
+        }
+        return attestations;
+    }
+
+    // Extract the signed attestation of an occurrence and start fetching its note, null if unsigned
+    //
+    private SignedAttestation extractAttestation(JSONObject occurrence, Map<String, Future<String>> noteAuthorities,
+                                                 ExecutorService executor) throws SbasCheckException {
+        JSONObject details = (JSONObject) occurrence.get("attestationDetails");
+        if (details == null) {
+            details = (JSONObject) occurrence.get("attestation");
+        }
+        JSONObject pgp = (details != null) ? (JSONObject) details.get("pgpSignedAttestation") : null;
+        String signature = (pgp != null) ? (String) pgp.get("signature") : null;
+        String keyId = (pgp != null) ? (String) pgp.get("pgpKeyId") : null;
+
+        // some occurrences may have no signature, it's valid. skip this kind occurrence directly.
+        if (isEmpty(signature) && isEmpty(keyId)) {
+            return null;
+        }
+        // signature and key id must exist at the same time.
+        if (isEmpty(signature) || isEmpty(keyId)) {
+            throw new SbasCheckException("No signature or keyid or noteName, invalid occurrence: " + occurrence);
+        }
+
+        final String noteName = (String) occurrence.get("noteName");
+        if (isEmpty(noteName)) {
+            throw new SbasCheckException("Not found noteName, invalid occurrence: " + occurrence);
+        }
+
+        SignedAttestation attestation = new SignedAttestation(noteName, signature, keyId);
+        attestation.authorityFuture = getNoteAuthority(noteName, noteAuthorities, executor);
+        return attestation;
+    }
+
+    // Fetch the attestation authority name of a note, once per note name
+    //
+    private Future<String> getNoteAuthority(final String noteName, Map<String, Future<String>> noteAuthorities,
+                                            ExecutorService executor) {
+        Future<String> future = noteAuthorities.get(noteName);
+        if (future == null) {
+            future = executor.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    String noteUrl = grafeasUrl + "/" + GRAFEAS_VERSION + "/" + noteName;
+                    JSONObject note = getJSON(noteUrl);
+                    if (note == null) {
+                        throw new SbasCheckException("Failed get note from " + noteUrl);
+                    }
+                    JSONObject authority = (JSONObject) note.get("attestationAuthority");
+                    JSONObject hint = (authority != null) ? (JSONObject) authority.get("hint") : null;
+                    return (hint != null) ? (String) hint.get("humanReadableName") : null;
+                }
+            });
+            noteAuthorities.put(noteName, future);
+        }
+        return future;
+    }
+
+    // Execute the binary authorization.
+    //
+    private void binaryAuthorize(List<SignedAttestation> attestations, ExecutorService executor) throws SbasCheckException {
+        log("Check the signature with key");
+        List<Future<String>> verifications = new ArrayList<Future<String>>();
+        for (final SignedAttestation attestation : attestations) {
+            verifications.add(executor.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    return checkSignature(attestation.keyId, attestation.signature);
+                }
+            }));
+        }
+        for (Future<String> verification : verifications) {
+            String failure = await(verification);
+            if (failure != null) {
+                throw new SbasCheckException(failure);
+            }
+        }
+
+        log("Check the attestation authority");
+        for (SignedAttestation attestation : attestations) {
+            checkAuthority(attestation.keyId, attestation.authority);
+        }
+    }
+
+    // Return null if the signature is valid and signed by the key, the reason otherwise
+    //
+    private String checkSignature(String key, String signature) throws IOException {
+        VerifiedSignature verified = GPGScriptWrapper.verifySignature(signature, logger);
+        if (!verified.isValid()) {
+            return "Verify signature failed for the key \"" + key + "\"!";
+        }
+        String signKey = verified.getKeyID().trim();
+        if (!key.equals(signKey)) {
+            return "The signture declare it's signed by \"" + key + "\", but is \"" + signKey + "\"";
+        }
+        return null;
+    }
+
+    private void checkAuthority(String key, String attestation) throws SbasCheckException {
+        // No authories data, skip authority check.
+        if (authorities == null || authorities.isEmpty()) {
+            return;
+        }
+        if (!authorities.hasKey(attestation, key)) {
+            throw new SbasCheckException("The key id \"" + key + "\" doesn't match the attestation \"" + attestation + "\"!");
+        }
+    }
+
+    // Provide request attributes get policy decison from Sphinx.
+    //
+    private void evaluatePolicy(String clusterName, List<SignedAttestation> attestations) throws SbasCheckException {
+        try {
+            log("Apply access token from Sphinx server");
+            HTTPRequest tokenRequest = new HTTPRequest(HTTPRequest.Method.POST, new URL(sphinxTmsEndpoint));
+            tokenRequest.setAuthorization("Basic " + Base64.getEncoder().encodeToString(
+                (sphinxClientId + ":" + sphinxClientSecret).getBytes("UTF-8")));
+            tokenRequest.setHeader("Content-Type", "application/x-www-form-urlencoded");
+            tokenRequest.setQuery("grant_type=client_credentials");
+            HTTPResponse tokenResponse = tokenRequest.send();
+            if (!tokenResponse.indicatesSuccess()) {
+                throw new SbasCheckException("Failed to apply the Sphinx access token!");
+            }
+            String token = (String) parse(tokenResponse.getContent()).get("access_token");
+
+            log("Get deploy decision from Sphinx server");
+            JSONArray names = new JSONArray();
+            for (SignedAttestation attestation : attestations) {
+                names.add(attestation.authority);
+            }
+            JSONObject attribute = new JSONObject();
+            attribute.put("name", "attestations");
+            attribute.put("value", names);
+            JSONArray attributes = new JSONArray();
+            attributes.add(attribute);
+            JSONObject request = new JSONObject();
+            request.put("serviceName", sphinxServiceName);
+            request.put("resource", clusterName);
+            request.put("action", "deploy");
+            request.put("attributes", attributes);
+
+            HTTPRequest policyRequest = new HTTPRequest(HTTPRequest.Method.POST, new URL(sphinxArsEndpoint));
+            policyRequest.setAuthorization("Bearer " + token);
+            policyRequest.setHeader("Content-Type", "application/json");
+            policyRequest.setQuery(request.toJSONString());
+            HTTPResponse policyResponse = policyRequest.send();
+            if (!policyResponse.indicatesSuccess()) {
+                throw new SbasCheckException("Failed to execute Sphinx policy check!");
+            }
+            if (!isTrue(parse(policyResponse.getContent()).get("allowed"))) {
+                throw new SbasCheckException("Sphinx deny this deployment request!");
+            }
+        } catch (SbasCheckException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SbasCheckException("Failed to execute Sphinx policy check!", e);
+        }
+    }
+
+    // Return the JSON object at the URL, null if the request fails
+    //
+    private JSONObject getJSON(String url) {
+        try {
+            HTTPResponse response = GrafeasHttp.send(new HTTPRequest(HTTPRequest.Method.GET, new URL(url)));
+            if (!response.indicatesSuccess()) {
+                log("GET " + url + " failed with status " + response.getStatusCode());
+                return null;
+            }
+            return parse(response.getContent());
+        } catch (Exception e) {
+            log("GET " + url + " failed: " + e);
+            return null;
+        }
+    }
+
+    private static JSONObject parse(String json) throws Exception {
+        Object object = new JSONParser(JSONParser.MODE_PERMISSIVE).parse(json);
+        if (!(object instanceof JSONObject)) {
+            throw new IOException("Unable to parse JSON: " + json);
+        }
+        return (JSONObject) object;
+    }
+
+    private static <T> T await(Future<T> future) throws SbasCheckException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SbasCheckException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SbasCheckException) {
+                throw (SbasCheckException) cause;
+            }
+            throw new SbasCheckException(String.valueOf(cause), cause);
+        }
+    }
+
+    // Sphinx answers a JSON boolean, sbas-check.sh also accepted the string "true"
+    //
+    private static boolean isTrue(Object value) {
+        return Boolean.TRUE.equals(value) || "true".equals(value);
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+
+    private static String getEnv(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return (value == null || value.isEmpty()) ? defaultValue : value;
+    }
+
+    // Log debug output
+    //
+    private void log(String msg) {
+        logger.debug(msg);
+    }
+
+    // Signed attestation extracted from an occurrence
+    //
+    private static class SignedAttestation {
+        final String noteName;
+        final String signature;
+        final String keyId;
+        Future<String> authorityFuture;
+        String authority;
+
+        SignedAttestation(String noteName, String signature, String keyId) {
+            this.noteName = noteName;
+            this.signature = signature;
+            this.keyId = keyId;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Occurrence Exporter
+ * Writes the occurrences of a scan to newline-delimited JSON files.
+ *
+ */
+
+
+package com.oracle.sscm.client.scan;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import net.minidev.json.JSONObject;
+
+import com.oracle.sscm.client.grafeas.JSONStreamBody;
+
+/**
+ * Writes each occurrence on its own line as soon as it is generated (NDJSON), in the form it
+ * would be posted to Grafeas, so a report of any size is exported with a constant heap.
+ * A file name ending with .gz is gzip compressed.
+ *
+ * With a roll size the occurrences are split into parts, name-00001.ndjson.gz, name-00002...,
+ * each holding at most that many bytes of JSON before compression, and at least one
+ * occurrence. A part is written under a temporary name and renamed once complete, so a tool
+ * can consume or upload the parts in parallel while the scan is still running. The export
+ * and the parts of a previous run are deleted before the first part is renamed, and a scan
+ * without occurrences still writes an empty file, so that no stale occurrence is consumed.
+ */
+public class OccurrenceExporter implements OccurrenceSink, Closeable {
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final File file;
+    private final long rollSize;
+    private final boolean gzip;
+
+    // name.ndjson.gz -> name and .ndjson.gz, the parts are name-00001.ndjson.gz...
+    private final String partName;
+    private final String partSuffix;
+
+    private final List<File> files = new ArrayList<File>();
+    private File part;
+    private File partTmp;
+    private Writer writer;
+    private long partSize = 0;
+    private int exported = 0;
+    private boolean closed = false;
+
+    /**
+     * @param file      export file, or name of the parts when rolled
+     * @param rollSize  bytes of JSON per part, 0 for a single file
+     */
+    public OccurrenceExporter(File file, long rollSize) {
+        this.file = file;
+        this.rollSize = rollSize;
+        this.gzip = file.getName().toLowerCase(Locale.ROOT).endsWith(GZIP_SUFFIX);
+
+        String name = file.getName();
+        String suffix = "";
+        if (gzip) {
+            suffix = name.substring(name.length() - GZIP_SUFFIX.length());
+            name = name.substring(0, name.length() - GZIP_SUFFIX.length());
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            suffix = name.substring(dot) + suffix;
+            name = name.substring(0, dot);
+        }
+        this.partName = name;
+        this.partSuffix = suffix;
+    }
+
+    /**
+     * Write the occurrence on the current part, starting the next one if it is full
+     *
+     * @throws IOException if the file can't be written
+     */
+    public void accept(JSONObject occurrence) throws IOException {
+        if (closed) {
+            throw new IOException("Export " + file + " is closed");
+        }
+        String line = JSONStreamBody.toString(occurrence) + "\n";
+        long lineSize = line.getBytes(StandardCharsets.UTF_8).length;
+        if (writer != null && rollSize > 0 && partSize + lineSize > rollSize) {
+            closePart();
+        }
+        if (writer == null) {
+            openPart();
+        }
+        writer.write(line);
+        partSize += lineSize;
+        exported++;
+    }
+
+    /**
+     * Get the number of occurrences written
+     */
+    public int getExported() {
+        return exported;
+    }
+
+    /**
+     * Get the files written, the parts in their order
+     */
+    public List<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * Complete the current part, nothing is written after. An export without occurrences is
+     * an empty file.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (writer == null && files.isEmpty()) {
+            openPart();
+        }
+        closed = true;
+        if (writer != null) {
+            closePart();
+        }
+    }
+
+    /**
+     * Discard the part being written, for a scan that failed. The parts already complete are
+     * kept, nothing is written after.
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writer != null) {
+            Writer out = writer;
+            writer = null;
+            try {
+                out.close();
+            } catch (IOException e) {
+                // The part is deleted anyway
+            }
+            partTmp.delete();
+        }
+    }
+
+    private void openPart() throws IOException {
+        part = (rollSize > 0) ? getPartFile(files.size() + 1) : file;
+        File directory = part.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        partTmp = new File(directory, part.getName() + ".tmp");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(partTmp), 64 * 1024);
+        if (gzip) {
+            out = new GZIPOutputStream(out, 64 * 1024);
+        }
+        writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        partSize = 0;
+    }
+
+    private void closePart() throws IOException {
+        Writer out = writer;
+        writer = null;
+        out.close();
+        if (files.isEmpty()) {
+            deletePreviousExport();
+        }
+        Files.move(partTmp.toPath(), part.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        files.add(part);
+    }
+
+    // Delete the export file and the parts of a previous run, rolled or not, which would
+    // otherwise be taken for occurrences of this scan
+    //
+    private void deletePreviousExport() throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        Pattern parts = Pattern.compile(Pattern.quote(partName) + "-\\d{5,}" + Pattern.quote(partSuffix));
+        for (String name : names) {
+            if (name.equals(file.getName()) || parts.matcher(name).matches()) {
+                Files.deleteIfExists(new File(directory, name).toPath());
+            }
+        }
+    }
+
+    private File getPartFile(int index) {
+        return new File(file.getAbsoluteFile().getParentFile(), String.format("%s-%05d%s", partName, index, partSuffix));
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Occurrence Sink
+ * Destination of the vulnerability occurrences generated by a security scan.
+ *
+ */
+
+
+package com.oracle.sscm.client.scan;
+
+import java.io.IOException;
+
+import net.minidev.json.JSONObject;
+
+/**
+ * Receives the occurrences of a scan one at a time, as they are generated, so that a report
+ * of any size is turned into occurrences without holding them all in memory.
+ */
+public interface OccurrenceSink {
+
+    /**
+     * Take an occurrence, the sink may keep or modify it
+     *
+     * @throws IOException if the occurrence can't be sent or written
+     */
+    void accept(JSONObject occurrence) throws IOException;
+}
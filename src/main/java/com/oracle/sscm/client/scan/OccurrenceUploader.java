@@ -0,0 +1,197 @@
+/**
+ * Occurrence Uploader
+ * Creates the vulnerability occurrences of a scan, and their notes, on a Grafeas server.
+ *
+ */
+
+
+package com.oracle.sscm.client.scan;
+
+import java.io.IOException;
+import java.net.URL;
+
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.JSONParser;
+import net.minidev.json.parser.ParseException;
+
+import com.oracle.sscm.client.grafeas.GrafeasHttp;
+import com.oracle.sscm.client.grafeas.JSONStreamBody;
+import com.oracle.sscm.client.grafeas.MetadataCache;
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.log.Tracer;
+
+/**
+ * Sends each occurrence as soon as it is generated. The note of the occurrence is created
+ * first unless the note cache knows it already exists, a note created before or concurrently
+ * by another scan is fine. The same uploader serves the dependency-check reports and the SBOMs.
+ */
+public class OccurrenceUploader implements OccurrenceSink {
+
+    private static final String GRAFEAS_NOTES_PROJECTID = "build-infrastructure";
+    private static final String GRAFEAS_NOTEID_QUERY_PARAM = "noteId";
+    private static final String SECURITY_SCAN_NOTE_NAME = "projects/" + GRAFEAS_NOTES_PROJECTID + "/notes/SecurityScan";
+
+    // Shared by the uploads, limited and retried like all Grafeas requests
+    private static final OkHttpClient httpClient = GrafeasHttp.newClient();
+
+    private final String notePrefixUrl;
+    private final String occurrencesUrl;
+    private final GrafeasLog logger;
+    private final MetadataCache noteCache;
+
+    private int uploaded = 0;
+
+    /**
+     * @param notePrefixUrl   URL the note names are appended to, <URL>/v1alpha1/
+     * @param occurrencesUrl  URL of the occurrences of the project
+     */
+    public OccurrenceUploader(String notePrefixUrl, String occurrencesUrl, GrafeasLog logger) {
+        this.notePrefixUrl = notePrefixUrl;
+        this.occurrencesUrl = occurrencesUrl;
+        this.logger = logger;
+        this.noteCache = MetadataCache.createDefault(httpClient, logger);
+    }
+
+    /**
+     * Create the note of the occurrence if needed, then the occurrence
+     *
+     * @throws IOException if the note or the occurrence can't be created
+     */
+    public void accept(JSONObject occurrence) throws IOException {
+        String noteUrl = notePrefixUrl + ((String) occurrence.get("noteName"));
+        Tracer.Span span = Tracer.start("upload", "occurrence").arg("note", occurrence.get("noteName"));
+        try {
+            checkNoteForOccurrence(noteUrl, occurrence);
+            createOccurrence(occurrence);
+            uploaded++;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Get the number of occurrences created
+     */
+    public int getUploaded() {
+        return uploaded;
+    }
+
+    private void checkNoteForOccurrence(String noteUrl, JSONObject occurrence) throws IOException {
+        logger.sampled("notes checked", GrafeasLog.Level.DEBUG, "Checking for Note '%s'", noteUrl);
+        if (noteCache != null && noteCache.isFresh(noteUrl)) {
+            return;
+        }
+
+        // Create Note, a note created before or concurrently by another scan is fine...
+        Tracer.Span span = Tracer.start("upload", "note").arg("note", noteUrl);
+        try {
+            createNote(noteUrl, occurrence);
+        } finally {
+            span.end();
+        }
+    }
+
+    private void createNote(String noteUrl, JSONObject occurrence) throws IOException {
+        JSONObject note = createNoteForOccurrence(occurrence);
+        int cveIndex = noteUrl.lastIndexOf('/');
+        String url = (cveIndex != -1) ? noteUrl.substring(0, cveIndex) : noteUrl;
+        String postQuery = String.format("%s=%s", GRAFEAS_NOTEID_QUERY_PARAM, note.get("shortDescription"));
+        URL postUrl = new URL(String.format("%s?%s", url, postQuery));
+        logger.debug("Creating Note '%s'", postUrl);
+        HTTPRequest request = new HTTPRequest(HTTPRequest.Method.POST, postUrl);
+        request.setHeader("Content-Type", "application/json");
+        request.setQuery(note.toJSONString());
+        HTTPResponse response = GrafeasHttp.send(request);
+        String content = response.getContent();
+        if (!response.indicatesSuccess()) {
+            if (!GrafeasHttp.isAlreadyExists(response.getStatusCode(), content)) {
+                throw new IOException("Failed to create Note: " + content);
+            }
+            logger.sampled("scan notes already existing", GrafeasLog.Level.DEBUG, "Note '%s' already exists", noteUrl);
+            content = null;
+        } else {
+            logger.sampled("scan notes created", GrafeasLog.Level.INFO, "Created Note '%s'", noteUrl);
+        }
+        if (noteCache != null) noteCache.put(noteUrl, (content != null) ? content : note.toJSONString());
+    }
+
+    private void createOccurrence(JSONObject occurrence) throws IOException {
+        logger.debug("Creating Occurrence for '%s'", occurrence.get("resourceUrl"));
+        if (logger.isDebugEnabled())
+            logger.debug("Occurrence is '%s'", JSONStreamBody.toString(occurrence));
+
+        // Occurrence is serialized while sent, slashes unescaped...
+        Request request = new Request.Builder().url(occurrencesUrl).post(new JSONStreamBody(occurrence)).build();
+        Response response = httpClient.newCall(request).execute();
+        try {
+            if (!response.isSuccessful())
+                throw new IOException("Failed to create Occurrence: " + response.body().string());
+            JSONObject created = parseCreatedOccurrence(response.body().string());
+            logger.sampled("scan occurrences created", GrafeasLog.Level.INFO, "Created Occurrence %s for '%s'",
+                    created.get("name"), occurrence.get("resourceUrl"));
+        } finally {
+            response.body().close();
+        }
+    }
+
+    private JSONObject parseCreatedOccurrence(String json) throws IOException {
+        JSONParser parser = new JSONParser(JSONParser.USE_HI_PRECISION_FLOAT | JSONParser.ACCEPT_TAILLING_SPACE);
+        Object object;
+        try {
+            object = parser.parse(json);
+        } catch (ParseException e) {
+            throw new IOException("Unable to parse JSON: " + json, e);
+        }
+        if (!(object instanceof JSONObject)) {
+            logger.info("Unable to read occurrence JSON: " + json);
+            throw new IOException("Unable to parse JSON: " + json);
+        }
+        return (JSONObject) object;
+    }
+
+    /**
+     * Build the PACKAGE_VULNERABILITY note an occurrence refers to, from its name and details
+     */
+    static JSONObject createNoteForOccurrence(JSONObject occurrence) {
+        JSONObject note = new JSONObject();
+
+        // Get note data...
+        String name = (String) occurrence.get("noteName");
+        int cveIndex = name.lastIndexOf('/');
+        String CVE = (cveIndex != -1) ? name.substring(cveIndex+1) : name;
+        if (!name.equals(SECURITY_SCAN_NOTE_NAME)) {
+            JSONObject vulnerabilityDetails = (JSONObject) occurrence.get("vulnerabilityDetails");
+            Double cvssScore = (Double) vulnerabilityDetails.get("cvssScore");
+            String severity = (String) vulnerabilityDetails.get("severity");
+
+            // Build the vulnerability type, an SBOM may have no score...
+            JSONObject vulnerabilityType = new JSONObject();
+            vulnerabilityType.put("severity", severity);
+            if (cvssScore != null) vulnerabilityType.put("cvssScore", cvssScore);
+
+            // Build the note...
+            note.put("name", name);
+            note.put("shortDescription", CVE);
+            note.put("kind", "PACKAGE_VULNERABILITY");
+            note.put("vulnerabilityType", vulnerabilityType);
+        } else {
+            JSONObject vulnerabilityType = new JSONObject();
+            vulnerabilityType.put("severity", "LOW");
+            vulnerabilityType.put("cvssScore", Double.valueOf(1));
+
+            note.put("name", name);
+            note.put("shortDescription", "SecurityScan");
+            note.put("longDescription", "Oracle Grafeas Security Scan Metadata Generator");
+            note.put("kind", "KIND_UNSPECIFIED");
+        }
+
+        // Done
+        return note;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Report Format
+ * Formats of the reports read by the security scan.
+ *
+ */
+
+
+package com.oracle.sscm.client.scan;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Vulnerability report formats: the OWASP dependency-check JSON report, and CycloneDX and
+ * SPDX JSON SBOMs with embedded vulnerabilities.
+ */
+public enum ReportFormat {
+
+    DEPENDENCY_CHECK("dependency-check"),
+    CYCLONEDX("cyclonedx"),
+    SPDX("spdx");
+
+    public static final String AUTO = "auto";
+
+    private final String name;
+
+    ReportFormat(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of the format, as given to securityScan.reportFormat
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the format of the name, null for auto
+     *
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static ReportFormat fromName(String name) {
+        if (name == null || AUTO.equalsIgnoreCase(name)) {
+            return null;
+        }
+        for (ReportFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name) || format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown report format '" + name + "', expected auto, dependency-check, cyclonedx or spdx");
+    }
+
+    /**
+     * Detect the format from the top level fields of the report. Only the fields up to the
+     * first one identifying a format are read, big values such as arrays are skipped.
+     *
+     * @throws IOException if the file can't be read or isn't a JSON object
+     */
+    public static ReportFormat detect(File file) throws IOException {
+        JsonReader reader = openJson(file);
+        try {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new IOException("Not a JSON report: " + file);
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if ("bomFormat".equals(field) || "specVersion".equals(field) && reader.peek() == JsonToken.STRING) {
+                    return CYCLONEDX;
+                } else if ("spdxVersion".equals(field) || "SPDXID".equals(field)) {
+                    return SPDX;
+                } else if ("reportSchema".equals(field) || "scanInfo".equals(field) || "projectInfo".equals(field)) {
+                    return DEPENDENCY_CHECK;
+                }
+                // "dependencies" is found in CycloneDX as well as in dependency-check reports
+                reader.skipValue();
+            }
+            return DEPENDENCY_CHECK;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    // Open a JSON file, a name ending with .gz is read as gzipped
+    //
+    static JsonReader openJson(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+}
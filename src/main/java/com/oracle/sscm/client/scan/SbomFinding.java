@@ -0,0 +1,113 @@
+/**
+ * SBOM Finding
+ * A vulnerability of a package read from an SBOM.
+ *
+ */
+
+
+package com.oracle.sscm.client.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A vulnerability and the package it affects, the data of one PACKAGE_VULNERABILITY
+ * occurrence. The package is unknown when the SBOM doesn't say which component is affected.
+ */
+public class SbomFinding {
+
+    public static final String SEVERITY_UNSPECIFIED = "SEVERITY_UNSPECIFIED";
+
+    private final String cve;
+    private final String source;
+    private final String severity;
+    private final Double cvssScore;
+    private final String cpeUri;
+    private final String packageName;
+    private final String packageVersion;
+    private final String purl;
+    private final String sha1;
+
+    public SbomFinding(String cve, String source, String severity, Double cvssScore,
+                       String cpeUri, String packageName, String packageVersion, String purl, String sha1) {
+        this.cve = cve;
+        this.source = source;
+        this.severity = severity;
+        this.cvssScore = cvssScore;
+        this.cpeUri = cpeUri;
+        this.packageName = packageName;
+        this.packageVersion = packageVersion;
+        this.purl = purl;
+        this.sha1 = sha1;
+    }
+
+    /**
+     * Get the vulnerability id, usually a CVE
+     */
+    public String getCve() {
+        return cve;
+    }
+
+    /**
+     * Get the database of the vulnerability, NVD unless the SBOM names another one
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Get the Grafeas severity: MINIMAL, LOW, MEDIUM, HIGH, CRITICAL or SEVERITY_UNSPECIFIED
+     */
+    public String getSeverity() {
+        return severity;
+    }
+
+    /**
+     * Get the CVSS score, null if the SBOM has none
+     */
+    public Double getCvssScore() {
+        return cvssScore;
+    }
+
+    public String getCpeUri() {
+        return cpeUri;
+    }
+
+    /**
+     * Get the package name, group:name for packages that have a group
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getPackageVersion() {
+        return packageVersion;
+    }
+
+    public String getPurl() {
+        return purl;
+    }
+
+    /**
+     * Get the SHA-1 of the package file, null if the SBOM has none
+     */
+    public String getSha1() {
+        return sha1;
+    }
+
+    /**
+     * Get the names a suppression rule can match: package URL, CPE and name:version
+     */
+    public List<String> getPackageNames() {
+        List<String> names = new ArrayList<String>();
+        if (purl != null) names.add(purl);
+        if (cpeUri != null) names.add(cpeUri);
+        if (packageName != null) names.add(packageVersion != null ? packageName + ":" + packageVersion : packageName);
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return cve + " " + (purl != null ? purl : packageName);
+    }
+}
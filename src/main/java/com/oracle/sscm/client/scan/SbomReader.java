@@ -0,0 +1,436 @@
+/**
+ * SBOM Reader
+ * Streaming reader of the vulnerabilities of CycloneDX and SPDX JSON SBOMs.
+ *
+ */
+
+
+package com.oracle.sscm.client.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads the vulnerabilities of an SBOM and the packages they affect, one array element at a
+ * time, so that the size of the SBOM doesn't bound the heap.
+ *
+ * A CycloneDX vulnerability refers to the components it affects by their bom-ref. The first
+ * pass, {@link #index()}, reads the metadata and the bom-refs of the affected components and
+ * skips everything else. The second pass keeps only those components, the small part of the
+ * component tree that is needed, and reports the vulnerabilities as they are read. A third
+ * pass is made only when the vulnerabilities come before the components in the file.
+ *
+ * An SPDX 2.x document has its advisories in the external references of each package, the
+ * packages are reported as they are read.
+ */
+public class SbomReader {
+
+    // Handler of the findings of an SBOM
+    public interface FindingHandler {
+        void finding(SbomFinding finding) throws IOException;
+    }
+
+    private static final String DEFAULT_SOURCE = "NVD";
+    private static final String PURL_PREFIX = "pkg:";
+    private static final Pattern VULNERABILITY_ID = Pattern.compile("(CVE|GHSA|OSV)-[A-Za-z0-9-]+", Pattern.CASE_INSENSITIVE);
+
+    private final File file;
+    private final ReportFormat format;
+    private final JsonParser parser = new JsonParser();
+
+    private boolean indexed = false;
+    private String projectName;
+    private String timestamp;
+
+    // CycloneDX bom-ref -> component, null until the component is read
+    private final Map<String, Component> affected = new HashMap<String, Component>();
+
+    // True if CycloneDX components come after the vulnerabilities, which then need a third pass
+    private boolean vulnerabilitiesFirst = false;
+
+    /**
+     * @param format  CYCLONEDX or SPDX
+     */
+    public SbomReader(File file, ReportFormat format) {
+        if (format != ReportFormat.CYCLONEDX && format != ReportFormat.SPDX) {
+            throw new IllegalArgumentException("Not an SBOM format: " + format);
+        }
+        this.file = file;
+        this.format = format;
+    }
+
+    /**
+     * Read the metadata of the SBOM, and the references of its vulnerabilities
+     *
+     * @throws IOException if the file can't be read or isn't a JSON SBOM
+     */
+    public void index() throws IOException {
+        if (indexed) {
+            return;
+        }
+        JsonReader reader = open();
+        try {
+            boolean vulnerabilitiesRead = false;
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (format == ReportFormat.CYCLONEDX && "metadata".equals(field)) {
+                    JsonObject metadata = nextObject(reader);
+                    timestamp = getString(metadata, "timestamp");
+                    JsonObject component = getObject(metadata, "component");
+                    if (component != null) {
+                        projectName = getString(component, "name");
+                    }
+                    vulnerabilitiesFirst |= vulnerabilitiesRead;
+                } else if (format == ReportFormat.CYCLONEDX && "components".equals(field)) {
+                    reader.skipValue();
+                    vulnerabilitiesFirst |= vulnerabilitiesRead;
+                } else if (format == ReportFormat.CYCLONEDX && "vulnerabilities".equals(field)) {
+                    indexAffects(reader);
+                    vulnerabilitiesRead = true;
+                } else if (format == ReportFormat.SPDX && "name".equals(field) && reader.peek() == JsonToken.STRING) {
+                    projectName = reader.nextString();
+                } else if (format == ReportFormat.SPDX && "creationInfo".equals(field)) {
+                    timestamp = getString(nextObject(reader), "created");
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        indexed = true;
+    }
+
+    /**
+     * Read the findings of the SBOM
+     *
+     * @throws IOException if the file can't be read, or if the handler fails
+     */
+    public void read(FindingHandler handler) throws IOException {
+        index();
+        JsonReader reader = open();
+        try {
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (format == ReportFormat.CYCLONEDX && "metadata".equals(field)) {
+                    JsonObject component = getObject(nextObject(reader), "component");
+                    if (component != null) {
+                        indexComponent(component);
+                    }
+                } else if (format == ReportFormat.CYCLONEDX && "components".equals(field)) {
+                    readComponents(reader);
+                } else if (format == ReportFormat.CYCLONEDX && "vulnerabilities".equals(field) && !vulnerabilitiesFirst) {
+                    readVulnerabilities(reader, handler);
+                } else if (format == ReportFormat.SPDX && "packages".equals(field)) {
+                    readPackages(reader, handler);
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (vulnerabilitiesFirst) {
+            reader = open();
+            try {
+                while (reader.hasNext()) {
+                    if ("vulnerabilities".equals(reader.nextName())) {
+                        readVulnerabilities(reader, handler);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Get the name of the component or document the SBOM describes, null if none
+     */
+    public String getProjectName() {
+        return projectName;
+    }
+
+    /**
+     * Get the creation time of the SBOM, null if none
+     */
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    // Open the file, positioned in its top level object
+    //
+    private JsonReader open() throws IOException {
+        JsonReader reader = ReportFormat.openJson(file);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.close();
+            throw new IOException("Not a JSON SBOM: " + file);
+        }
+        reader.beginObject();
+        return reader;
+    }
+
+    private JsonObject nextObject(JsonReader reader) throws IOException {
+        JsonElement element = parser.parse(reader);
+        return element.isJsonObject() ? element.getAsJsonObject() : new JsonObject();
+    }
+
+    // Collect the bom-refs of the affected components, one vulnerability at a time
+    //
+    private void indexAffects(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            JsonArray affects = getArray(nextObject(reader), "affects");
+            if (affects == null) {
+                continue;
+            }
+            for (JsonElement affect : affects) {
+                String ref = affect.isJsonObject() ? getString(affect.getAsJsonObject(), "ref") : null;
+                if (ref != null) {
+                    affected.put(ref, null);
+                }
+            }
+        }
+        reader.endArray();
+    }
+
+    private void readComponents(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            indexComponent(nextObject(reader));
+        }
+        reader.endArray();
+    }
+
+    // Keep the component and its nested components that a vulnerability refers to
+    //
+    private void indexComponent(JsonObject component) {
+        String ref = getString(component, "bom-ref");
+        if (ref != null && affected.containsKey(ref)) {
+            String name = getString(component, "name");
+            String group = getString(component, "group");
+            if (name != null && group != null && !group.isEmpty()) {
+                name = group + ":" + name;
+            }
+            affected.put(ref, new Component(name, getString(component, "version"), getString(component, "cpe"),
+                                            getString(component, "purl"), getSha1(component, "hashes", "alg", "content")));
+        }
+        JsonArray nested = getArray(component, "components");
+        if (nested != null) {
+            for (JsonElement child : nested) {
+                if (child.isJsonObject()) {
+                    indexComponent(child.getAsJsonObject());
+                }
+            }
+        }
+    }
+
+    private void readVulnerabilities(JsonReader reader, FindingHandler handler) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            JsonObject vulnerability = nextObject(reader);
+            String id = getString(vulnerability, "id");
+            if (id == null) {
+                continue;
+            }
+            JsonObject sourceObject = getObject(vulnerability, "source");
+            String source = sourceObject != null ? getString(sourceObject, "name") : null;
+            if (source == null) {
+                source = DEFAULT_SOURCE;
+            }
+
+            // The rating with the highest score, CVSS v3 before the other methods
+            Double score = null;
+            String severity = null;
+            boolean cvss3 = false;
+            JsonArray ratings = getArray(vulnerability, "ratings");
+            if (ratings != null) {
+                for (JsonElement element : ratings) {
+                    if (!element.isJsonObject()) {
+                        continue;
+                    }
+                    JsonObject rating = element.getAsJsonObject();
+                    String method = getString(rating, "method");
+                    boolean isCvss3 = method != null && method.startsWith("CVSSv3");
+                    Double ratingScore = getDouble(rating, "score");
+                    boolean better = severity == null && score == null
+                        || isCvss3 && !cvss3
+                        || isCvss3 == cvss3 && ratingScore != null && (score == null || ratingScore > score);
+                    if (better) {
+                        score = ratingScore;
+                        severity = getString(rating, "severity");
+                        cvss3 = isCvss3;
+                    }
+                }
+            }
+            severity = toSeverity(severity, score);
+
+            JsonArray affects = getArray(vulnerability, "affects");
+            boolean reported = false;
+            if (affects != null) {
+                for (JsonElement affect : affects) {
+                    String ref = affect.isJsonObject() ? getString(affect.getAsJsonObject(), "ref") : null;
+                    Component component = ref != null ? affected.get(ref) : null;
+                    if (component != null) {
+                        handler.finding(new SbomFinding(id, source, severity, score, component.cpe,
+                                                        component.name, component.version, component.purl, component.sha1));
+                    } else {
+                        // A reference to no known component, reported as its package URL if it is one
+                        String purl = (ref != null && ref.startsWith(PURL_PREFIX)) ? ref : null;
+                        handler.finding(new SbomFinding(id, source, severity, score, null, null, null, purl, null));
+                    }
+                    reported = true;
+                }
+            }
+            if (!reported) {
+                handler.finding(new SbomFinding(id, source, severity, score, null, null, null, null, null));
+            }
+        }
+        reader.endArray();
+    }
+
+    // Report the advisories of each SPDX package
+    //
+    private void readPackages(JsonReader reader, FindingHandler handler) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            JsonObject spdxPackage = nextObject(reader);
+            JsonArray refs = getArray(spdxPackage, "externalRefs");
+            if (refs == null) {
+                continue;
+            }
+            String cpe = null;
+            String purl = null;
+            Set<String> advisories = new HashSet<String>();
+            for (JsonElement element : refs) {
+                if (!element.isJsonObject()) {
+                    continue;
+                }
+                JsonObject ref = element.getAsJsonObject();
+                String type = getString(ref, "referenceType");
+                String locator = getString(ref, "referenceLocator");
+                if (type == null || locator == null) {
+                    continue;
+                }
+                if (type.startsWith("cpe")) {
+                    cpe = locator;
+                } else if ("purl".equals(type)) {
+                    purl = locator;
+                } else if ("advisory".equals(type)) {
+                    Matcher matcher = VULNERABILITY_ID.matcher(locator);
+                    advisories.add(matcher.find() ? matcher.group().toUpperCase() : locator);
+                }
+            }
+            String sha1 = getSha1(spdxPackage, "checksums", "algorithm", "checksumValue");
+            for (String advisory : advisories) {
+                handler.finding(new SbomFinding(advisory, DEFAULT_SOURCE, SbomFinding.SEVERITY_UNSPECIFIED, null, cpe,
+                                                getString(spdxPackage, "name"), getString(spdxPackage, "versionInfo"), purl, sha1));
+            }
+        }
+        reader.endArray();
+    }
+
+    // Grafeas severity of a CycloneDX severity, from the CVSS v3 bands if there is none
+    //
+    static String toSeverity(String severity, Double score) {
+        if (severity != null) {
+            String upper = severity.toUpperCase();
+            if ("CRITICAL".equals(upper) || "HIGH".equals(upper) || "MEDIUM".equals(upper) || "LOW".equals(upper)) {
+                return upper;
+            }
+            if ("INFO".equals(upper) || "NONE".equals(upper)) {
+                return "MINIMAL";
+            }
+        }
+        if (score == null) {
+            return SbomFinding.SEVERITY_UNSPECIFIED;
+        } else if (score >= 9.0) {
+            return "CRITICAL";
+        } else if (score >= 7.0) {
+            return "HIGH";
+        } else if (score >= 4.0) {
+            return "MEDIUM";
+        } else if (score > 0.0) {
+            return "LOW";
+        }
+        return "MINIMAL";
+    }
+
+    // SHA-1 among the hashes of a CycloneDX component (SHA-1) or the checksums of an SPDX package (SHA1)
+    //
+    private static String getSha1(JsonObject object, String name, String algorithmName, String valueName) {
+        JsonArray hashes = getArray(object, name);
+        if (hashes == null) {
+            return null;
+        }
+        for (JsonElement element : hashes) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            String algorithm = getString(element.getAsJsonObject(), algorithmName);
+            if ("SHA-1".equalsIgnoreCase(algorithm) || "SHA1".equalsIgnoreCase(algorithm)) {
+                return getString(element.getAsJsonObject(), valueName);
+            }
+        }
+        return null;
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+
+    private static Double getDouble(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        if (value == null || !value.isJsonPrimitive()) {
+            return null;
+        }
+        try {
+            return value.getAsDouble();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static JsonObject getObject(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value != null && value.isJsonObject() ? value.getAsJsonObject() : null;
+    }
+
+    private static JsonArray getArray(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value != null && value.isJsonArray() ? value.getAsJsonArray() : null;
+    }
+
+    // The part of a CycloneDX component that goes in an occurrence
+    private static class Component {
+        final String name;
+        final String version;
+        final String cpe;
+        final String purl;
+        final String sha1;
+
+        Component(String name, String version, String cpe, String purl, String sha1) {
+            this.name = name;
+            this.version = version;
+            this.cpe = cpe;
+            this.purl = purl;
+            this.sha1 = sha1;
+        }
+    }
+}
@@ -0,0 +1,517 @@
+/**
+ * Vulnerability Index
+ * Local index of the artifacts each vulnerability was reported for, across builds.
+ *
+ */
+
+
+package com.oracle.sscm.client.scan;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.minidev.json.JSONObject;
+
+/**
+ * An inverted index of vulnerability -> affected artifacts (project, resource URL, SHA-1 and
+ * package), kept in a directory that the builds of an agent, or of a shared file system,
+ * append to. It answers "which of our artifacts are affected by CVE-X?" without the server.
+ *
+ * Each scan appends a segment, a file written under a temporary name and renamed once
+ * complete, so the scans never write the same file and a reader never sees a partial one.
+ * Once there are enough segments they are compacted: merged with the index file into a new
+ * index file sorted by vulnerability, which replaces the old one atomically. A lookup is a
+ * binary search of the index file plus a read of the few segments not compacted yet.
+ *
+ * One line per finding, tab separated: vulnerability, project, resource URL, SHA-1, package.
+ * The index is append only, a finding stays in it once reported.
+ */
+public class VulnerabilityIndex {
+
+    public static final int DEFAULT_COMPACT_SEGMENTS = 16;
+
+    private static final String INDEX_FILE = "index.tsv";
+    private static final String LOCK_FILE = "compact.lock";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".tsv";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // A segment still being written after a day is left by a build that crashed
+    //
+    static final long STALE_SEGMENT_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final FileFilter SEGMENTS = new FileFilter() {
+        public boolean accept(File file) {
+            String name = file.getName();
+            return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+        }
+    };
+
+    private static final FileFilter SEGMENTS_WRITTEN = new FileFilter() {
+        public boolean accept(File file) {
+            String name = file.getName();
+            return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX + TMP_SUFFIX);
+        }
+    };
+
+    private final File directory;
+    private int compactSegments = DEFAULT_COMPACT_SEGMENTS;
+
+    /**
+     * @param directory  directory of the index, created with the first segment
+     */
+    public VulnerabilityIndex(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set the number of segments that triggers a compaction, 0 to only compact on demand
+     */
+    public void setCompactSegments(int compactSegments) {
+        this.compactSegments = compactSegments;
+    }
+
+    /**
+     * Start a segment, the findings added are visible once it is committed
+     *
+     * @throws IOException if the directory or the segment can't be created
+     */
+    public Segment newSegment() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory " + directory);
+        }
+        String name = String.format("%s%013d-%08x%s", SEGMENT_PREFIX, System.currentTimeMillis(),
+                                    ThreadLocalRandom.current().nextInt(), SEGMENT_SUFFIX);
+        return new Segment(new File(directory, name));
+    }
+
+    /**
+     * Find the artifacts affected by a vulnerability, in the compacted index and the segments
+     *
+     * @param vulnerability  CVE or other vulnerability id, any case
+     * @throws IOException if the index can't be read
+     */
+    public List<Entry> find(String vulnerability) throws IOException {
+        String key = vulnerability.trim().toUpperCase(Locale.ROOT);
+        Set<String> lines = new LinkedHashSet<String>();
+        File index = new File(directory, INDEX_FILE);
+        // List the segments before reading the index, a segment compacted in between would
+        // be in neither
+        List<File> segments = getSegments();
+        if (index.isFile()) {
+            search(index, key, lines);
+        }
+        for (File segment : segments) {
+            try {
+                scan(segment, key, lines);
+            } catch (IOException e) {
+                // Compacted and deleted since it was listed, its lines are in the index now
+                if (segment.exists()) throw e;
+                search(index, key, lines);
+            }
+        }
+        List<Entry> entries = new ArrayList<Entry>(lines.size());
+        for (String line : lines) {
+            entries.add(Entry.parse(line));
+        }
+        return entries;
+    }
+
+    /**
+     * Get the number of segments not compacted yet
+     */
+    public int getSegmentCount() {
+        return getSegments().size();
+    }
+
+    /**
+     * Compact if the number of segments has reached the threshold
+     *
+     * @return true if compacted
+     * @throws IOException if the index can't be written
+     */
+    public boolean compactIfNeeded() throws IOException {
+        return compactSegments > 0 && getSegmentCount() >= compactSegments && compact();
+    }
+
+    /**
+     * Merge the segments into the index file. Only one process compacts at a time, the others
+     * return and leave their segments to it.
+     *
+     * @return true if compacted, false if another process is compacting
+     * @throws IOException if the index can't be written
+     */
+    public boolean compact() throws IOException {
+        if (!directory.isDirectory()) {
+            return false;
+        }
+        FileChannel channel = new RandomAccessFile(new File(directory, LOCK_FILE), "rw").getChannel();
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                return false;
+            }
+            try {
+                deleteStaleSegments();
+                List<File> segments = getSegments();
+                if (segments.isEmpty()) {
+                    return true;
+                }
+                merge(segments);
+                for (File segment : segments) {
+                    Files.deleteIfExists(segment.toPath());
+                }
+                return true;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Write the lines of the index file and of the segments, sorted and without duplicates,
+    // to a new index file. The segments are small, the index file is streamed.
+    //
+    private void merge(List<File> segments) throws IOException {
+        TreeSet<String> added = new TreeSet<String>();
+        for (File segment : segments) {
+            BufferedReader reader = newReader(segment);
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) added.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        File index = new File(directory, INDEX_FILE);
+        File tmp = new File(directory, INDEX_FILE + TMP_SUFFIX);
+        BufferedReader reader = index.isFile() ? newReader(index) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            Iterator<String> addedLines = added.iterator();
+            String next = addedLines.hasNext() ? addedLines.next() : null;
+            String line = (reader != null) ? reader.readLine() : null;
+            String last = null;
+            while (line != null || next != null) {
+                String smallest;
+                if (next == null || (line != null && line.compareTo(next) <= 0)) {
+                    smallest = line;
+                    line = reader.readLine();
+                } else {
+                    smallest = next;
+                    next = addedLines.hasNext() ? addedLines.next() : null;
+                }
+                if (!smallest.equals(last)) {
+                    writer.write(smallest);
+                    writer.write('\n');
+                    last = smallest;
+                }
+            }
+        } finally {
+            writer.close();
+            if (reader != null) reader.close();
+        }
+        Files.move(tmp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Delete the temporary files of the segments that were never committed
+    //
+    private void deleteStaleSegments() throws IOException {
+        File[] files = directory.listFiles(SEGMENTS_WRITTEN);
+        if (files == null) {
+            return;
+        }
+        long staleBefore = System.currentTimeMillis() - STALE_SEGMENT_MILLIS;
+        for (File file : files) {
+            if (file.lastModified() < staleBefore) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    // Segments in the order they were written
+    //
+    private List<File> getSegments() {
+        File[] files = directory.listFiles(SEGMENTS);
+        if (files == null) {
+            return new ArrayList<File>();
+        }
+        Arrays.sort(files);
+        return new ArrayList<File>(Arrays.asList(files));
+    }
+
+    // Binary search of the first line of the vulnerability in the sorted index file, then
+    // read its lines. Lines are sorted by vulnerability since the tab sorts before any
+    // character of an id.
+    //
+    private static void search(File index, String key, Set<String> lines) throws IOException {
+        String prefix = key + "\t";
+        long start = findStart(index, prefix);
+        FileInputStream in = new FileInputStream(index);
+        try {
+            in.getChannel().position(start);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+            String line;
+            while ((line = reader.readLine()) != null && line.startsWith(prefix)) {
+                lines.add(line);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    // Position of the first line not sorted before the prefix
+    //
+    private static long findStart(File index, String prefix) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(index, "r");
+        try {
+            long low = 0;
+            long high = file.length();
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                long start = nextLineStart(file, middle);
+                if (start >= high) {
+                    // No line starts between the middle and high, check the line at low
+                    file.seek(low);
+                    String line = readLine(file);
+                    if (line.compareTo(prefix) < 0) {
+                        low = file.getFilePointer();
+                    } else {
+                        high = low;
+                    }
+                    continue;
+                }
+                file.seek(start);
+                String line = readLine(file);
+                if (line.compareTo(prefix) < 0) {
+                    low = file.getFilePointer();
+                } else {
+                    high = start;
+                }
+            }
+            return low;
+        } finally {
+            file.close();
+        }
+    }
+
+    // Position of the first line starting at or after the position
+    //
+    private static long nextLineStart(RandomAccessFile file, long position) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        file.seek(position - 1);
+        file.readLine();
+        return file.getFilePointer();
+    }
+
+    // RandomAccessFile reads a byte per char, decode the line as UTF-8
+    //
+    private static String readLine(RandomAccessFile file) throws IOException {
+        String line = file.readLine();
+        return (line != null) ? new String(line.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8) : null;
+    }
+
+    private static void scan(File segment, String key, Set<String> lines) throws IOException {
+        String prefix = key + "\t";
+        BufferedReader reader = newReader(segment);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(prefix)) lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static BufferedReader newReader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * The findings of one scan, written to a temporary file until committed
+     */
+    public static class Segment implements Closeable {
+        private final File file;
+        private final File tmp;
+        private final Set<String> lines = new LinkedHashSet<String>();
+        private final Writer writer;
+        private boolean committed = false;
+
+        private Segment(File file) throws IOException {
+            this.file = file;
+            this.tmp = new File(file.getParentFile(), file.getName() + TMP_SUFFIX);
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        /**
+         * Add a finding, once per scan
+         *
+         * @throws IOException if the segment can't be written
+         */
+        public void add(Entry entry) throws IOException {
+            String line = entry.toLine();
+            if (lines.add(line)) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+
+        /**
+         * Get the number of findings added
+         */
+        public int getAdded() {
+            return lines.size();
+        }
+
+        /**
+         * Make the segment visible to the lookups, nothing is left if it is empty
+         *
+         * @throws IOException if the segment can't be written
+         */
+        public void commit() throws IOException {
+            writer.close();
+            committed = true;
+            if (lines.isEmpty()) {
+                Files.deleteIfExists(tmp.toPath());
+            } else {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        /**
+         * Discard the segment if it wasn't committed
+         */
+        public void close() throws IOException {
+            if (!committed) {
+                committed = true;
+                writer.close();
+                Files.deleteIfExists(tmp.toPath());
+            }
+        }
+    }
+
+    /**
+     * An artifact affected by a vulnerability
+     */
+    public static class Entry {
+        private final String vulnerability;
+        private final String project;
+        private final String resourceUrl;
+        private final String sha1;
+        private final String packageName;
+
+        /**
+         * @param vulnerability  CVE or other vulnerability id
+         * @param project        Grafeas project of the scan
+         * @param resourceUrl    resource URL of the scanned artifact
+         * @param sha1           SHA-1 of the affected dependency, null if unknown
+         * @param packageName    affected package or file, null if unknown
+         */
+        public Entry(String vulnerability, String project, String resourceUrl, String sha1, String packageName) {
+            this.vulnerability = vulnerability.trim().toUpperCase(Locale.ROOT);
+            this.project = project;
+            this.resourceUrl = resourceUrl;
+            this.sha1 = sha1;
+            this.packageName = packageName;
+        }
+
+        static Entry parse(String line) {
+            String[] fields = line.split("\t", -1);
+            return new Entry(fields[0], field(fields, 1), field(fields, 2), field(fields, 3), field(fields, 4));
+        }
+
+        public String getVulnerability() {
+            return vulnerability;
+        }
+
+        public String getProject() {
+            return project;
+        }
+
+        public String getResourceUrl() {
+            return resourceUrl;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("vulnerability", vulnerability);
+            if (project != null) json.put("project", project);
+            if (resourceUrl != null) json.put("resourceUrl", resourceUrl);
+            if (sha1 != null) json.put("sha1", sha1);
+            if (packageName != null) json.put("package", packageName);
+            return json;
+        }
+
+        String toLine() {
+            StringBuilder line = new StringBuilder(clean(vulnerability));
+            for (String value : new String[] {project, resourceUrl, sha1, packageName}) {
+                line.append('\t').append((value != null) ? clean(value) : "");
+            }
+            return line.toString();
+        }
+
+        @Override
+        public String toString() {
+            return vulnerability + " " + project + " " + resourceUrl + (sha1 != null ? " sha1:" + sha1 : "");
+        }
+
+        private static String field(String[] fields, int index) {
+            return (index < fields.length && !fields[index].isEmpty()) ? fields[index] : null;
+        }
+
+        // Tabs and line breaks separate the fields and the lines
+        //
+        private static String clean(String value) {
+            return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.oracle.sscm.client.script;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.JSONParser;
+
+/**
+ * In-memory registry of attestation authorities and their public key IDs, indexed both by
+ * full authority name and by short key ID (last 8 hex digits of the key's finger print).
+ *
+ * The keyring registry is loaded from the GPG_SCRIPT with a single --list-authorities call,
+ * and loaded again when the keyring files change, so that a long-lived JVM such as a Gradle
+ * daemon doesn't sign with a key that was rotated or replaced. A registry can also be loaded
+ * from an ATTESTATION_AUTHORITY_FILE, a JSON array of objects with a "name" and a
+ * "public_keys" array.
+ */
+public class AuthorityRegistry {
+  private static final int SHORT_KEY_ID_LENGTH = 8;
+  private static final Pattern KEY_ID = Pattern.compile("[0-9A-Fa-f]{8,40}");
+
+  private final Map<String, List<String>> keyIdsByName = new LinkedHashMap<String, List<String>>();
+  private final Map<String, List<String>> namesByKeyId = new HashMap<String, List<String>>();
+
+  // Keyring registry with the fingerprint of the keyring it was loaded from, guarded by the class
+  private static AuthorityRegistry keyringRegistry;
+  private static String keyringRegistryFingerprint;
+
+  AuthorityRegistry() {
+  }
+
+  /**
+   * @return the authorities of the local keyring, loaded from the GPG_SCRIPT on first use,
+   * and again on the next use while the keyring has no authority or once its files changed
+   */
+  public static AuthorityRegistry getKeyringRegistry() throws IOException {
+    String fingerprint = GPGScriptWrapper.getKeyringFingerprint();
+    synchronized (AuthorityRegistry.class) {
+      AuthorityRegistry registry = keyringRegistry;
+      if (registry == null || !fingerprint.equals(keyringRegistryFingerprint)) {
+        registry = new AuthorityRegistry();
+        for (String line : GPGScriptWrapper.listAuthorities()) {
+          // Skip anything else, such as the usage of an older script
+          int space = line.lastIndexOf(' ');
+          if (space > 0 && KEY_ID.matcher(line.substring(space + 1).trim()).matches()) {
+            registry.add(line.substring(0, space).trim(), line.substring(space + 1).trim());
+          }
+        }
+        // An empty keyring is not kept, the keys may not be generated yet
+        keyringRegistry = registry.isEmpty() ? null : registry;
+        keyringRegistryFingerprint = fingerprint;
+      }
+      return registry;
+    }
+  }
+
+  /**
+   * Load the registry from an attestation authority JSON file.
+   * @param authorityFile  name of the file
+   * @return  the authorities of the file
+   */
+  public static AuthorityRegistry fromFile(String authorityFile) throws IOException {
+    File file = new File(authorityFile);
+    if (!file.isFile()) {
+      throw new IOException("Can't read the file \"" + authorityFile + "\"!");
+    }
+
+    Object data;
+    Reader in = new FileReader(file);
+    try {
+      data = new JSONParser(JSONParser.MODE_PERMISSIVE).parse(in);
+    } catch (Exception e) {
+      throw new IOException("Failed to parse attestation authority file \"" + authorityFile + "\"!", e);
+    } finally {
+      in.close();
+    }
+    if (!(data instanceof JSONArray)) {
+      throw new IOException("Invalid attestation authority data: " + data);
+    }
+
+    AuthorityRegistry registry = new AuthorityRegistry();
+    for (Object o : (JSONArray) data) {
+      JSONObject authority = (JSONObject) o;
+      Object name = authority.get("name");
+      Object keys = authority.get("public_keys");
+      if (name == null) {
+        throw new IOException("Failed extract authority name, invalid data: " + authority);
+      }
+      if (!(keys instanceof JSONArray)) {
+        throw new IOException("Failed extract authority public keys, invalid data: " + authority);
+      }
+      registry.keyIdsByName.put(name.toString(), new ArrayList<String>());
+      for (Object key : (JSONArray) keys) {
+        registry.add(name.toString(), String.valueOf(key));
+      }
+    }
+    return registry;
+  }
+
+  void add(String authorityName, String keyID) {
+    List<String> keyIds = keyIdsByName.get(authorityName);
+    if (keyIds == null) {
+      keyIds = new ArrayList<String>();
+      keyIdsByName.put(authorityName, keyIds);
+    }
+    keyIds.add(keyID);
+
+    String shortKeyID = toShortKeyID(keyID);
+    List<String> names = namesByKeyId.get(shortKeyID);
+    if (names == null) {
+      names = new ArrayList<String>();
+      namesByKeyId.put(shortKeyID, names);
+    }
+    if (!names.contains(authorityName)) {
+      names.add(authorityName);
+    }
+  }
+
+  /**
+   * @return true if the registry has no authority
+   */
+  public boolean isEmpty() {
+    return keyIdsByName.isEmpty();
+  }
+
+  /**
+   * @return full names of the authorities
+   */
+  public List<String> getAuthorityNames() {
+    return new ArrayList<String>(keyIdsByName.keySet());
+  }
+
+  /**
+   * @param authorityName full name of attestation authority
+   * @return key IDs of the authority, empty if the authority is unknown
+   */
+  public List<String> getKeyIDs(String authorityName) {
+    List<String> keyIds = keyIdsByName.get(authorityName);
+    return (keyIds != null) ? Collections.unmodifiableList(keyIds) : Collections.<String>emptyList();
+  }
+
+  /**
+   * @param authorityName full name of attestation authority
+   * @return first key ID of the authority, null if the authority is unknown
+   */
+  public String getKeyID(String authorityName) {
+    List<String> keyIds = keyIdsByName.get(authorityName);
+    return (keyIds != null && !keyIds.isEmpty()) ? keyIds.get(0) : null;
+  }
+
+  /**
+   * @param keyID key ID, short or long format
+   * @return full names of the authorities owning the key, empty if the key is unknown
+   */
+  public List<String> getAuthorityNamesForKey(String keyID) {
+    List<String> names = namesByKeyId.get(toShortKeyID(keyID));
+    return (names != null) ? Collections.unmodifiableList(names) : Collections.<String>emptyList();
+  }
+
+  /**
+   * A key matches when it is part of one of the key IDs of the authority, so that a
+   * short key ID matches the long key ID or finger print registered for the authority.
+   * @return true if the key belongs to the authority
+   */
+  public boolean hasKey(String authorityName, String keyID) {
+    if (keyID == null) {
+      return false;
+    }
+    for (String id : getKeyIDs(authorityName)) {
+      if (id.contains(keyID)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String toShortKeyID(String keyID) {
+    String id = keyID.trim().toUpperCase();
+    return (id.length() > SHORT_KEY_ID_LENGTH) ? id.substring(id.length() - SHORT_KEY_ID_LENGTH) : id;
+  }
+}
@@ -7,6 +7,9 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.oracle.sscm.client.log.GrafeasLog;
+import com.oracle.sscm.client.log.Tracer;
+
 /**
  * Wrapper class to invoke the GPG_SCRIPT for signing and verifying signatures
  * This GPG_SCRIPT calls the OS gpg command
@@ -16,13 +19,26 @@ public class GPGScriptWrapper {
   private static final String VERIFY = "--verify";
   private static final String GET_KEY_ID = "--get-signature-keyid";
   private static final String GET_DATA = "--get-signature-data";
+  private static final String VERIFY_SIGNATURE = "--verify-signature";
   private static final String INIT_KEYRING = "--init-keyring";
   private static final String GET_AUTHORITY_NAMES = "--get-authority-names";
   private static final String GET_AUTHORITY_KEY_ID = "--get-authority-keyid";
+  private static final String LIST_AUTHORITIES = "--list-authorities";
 
   private static final String GPG_SCRIPT_ENV_VAR = "GPG_SCRIPT";
+  private static final String SIGNATURE_CACHE_ENV_VAR = "GPG_SIGNATURE_CACHE";
+  private static final String SIGNATURE_CACHE_DISABLED = "none";
+  private static final String USAGE = "Command usage";
+
+  // Read once, shared by the goals of a parallel build
+  private static final String script = System.getenv(GPG_SCRIPT_ENV_VAR);
 
-  private static String script = System.getenv(GPG_SCRIPT_ENV_VAR);
+  // Log of the calls made without one
+  private static final GrafeasLog CONSOLE = GrafeasLog.console(false);
+
+  // Created on first use, once the keyring is in place
+  private static SignatureCache signatureCache;
+  private static boolean signatureCacheCreated;
 
   /**
    * Use the GPG_SCRIPT, environment variable defined in the Wercker pipeline
@@ -33,9 +49,10 @@ public class GPGScriptWrapper {
 
   /**
    *
+   * @param logger receives the failures of the script
    * @return true if the key ring is initialized successfully, false otherwise.
    */
-  private static boolean initKeyRing() {
+  private static boolean initKeyRing(GrafeasLog logger) {
     if (script == null) {
       throw new IllegalStateException("Environment variable GPG_SCRIPT is not set.");
     }
@@ -48,7 +65,7 @@ public class GPGScriptWrapper {
     try {
       exitCode = getExitCodeOfExecScript(new String[]{script, INIT_KEYRING});
     } catch(IOException ioe) {
-      System.err.println("Failed to initialize the key ring: " + ioe);
+      logger.warn("Failed to initialize the key ring: %s", ioe);
       throw new IllegalStateException("Key ring is not initialized", ioe);
     }
 
@@ -62,6 +79,22 @@ public class GPGScriptWrapper {
    * @return  Base64 encoding of the signature
    */
   public static String sign(String authorityName, String data) throws IOException {
+    return sign(authorityName, data, CONSOLE);
+  }
+
+
+  /**
+   *
+   * @param authorityName full name of attestation authority
+   * @param data data to be signed
+   * @param logger log of the goal signing
+   * @return  Base64 encoding of the signature
+   */
+  public static String sign(String authorityName, String data, GrafeasLog logger) throws IOException {
+    String keyID = getRegisteredKeyID(authorityName, logger);
+    if (keyID != null) {
+      return execScript(new String[] {script, SIGN, authorityName, data, keyID});
+    }
     return execScript(new String[] {script, SIGN, authorityName, data});
   }
 
@@ -72,6 +105,9 @@ public class GPGScriptWrapper {
    * @return  true if the signature is valid, false otherwise
    */
   public static boolean verify(String encodedSignature) throws IOException {
+    if (getSignatureCache(CONSOLE) != null) {
+      return verifySignature(encodedSignature).isValid();
+    }
     return getExitCodeOfExecScript(new String[] {script, VERIFY, encodedSignature}) == 0;
   }
 
@@ -82,6 +118,23 @@ public class GPGScriptWrapper {
    * @return key ID(short format)
    */
   public static String getKeyID(String encodedSignature) throws IOException {
+    return getKeyID(encodedSignature, CONSOLE);
+  }
+
+
+  /**
+   * Get the key ID embedded in the signature, see {@link #getKeyID(String)}
+   * @param encodedSignature  base64 encoded signature
+   * @param logger  log of the goal, receives the signature cache failures
+   * @return key ID(short format)
+   */
+  public static String getKeyID(String encodedSignature, GrafeasLog logger) throws IOException {
+    if (getSignatureCache(logger) != null) {
+      VerifiedSignature verified = verifySignature(encodedSignature, logger);
+      if (verified.isValid()) {
+        return verified.getKeyID();
+      }
+    }
     return execScript(new String[] {script, GET_KEY_ID, encodedSignature});
   }
 
@@ -92,27 +145,201 @@ public class GPGScriptWrapper {
    * @return  signed data
    */
   public static String getData(String encodedSignature) throws IOException {
+    if (getSignatureCache(CONSOLE) != null) {
+      VerifiedSignature verified = verifySignature(encodedSignature);
+      if (verified.isValid()) {
+        return verified.getData();
+      }
+    }
     return execScript(new String[] {script, GET_DATA, encodedSignature});
   }
 
 
+  /**
+   * Verify the base64 encoded signature and extract its key ID and data with a single gpg
+   * run. Valid signatures are looked up in and added to the signature cache, when enabled,
+   * so a signature that was verified before against the same keyring does not start any
+   * gpg process.
+   * @param encodedSignature  base64 encoded signature
+   * @return  validity, key ID and signed data of the signature
+   */
+  public static VerifiedSignature verifySignature(String encodedSignature) throws IOException {
+    return verifySignature(encodedSignature, CONSOLE);
+  }
+
+
+  /**
+   * Verify the base64 encoded signature, see {@link #verifySignature(String)}
+   * @param encodedSignature  base64 encoded signature
+   * @param logger  log of the goal verifying, receives the signature cache failures
+   * @return  validity, key ID and signed data of the signature
+   */
+  public static VerifiedSignature verifySignature(String encodedSignature, GrafeasLog logger) throws IOException {
+    SignatureCache cache = getSignatureCache(logger);
+    if (cache != null) {
+      try {
+        VerifiedSignature cached = cache.get(encodedSignature);
+        if (cached != null) {
+          return cached;
+        }
+      } catch (IOException ioe) {
+        logger.warn("Failed to read signature verification result: %s", ioe);
+      }
+    }
+
+    StringBuilder out = new StringBuilder();
+    int exitCode = execScript(new String[] {script, VERIFY_SIGNATURE, encodedSignature}, out);
+    VerifiedSignature verified;
+    if (exitCode != 0 && out.toString().startsWith(USAGE)) {
+      // GPG_SCRIPT older than the --verify-signature command
+      if (getExitCodeOfExecScript(new String[] {script, VERIFY, encodedSignature}) != 0) {
+        return new VerifiedSignature(false, null, null);
+      }
+      verified = new VerifiedSignature(true,
+          execScript(new String[] {script, GET_KEY_ID, encodedSignature}),
+          execScript(new String[] {script, GET_DATA, encodedSignature}));
+    } else if (exitCode != 0) {
+      return new VerifiedSignature(false, null, null);
+    } else {
+      // Key ID on the first line, then the data, both as returned by the other commands
+      int eol = out.indexOf("\n");
+      if (eol < 0) {
+        throw new IOException("Unexpected output of " + VERIFY_SIGNATURE + ": " + out);
+      }
+      verified = new VerifiedSignature(true, out.substring(0, eol + 1), out.substring(eol + 1));
+    }
+
+    if (cache != null) {
+      try {
+        cache.put(encodedSignature, verified);
+      } catch (IOException ioe) {
+        logger.warn("Failed to store signature verification result: %s", ioe);
+      }
+    }
+    return verified;
+  }
+
+
+  /**
+   * The signature cache is opt-in: it is kept in the directory named by the
+   * GPG_SIGNATURE_CACHE environment variable, which must be private to the current user.
+   * @param logger receives the reason the cache isn't available
+   * @return the signature cache, null if disabled or not available
+   */
+  private static synchronized SignatureCache getSignatureCache(GrafeasLog logger) {
+    if (!signatureCacheCreated) {
+      signatureCache = createSignatureCache(logger);
+      signatureCacheCreated = true;
+    }
+    return signatureCache;
+  }
+
+  private static SignatureCache createSignatureCache(GrafeasLog logger) {
+    String cacheDir = System.getenv(SIGNATURE_CACHE_ENV_VAR);
+    if (cacheDir == null || cacheDir.trim().isEmpty() || SIGNATURE_CACHE_DISABLED.equals(cacheDir)) {
+      return null;
+    }
+
+    try {
+      return new SignatureCache(new File(cacheDir), getKeyringDir());
+    } catch (IOException ioe) {
+      logger.warn("Signature cache is disabled: %s", ioe);
+      return null;
+    }
+  }
+
+
+  /**
+   * Identifies the keys the authorities sign with: it changes whenever a key is
+   * added to, replaced in or removed from the keyring.
+   * @return hex digest of the keyring files of the GPG_SCRIPT
+   */
+  public static String getKeyringFingerprint() throws IOException {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : SignatureCache.getKeyringFingerprint(getKeyringDir())) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+
+  /**
+   * @return gpg home directory of the GPG_SCRIPT
+   */
+  private static File getKeyringDir() {
+    String werckerCacheDir = System.getenv("WERCKER_CACHE_DIR");
+    File baseDir = (werckerCacheDir != null && new File(werckerCacheDir).isDirectory())
+        ? new File(werckerCacheDir) : new File("/tmp");
+    return new File(baseDir, "gnupg");
+  }
+
+
   /**
    * Authority names returned by the script are separated by the new line character.
    * @return List of authority names from the key ring
    */
   public static String[] getAuthorityNames() throws IOException {
+    List<String> names = AuthorityRegistry.getKeyringRegistry().getAuthorityNames();
+    if (!names.isEmpty()) {
+      return names.toArray(new String[names.size()]);
+    }
     return execScript(new String[] {script, GET_AUTHORITY_NAMES}).split("\n");
   }
 
 
   public static String getAuthorityKeyID(String authorityName) throws IOException {
+    String keyID = getRegisteredKeyID(authorityName, CONSOLE);
+    if (keyID != null) {
+      return keyID;
+    }
     return execScript(new String[] {script, GET_AUTHORITY_KEY_ID, authorityName});
   }
 
 
+  /**
+   * Authorities returned by the script are separated by the new line character,
+   * each as the full authority name followed by a space and the short key ID.
+   * @return name and key ID of the authorities from the key ring
+   */
+  static List<String> listAuthorities() throws IOException {
+    List<String> authorities = new ArrayList<String>();
+    for (String line : execScript(new String[] {script, LIST_AUTHORITIES}).split("\n")) {
+      if (!line.trim().isEmpty()) {
+        authorities.add(line);
+      }
+    }
+    return authorities;
+  }
+
+
+  /**
+   * @param logger receives the failure to list the authorities, the script then looks up the key
+   * @return key ID of the authority from the keyring registry, null if it is not known
+   */
+  private static String getRegisteredKeyID(String authorityName, GrafeasLog logger) {
+    try {
+      return AuthorityRegistry.getKeyringRegistry().getKeyID(authorityName);
+    } catch (IOException ioe) {
+      logger.sampled("keyring listing failures", GrafeasLog.Level.WARN, "Failed to list the keyring authorities: %s", ioe);
+      return null;
+    }
+  }
+
+
   private static String execScript(String[] scriptAndArguments) throws IOException {
+    StringBuilder out = new StringBuilder();
+    execScript(scriptAndArguments, out);
+    return out.toString();
+  }
+
+
+  /**
+   * @param out receives the output of the script
+   * @return exit code of the script
+   */
+  private static int execScript(String[] scriptAndArguments, StringBuilder out) throws IOException {
+    Tracer.Span span = startSpan(scriptAndArguments);
     final File tmp = File.createTempFile("out", null);
-    final StringBuilder out = new StringBuilder();
     int exitCode = 1;
     InputStream is = null;
     try {
@@ -138,13 +365,15 @@ public class GPGScriptWrapper {
       if (is != null) {
         is.close();
       }
+      span.end();
     }
 
-    return out.toString();
+    return exitCode;
   }
 
 
   private static int getExitCodeOfExecScript(String[] scriptAndArguments) throws IOException {
+    Tracer.Span span = startSpan(scriptAndArguments);
     final File tmp = File.createTempFile("out", null);
     final StringBuilder out = new StringBuilder();
     int exitCode = 1;
@@ -161,11 +390,21 @@ public class GPGScriptWrapper {
       }
     } finally {
       tmp.delete();
+      span.end();
     }
 
     return exitCode;
   }
 
+  // Span of a script call, in the category of its command - sign, verify-signature,
+  // list-authorities... - so that signing isn't mixed with verification and key lookups
+  //
+  private static Tracer.Span startSpan(String[] scriptAndArguments) {
+    String command = (scriptAndArguments.length > 1) ? scriptAndArguments[1] : scriptAndArguments[0];
+    String category = command.startsWith("--") ? command.substring(2) : command;
+    return Tracer.start(category, new File(scriptAndArguments[0]).getName() + " " + command);
+  }
+
   public static void main(String[] args) throws IOException {
     String data = "Grafeas meta data";
 
@@ -0,0 +1,289 @@
+package com.oracle.sscm.client.script;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Persistent cache of signature verification results.
+ *
+ * Entries are keyed by the SHA-256 digest of the encoded signature and hold the key ID and
+ * the signed data of signatures that verified; invalid signatures are not cached. The cache
+ * directory must be owned by the current user and closed to everybody else. Every entry is
+ * authenticated with an HMAC keyed from a secret kept in the cache directory and from the
+ * keyring files, so that an entry that was altered, or verified against another keyring, is
+ * ignored and the signature verified again. The cache only ever deletes its own temporary
+ * files.
+ */
+public class SignatureCache {
+  private static final String VALID = "valid";
+  private static final String KEY_ID = "keyId";
+  private static final String DATA = "data";
+  private static final String MAC = "mac";
+  private static final String SECRET = ".secret";
+  private static final int SECRET_LENGTH = 32;
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final String[] KEYRING_FILES = {"pubring.kbx", "pubring.gpg", "trustdb.gpg"};
+  private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Path directory;
+  private final File keyringDir;
+  private final byte[] secret;
+  private final ConcurrentMap<String, VerifiedSignature> entries = new ConcurrentHashMap<String, VerifiedSignature>();
+
+  // Key of the entries' HMAC, for the keyring files of the given stamp
+  private String keyringStamp;
+  private byte[] macKey;
+
+  /**
+   * @param cacheDir private directory of the cache, created if it does not exist
+   * @param keyringDir gpg home directory, whose keyring files are part of the entries' key
+   * @throws IOException if the directory can't be created, or is not private to the current user
+   */
+  public SignatureCache(File cacheDir, File keyringDir) throws IOException {
+    this.directory = createPrivateDirectory(cacheDir.toPath());
+    this.keyringDir = keyringDir;
+    this.secret = readSecret(directory.resolve(SECRET));
+  }
+
+  /**
+   * @return the cached result for the signature, null if it has not been verified yet or
+   * if its entry does not authenticate
+   */
+  public VerifiedSignature get(String encodedSignature) throws IOException {
+    byte[] key = getMacKey();
+    String name = digest(encodedSignature.getBytes(StandardCharsets.UTF_8));
+    VerifiedSignature result = entries.get(name);
+    if (result == null) {
+      result = read(directory.resolve(name), key, name);
+      if (result != null) {
+        entries.putIfAbsent(name, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Store the result for the signature, in memory and on disk.
+   */
+  public void put(String encodedSignature, VerifiedSignature result) throws IOException {
+    byte[] key = getMacKey();
+    String name = digest(encodedSignature.getBytes(StandardCharsets.UTF_8));
+    entries.put(name, result);
+
+    Properties props = new Properties();
+    props.setProperty(VALID, Boolean.toString(result.isValid()));
+    if (result.getKeyID() != null) {
+      props.setProperty(KEY_ID, result.getKeyID());
+    }
+    if (result.getData() != null) {
+      props.setProperty(DATA, result.getData());
+    }
+    props.setProperty(MAC, toHex(mac(key, name, result)));
+
+    // Write then rename, so that concurrent builds never read a partial entry
+    Path tmp = Files.createTempFile(directory, name, ".tmp");
+    try {
+      OutputStream out = Files.newOutputStream(tmp);
+      try {
+        props.store(out, null);
+      } finally {
+        out.close();
+      }
+      Files.move(tmp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static VerifiedSignature read(Path file, byte[] key, String name) {
+    if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+      return null;
+    }
+    Properties props = new Properties();
+    try {
+      InputStream in = Files.newInputStream(file);
+      try {
+        props.load(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException ioe) {
+      return null;
+    }
+    VerifiedSignature result = new VerifiedSignature(Boolean.parseBoolean(props.getProperty(VALID)),
+      props.getProperty(KEY_ID), props.getProperty(DATA));
+    String mac = props.getProperty(MAC);
+    if (mac == null || !MessageDigest.isEqual(toHex(mac(key, name, result)).getBytes(StandardCharsets.UTF_8),
+        mac.getBytes(StandardCharsets.UTF_8))) {
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * The key is derived again whenever a keyring file changes; the results verified
+   * against the former keyring are then dropped from memory, and don't authenticate on disk.
+   * @return key of the entries' HMAC, for the current keyring
+   */
+  private synchronized byte[] getMacKey() throws IOException {
+    StringBuilder stamp = new StringBuilder();
+    for (String name : KEYRING_FILES) {
+      File file = new File(keyringDir, name);
+      stamp.append(name).append(':').append(file.length()).append(':').append(file.lastModified()).append(';');
+    }
+    if (macKey == null || !stamp.toString().equals(keyringStamp)) {
+      MessageDigest md = newDigest();
+      md.update(secret);
+      md.update(getKeyringFingerprint(keyringDir));
+      macKey = md.digest();
+      keyringStamp = stamp.toString();
+      entries.clear();
+    }
+    return macKey;
+  }
+
+  /**
+   * @return digest of the keyring files of the gpg home directory
+   */
+  static byte[] getKeyringFingerprint(File keyringDir) throws IOException {
+    MessageDigest md = newDigest();
+    for (String name : KEYRING_FILES) {
+      File file = new File(keyringDir, name);
+      if (!file.isFile()) {
+        continue;
+      }
+      md.update(name.getBytes(StandardCharsets.UTF_8));
+      md.update(Files.readAllBytes(file.toPath()));
+    }
+    return md.digest();
+  }
+
+  /**
+   * Create the directory with owner only permissions, or check that an existing one has them.
+   */
+  private static Path createPrivateDirectory(Path dir) throws IOException {
+    if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+      Path parent = dir.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      try {
+        Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+      } catch (FileAlreadyExistsException e) {
+        // Created by a concurrent build, checked below
+      } catch (UnsupportedOperationException e) {
+        throw new IOException("Signature cache needs a POSIX file system: " + dir);
+      }
+    }
+
+    if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+      throw new IOException("Signature cache " + dir + " is not a directory");
+    }
+    String owner = Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS).getName();
+    if (!owner.equals(System.getProperty("user.name"))) {
+      throw new IOException("Signature cache " + dir + " is owned by " + owner);
+    }
+    Set<PosixFilePermission> permissions;
+    try {
+      permissions = Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS);
+    } catch (UnsupportedOperationException e) {
+      throw new IOException("Signature cache needs a POSIX file system: " + dir);
+    }
+    if (!OWNER_ONLY.containsAll(permissions)) {
+      throw new IOException("Signature cache " + dir + " is accessible to other users: "
+        + PosixFilePermissions.toString(permissions));
+    }
+    return dir;
+  }
+
+  /**
+   * Read the secret of the cache, generating it on first use.
+   */
+  private static byte[] readSecret(Path file) throws IOException {
+    if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS)) {
+      byte[] secret = new byte[SECRET_LENGTH];
+      new SecureRandom().nextBytes(secret);
+      Path tmp = Files.createTempFile(file.getParent(), SECRET, ".tmp");
+      try {
+        Files.write(tmp, secret);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    }
+    if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+      throw new IOException("Signature cache secret " + file + " is not a file");
+    }
+    byte[] secret = Files.readAllBytes(file);
+    if (secret.length != SECRET_LENGTH) {
+      throw new IOException("Signature cache secret " + file + " is corrupted");
+    }
+    return secret;
+  }
+
+  private static byte[] mac(byte[] key, String name, VerifiedSignature result) {
+    try {
+      Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+      mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+      update(mac, name);
+      update(mac, Boolean.toString(result.isValid()));
+      update(mac, result.getKeyID());
+      update(mac, result.getData());
+      return mac.doFinal();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // Length prefixed, so that the fields can't be shifted into one another
+  //
+  private static void update(Mac mac, String value) {
+    byte[] bytes = (value != null) ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    int length = (value != null) ? bytes.length : -1;
+    mac.update(new byte[] {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+    mac.update(bytes);
+  }
+
+  private static String digest(byte[] data) {
+    return toHex(newDigest().digest(data));
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+      chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,39 @@
+package com.oracle.sscm.client.script;
+
+/**
+ * Result of verifying an encoded signature: its validity, the key ID and the signed data
+ * embedded in it. Key ID and data are kept as returned by the GPG_SCRIPT, with the new line
+ * character appended by the gpg command.
+ */
+public class VerifiedSignature {
+  private final boolean valid;
+  private final String keyID;
+  private final String data;
+
+  public VerifiedSignature(boolean valid, String keyID, String data) {
+    this.valid = valid;
+    this.keyID = keyID;
+    this.data = data;
+  }
+
+  /**
+   * @return true if the signature is valid, false otherwise
+   */
+  public boolean isValid() {
+    return valid;
+  }
+
+  /**
+   * @return key ID(short format) embedded in the signature, null if the signature is not valid
+   */
+  public String getKeyID() {
+    return keyID;
+  }
+
+  /**
+   * @return signed data embedded in the signature, null if the signature is not valid
+   */
+  public String getData() {
+    return data;
+  }
+}
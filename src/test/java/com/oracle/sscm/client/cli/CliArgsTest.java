@@ -0,0 +1,103 @@
+package com.oracle.sscm.client.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.oracle.sscm.client.plugins.maven.GoalDefaults;
+
+public class CliArgsTest {
+
+    private static CliArgs parse(String... args) {
+        return new CliArgs(Arrays.asList(args));
+    }
+
+    @Test
+    public void valuesAreSeparateOrAfterAnEqualSign() {
+        CliArgs options = parse("--grafeasUrl", "http://localhost:8080", "--projectName=build");
+        assertEquals("http://localhost:8080", options.get("grafeasUrl", null));
+        assertEquals("build", options.get("projectName", null));
+        assertNull(options.get("resourceUrl", null));
+        assertEquals("UNKNOWN", options.get("resourceUrl", "UNKNOWN"));
+    }
+
+    @Test
+    public void lastValueWins() {
+        assertEquals("b", parse("--name", "a", "--name", "b").get("name", null));
+    }
+
+    @Test
+    public void flagsHaveNoValue() {
+        CliArgs options = parse("--debugLog", "--force", "false", "--wireDebug=true");
+        assertTrue(options.getFlag("debugLog"));
+        assertFalse(options.getFlag("force"));
+        assertTrue(options.getFlag("wireDebug"));
+        assertFalse(options.getFlag("archiveEntries"));
+    }
+
+    @Test
+    public void listsAreRepeatedOrSeparatedByCommas() {
+        CliArgs options = parse("--resourceUrls", "a, b", "--resourceUrls", "c,,");
+        assertEquals(Arrays.asList("a", "b", "c"), options.getList("resourceUrls"));
+        assertEquals(Collections.<String>emptyList(), options.getList("authorityNames"));
+    }
+
+    @Test
+    public void mapsAreKeyValuePairs() {
+        Map<String, String> expected = new LinkedHashMap<String, String>();
+        expected.put("jdk", "1.8");
+        expected.put("flags", "-x=1");
+        assertEquals(expected, parse("--buildOptions", "jdk=1.8,flags=-x=1").getMap("buildOptions"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mapEntriesNeedAKey() {
+        parse("--buildOptions", "=1").getMap("buildOptions");
+    }
+
+    @Test
+    public void numbersDefaultToTheGoalDefaults() {
+        CliArgs options = parse("--signingThreads", "2");
+        assertEquals(2, options.getInt("signingThreads", GoalDefaults.SIGNING_THREADS));
+        assertEquals(64 * 1024 * 1024, options.getInt("hashChunkSize", GoalDefaults.HASH_CHUNK_SIZE));
+        assertEquals(0L, options.getLong("timeBudget", GoalDefaults.TIME_BUDGET));
+        assertEquals(0.0, options.getDouble("hedgePercentile", GoalDefaults.HEDGE_PERCENTILE), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidNumbersAreUsageErrors() {
+        parse("--threads", "many").getInt("threads", 8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingRequiredOptionIsAUsageError() {
+        parse().require("feedFile");
+    }
+
+    @Test
+    public void unreadOptionsAndPositionalArgumentsAreReported() {
+        CliArgs options = parse("extra", "--grafeasUrl", "u", "--grafeasURL", "v", "--");
+        options.get("grafeasUrl", null);
+        assertEquals(Collections.singleton("grafeasURL"), options.getUnknownOptions());
+        assertEquals(Arrays.asList("extra", "--"), options.getPositional());
+    }
+
+    @Test
+    public void usageErrorsExitWithStatusTwo() {
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        assertEquals(SscmCli.EXIT_USAGE, SscmCli.run(Collections.<String>emptyList(), out, out));
+        assertEquals(SscmCli.EXIT_USAGE, SscmCli.run(Arrays.asList("unknown"), out, out));
+        assertEquals(SscmCli.EXIT_USAGE, SscmCli.run(Arrays.asList("nvdNotes", "--grafeasUrl", "u"), out, out));
+        assertEquals(SscmCli.EXIT_OK, SscmCli.run(Arrays.asList("help"), out, out));
+    }
+}
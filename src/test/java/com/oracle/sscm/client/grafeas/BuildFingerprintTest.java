@@ -0,0 +1,97 @@
+package com.oracle.sscm.client.grafeas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BuildFingerprintTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Files digested, in order, the digest is the kind and the content
+    private final List<String> digested = new ArrayList<String>();
+
+    private BuildFingerprint.Digester digester(final String kind) {
+        return new BuildFingerprint.Digester() {
+            public String digest(String fileName) throws IOException {
+                digested.add(fileName);
+                return kind + ":" + new String(Files.readAllBytes(new File(fileName).toPath()), StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private BuildFingerprint fingerprint(File fingerprintFile, File artifact, File source) throws IOException {
+        BuildFingerprint fingerprint = new BuildFingerprint(fingerprintFile);
+        fingerprint.addInput("projectName", "build");
+        fingerprint.addFiles("buildArtifacts", Collections.singletonList(artifact.getPath()), digester("a"));
+        fingerprint.addFiles("sourceFiles", Arrays.asList(source.getPath(), artifact.getPath()), digester("s"));
+        return fingerprint;
+    }
+
+    @Test
+    public void digestsAreReturnedWithoutTheMissingFiles() throws IOException {
+        File artifact = write("app.jar", "jar");
+        BuildFingerprint fingerprint = new BuildFingerprint(null);
+        Map<String, String> digests = fingerprint.addFiles("buildArtifacts",
+            Arrays.asList(artifact.getPath(), new File(folder.getRoot(), "missing.jar").getPath()), digester("a"));
+        assertEquals(Collections.singletonMap(artifact.getPath(), "a:jar"), digests);
+        assertFalse(fingerprint.isUnchanged());
+    }
+
+    @Test
+    public void unchangedFilesAreNotDigestedAgain() throws IOException {
+        File fingerprintFile = new File(folder.getRoot(), "fingerprint.properties");
+        File artifact = write("app.jar", "jar");
+        File source = write("App.java", "class App {}");
+
+        BuildFingerprint first = fingerprint(fingerprintFile, artifact, source);
+        assertEquals(Arrays.asList(artifact.getPath(), source.getPath(), artifact.getPath()), digested);
+        first.save(Arrays.asList("occurrence-1"));
+
+        digested.clear();
+        BuildFingerprint second = fingerprint(fingerprintFile, artifact, source);
+        assertTrue(digested.isEmpty());
+        assertTrue(second.isUnchanged());
+        assertEquals(Arrays.asList("occurrence-1"), second.getPreviousOccurrences());
+
+        // The artifact is also a source, each input keeps its own kind of digest
+        Map<String, String> sources = new BuildFingerprint(fingerprintFile).addFiles("sourceFiles",
+            Collections.singletonList(artifact.getPath()), digester("s"));
+        assertEquals("s:jar", sources.get(artifact.getPath()));
+    }
+
+    @Test
+    public void changedFileIsDigestedAgain() throws IOException {
+        File fingerprintFile = new File(folder.getRoot(), "fingerprint.properties");
+        File artifact = write("app.jar", "jar");
+        File source = write("App.java", "class App {}");
+        fingerprint(fingerprintFile, artifact, source).save(Collections.<String>emptyList());
+
+        write("App.java", "class App { int changed; }");
+        digested.clear();
+        BuildFingerprint changed = fingerprint(fingerprintFile, artifact, source);
+        assertEquals(Arrays.asList(source.getPath()), digested);
+        assertFalse(changed.isUnchanged());
+    }
+}
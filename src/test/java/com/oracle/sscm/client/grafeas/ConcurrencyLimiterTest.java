@@ -0,0 +1,118 @@
+package com.oracle.sscm.client.grafeas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void initialLimitIsClamped() {
+        assertEquals(4, new ConcurrencyLimiter(1, 4, 8).getLimit());
+        assertEquals(8, new ConcurrencyLimiter(100, 4, 8).getLimit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLimitsAreRejected() {
+        new ConcurrencyLimiter(4, 8, 2);
+    }
+
+    @Test
+    public void successesIncreaseByAboutOnePerRound() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 256);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+            limiter.release(false);
+        }
+        assertEquals(4, limiter.getLimit());
+        limiter.acquire();
+        limiter.release(false);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void increaseStopsAtMaxLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(7, 1, 8);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(false);
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void overloadHalvesTheLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(16, 1, 256);
+        limiter.acquire();
+        limiter.release(true);
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void burstOfOverloadsDecreasesOncePerRound() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(16, 1, 256);
+        for (int i = 0; i < 16; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < 16; i++) {
+            limiter.release(true);
+        }
+        assertEquals(8, limiter.getLimit());
+
+        // A full round started after the decrease, the next overload counts again
+        for (int i = 0; i < 8; i++) {
+            limiter.acquire();
+        }
+        limiter.release(true);
+        assertEquals(8, limiter.getLimit());
+        limiter.acquire();
+        limiter.release(true);
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void decreaseStopsAtMinLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 2, 8);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.release(true);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void neutralReleaseKeepsTheLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 256);
+        limiter.acquire();
+        limiter.release();
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void acquireWaitsForAFreeSlot() throws InterruptedException {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+        limiter.acquire();
+        assertFalse(limiter.tryAcquire());
+        assertFalse(limiter.acquire(50));
+
+        Thread releaser = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                limiter.release(false);
+            }
+        });
+        releaser.start();
+        assertTrue(limiter.acquire(10000));
+        releaser.join();
+        assertEquals(1, limiter.getInFlight());
+        limiter.release(false);
+        assertTrue(limiter.tryAcquire());
+    }
+}
@@ -0,0 +1,219 @@
+package com.oracle.sscm.client.grafeas;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class GrafeasHttpTest {
+
+    private HttpServer server;
+    private URL url;
+    private OkHttpClient client;
+
+    // Requests received, the first one answered after slowMillis with firstStatus
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile long slowMillis = 0;
+    private volatile int firstStatus = 200;
+
+    // Thread that sent the last request
+    private final AtomicReference<String> sender = new AtomicReference<String>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                int status = 200;
+                if (requests.incrementAndGet() == 1) {
+                    status = firstStatus;
+                    if (slowMillis > 0) {
+                        try {
+                            Thread.sleep(slowMillis);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+                byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+                try {
+                    exchange.sendResponseHeaders(status, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                } catch (IOException e) {
+                    // The client cancelled the request
+                }
+            }
+        });
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/v1alpha1/projects");
+
+        client = GrafeasHttp.newClient();
+        client.interceptors().add(new Interceptor() {
+            public Response intercept(Chain chain) throws IOException {
+                sender.set(Thread.currentThread().getName());
+                return chain.proceed(chain.request());
+            }
+        });
+    }
+
+    @After
+    public void stopServer() {
+        Deadline.end();
+        GrafeasHttp.setBackoff(GrafeasHttp.DEFAULT_BASE_BACKOFF_MILLIS, GrafeasHttp.DEFAULT_MAX_BACKOFF_MILLIS);
+        server.stop(0);
+    }
+
+    private Response get() throws IOException {
+        return client.newCall(new Request.Builder().url(url).get().build()).execute();
+    }
+
+    private Response post() throws IOException {
+        RequestBody body = RequestBody.create(MediaType.parse("application/json"), "{}");
+        return client.newCall(new Request.Builder().url(url).post(body).build()).execute();
+    }
+
+    // Enough fast GETs for the hedge percentile to be known
+    //
+    private void recordFastLatencies() {
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            GrafeasHttp.getLatencies(url).record(1);
+        }
+    }
+
+    @Test
+    public void withoutBoundOrHedgingTheRequestIsSentByTheCaller() throws IOException {
+        Deadline.begin(0, 0);
+        Response response = get();
+        response.body().close();
+        assertEquals(200, response.code());
+        assertEquals(Thread.currentThread().getName(), sender.get());
+        assertEquals(0, GrafeasHttp.getLimiter(url).getInFlight());
+    }
+
+    @Test
+    public void boundedRequestIsSentByAnAttempt() throws IOException {
+        Deadline.begin(60000, 0);
+        Response response = get();
+        response.body().close();
+        assertEquals(200, response.code());
+        assertTrue(sender.get(), sender.get().startsWith("grafeas-http-"));
+    }
+
+    @Test
+    public void hedgeAnswersASlowGet() throws IOException {
+        recordFastLatencies();
+        slowMillis = 5000;
+        Deadline.begin(0, 50);
+        long start = System.currentTimeMillis();
+        Response response = get();
+        response.body().close();
+        assertEquals(200, response.code());
+        assertTrue(System.currentTimeMillis() - start < slowMillis);
+        assertEquals(2, requests.get());
+        assertEquals(0, GrafeasHttp.getLimiter(url).getInFlight());
+    }
+
+    @Test
+    public void noHedgeBeforeTheLatenciesAreKnown() throws IOException {
+        slowMillis = 300;
+        Deadline.begin(0, 50);
+        Response response = get();
+        response.body().close();
+        assertEquals(200, response.code());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void requestStillRunningAtTheDeadlineFails() throws IOException {
+        ConcurrencyLimiter limiter = GrafeasHttp.getLimiter(url);
+        int limit = limiter.getLimit();
+        slowMillis = 5000;
+        Deadline.begin(200, 0);
+        long start = System.currentTimeMillis();
+        try {
+            get();
+            fail("Expected the deadline to be exceeded");
+        } catch (DeadlineExceededException e) {
+            // The attempt was abandoned
+        }
+        assertTrue(System.currentTimeMillis() - start < slowMillis);
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(limit, limiter.getLimit());
+        assertFalse(Deadline.current().remainingMillis() > 0);
+    }
+
+    @Test
+    public void postIsRetriedWhenRefused() throws IOException {
+        GrafeasHttp.setBackoff(1, 1);
+        firstStatus = 503;
+        Response response = post();
+        response.body().close();
+        assertEquals(200, response.code());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void postIsNotRetriedAfterAGatewayTimeout() throws IOException {
+        GrafeasHttp.setBackoff(1, 1);
+        firstStatus = 504;
+        Response response = post();
+        response.body().close();
+        assertEquals(504, response.code());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void getIsRetriedAfterAGatewayTimeout() throws IOException {
+        GrafeasHttp.setBackoff(1, 1);
+        firstStatus = 504;
+        Response response = get();
+        response.body().close();
+        assertEquals(200, response.code());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void retryableStatus() {
+        assertTrue(GrafeasHttp.isRetryable(502, true));
+        assertTrue(GrafeasHttp.isRetryable(429, false));
+        assertTrue(GrafeasHttp.isRetryable(503, false));
+        assertFalse(GrafeasHttp.isRetryable(502, false));
+        assertFalse(GrafeasHttp.isRetryable(504, false));
+        assertFalse(GrafeasHttp.isRetryable(500, true));
+    }
+
+    @Test
+    public void alreadyExists() {
+        assertTrue(GrafeasHttp.isAlreadyExists(409, null));
+        assertTrue(GrafeasHttp.isAlreadyExists(400, "{\"code\": 6, \"message\": \"exists\"}"));
+        assertTrue(GrafeasHttp.isAlreadyExists(500, "{\"error\": {\"status\": \"ALREADY_EXISTS\"}}"));
+        assertFalse(GrafeasHttp.isAlreadyExists(400, "{\"code\": 3}"));
+        assertFalse(GrafeasHttp.isAlreadyExists(400, "not json"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.oracle.sscm.client.grafeas;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.oracle.sscm.client.log.Tracer;
+
+public class TreeHasherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(byte[] content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+    @Test
+    public void chunksAreHashedInOrder() throws IOException {
+        byte[] content = content(2500);
+        TreeHasher.TreeHash hash = new TreeHasher(1000, new ForkJoinPool(4)).hash(write(content));
+
+        assertEquals(3, hash.getChunkDigests().size());
+        MessageDigest root = TreeHasher.newDigest();
+        for (int i = 0; i < 3; i++) {
+            byte[] chunk = Arrays.copyOfRange(content, i * 1000, Math.min(content.length, (i + 1) * 1000));
+            byte[] digest = TreeHasher.newDigest().digest(chunk);
+            assertArrayEquals(digest, hash.getChunkDigests().get(i));
+            root.update(digest);
+        }
+        assertArrayEquals(root.digest(), hash.getRoot());
+        assertEquals(TreeHasher.TREE_HASH_PREFIX + TreeHasher.toHex(hash.getRoot()), hash.toChecksum());
+    }
+
+    @Test
+    public void hexRoundTrip() {
+        byte[] bytes = {0, 1, (byte) 0xab, (byte) 0xff};
+        assertEquals("0001abff", TreeHasher.toHex(bytes));
+        assertArrayEquals(bytes, TreeHasher.fromHex("0001abff"));
+    }
+
+    @Test
+    public void eachChunkIsTracedOnThePoolThreads() throws IOException {
+        File trace = new File(folder.getRoot(), "trace.json");
+        Tracer.begin(trace.getPath());
+        try {
+            new TreeHasher(1000, new ForkJoinPool(4)).hash(write(content(4000)));
+        } finally {
+            Tracer.end();
+        }
+        String events = new String(Files.readAllBytes(trace.toPath()), StandardCharsets.UTF_8);
+        int chunks = 0;
+        for (int i = events.indexOf("\"name\":\"chunk\""); i >= 0; i = events.indexOf("\"name\":\"chunk\"", i + 1)) {
+            chunks++;
+        }
+        assertEquals(4, chunks);
+    }
+}
@@ -0,0 +1,157 @@
+package com.oracle.sscm.client.scan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import net.minidev.json.JSONObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OccurrenceExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JSONObject occurrence(int i) {
+        JSONObject occurrence = new JSONObject();
+        occurrence.put("name", "occurrence-" + i);
+        return occurrence;
+    }
+
+    private static List<String> lines(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            if (file.getName().endsWith(".gz")) {
+                in = new GZIPInputStream(in);
+            }
+            byte[] content = readAll(in);
+            String text = new String(content, StandardCharsets.UTF_8);
+            return text.isEmpty() ? new ArrayList<String>() : Arrays.asList(text.split("\n"));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<String>(Arrays.asList(folder.getRoot().list()));
+        Collections.sort(names);
+        return names;
+    }
+
+    @Test
+    public void singleFile() throws IOException {
+        File file = new File(folder.getRoot(), "scan.ndjson");
+        OccurrenceExporter exporter = new OccurrenceExporter(file, 0);
+        for (int i = 0; i < 3; i++) {
+            exporter.accept(occurrence(i));
+        }
+        exporter.close();
+        assertEquals(3, exporter.getExported());
+        assertEquals(Arrays.asList(file), exporter.getFiles());
+        assertEquals(Arrays.asList("{\"name\":\"occurrence-0\"}", "{\"name\":\"occurrence-1\"}", "{\"name\":\"occurrence-2\"}"),
+                     lines(file));
+        assertEquals(Arrays.asList("scan.ndjson"), names());
+    }
+
+    @Test
+    public void rolledParts() throws IOException {
+        File file = new File(folder.getRoot(), "scan.ndjson.gz");
+        int lineSize = "{\"name\":\"occurrence-0\"}\n".length();
+        OccurrenceExporter exporter = new OccurrenceExporter(file, 2 * lineSize);
+        for (int i = 0; i < 5; i++) {
+            exporter.accept(occurrence(i));
+        }
+        exporter.close();
+        assertEquals(Arrays.asList("scan-00001.ndjson.gz", "scan-00002.ndjson.gz", "scan-00003.ndjson.gz"), names());
+        assertEquals(3, exporter.getFiles().size());
+        assertEquals(2, lines(exporter.getFiles().get(0)).size());
+        assertEquals(2, lines(exporter.getFiles().get(1)).size());
+        assertEquals(Arrays.asList("{\"name\":\"occurrence-4\"}"), lines(exporter.getFiles().get(2)));
+    }
+
+    @Test
+    public void occurrenceLargerThanThePartIsWrittenAlone() throws IOException {
+        File file = new File(folder.getRoot(), "scan.ndjson");
+        OccurrenceExporter exporter = new OccurrenceExporter(file, 1);
+        exporter.accept(occurrence(0));
+        exporter.accept(occurrence(1));
+        exporter.close();
+        assertEquals(Arrays.asList("scan-00001.ndjson", "scan-00002.ndjson"), names());
+    }
+
+    @Test
+    public void emptyExportIsWritten() throws IOException {
+        File file = new File(folder.getRoot(), "scan.ndjson");
+        Files.write(file.toPath(), "{\"name\":\"stale\"}\n".getBytes(StandardCharsets.UTF_8));
+        OccurrenceExporter exporter = new OccurrenceExporter(file, 0);
+        exporter.close();
+        assertTrue(file.isFile());
+        assertEquals(0, file.length());
+        assertEquals(Arrays.asList(file), exporter.getFiles());
+    }
+
+    @Test
+    public void previousExportIsDeleted() throws IOException {
+        for (String name : new String[] {"scan.ndjson", "scan-00001.ndjson", "scan-00002.ndjson", "scan-00003.ndjson",
+                                         "other-00001.ndjson", "scan-00001.ndjson.gz"}) {
+            Files.write(new File(folder.getRoot(), name).toPath(), "{\"name\":\"stale\"}\n".getBytes(StandardCharsets.UTF_8));
+        }
+        File file = new File(folder.getRoot(), "scan.ndjson");
+        int lineSize = "{\"name\":\"occurrence-0\"}\n".length();
+        OccurrenceExporter exporter = new OccurrenceExporter(file, 2 * lineSize);
+        for (int i = 0; i < 3; i++) {
+            exporter.accept(occurrence(i));
+        }
+        exporter.close();
+        assertEquals(Arrays.asList("other-00001.ndjson", "scan-00001.ndjson", "scan-00001.ndjson.gz", "scan-00002.ndjson"),
+                     names());
+        assertEquals(Arrays.asList("{\"name\":\"occurrence-2\"}"), lines(new File(folder.getRoot(), "scan-00002.ndjson")));
+    }
+
+    @Test
+    public void abortDiscardsThePartBeingWritten() throws IOException {
+        File file = new File(folder.getRoot(), "scan.ndjson");
+        int lineSize = "{\"name\":\"occurrence-0\"}\n".length();
+        OccurrenceExporter exporter = new OccurrenceExporter(file, 2 * lineSize);
+        for (int i = 0; i < 3; i++) {
+            exporter.accept(occurrence(i));
+        }
+        exporter.abort();
+        exporter.close();
+        assertEquals(Arrays.asList("scan-00001.ndjson"), names());
+        assertFalse(new File(folder.getRoot(), "scan-00002.ndjson").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void nothingIsWrittenAfterClose() throws IOException {
+        OccurrenceExporter exporter = new OccurrenceExporter(new File(folder.getRoot(), "scan.ndjson"), 0);
+        exporter.close();
+        exporter.accept(occurrence(0));
+    }
+}
@@ -0,0 +1,141 @@
+package com.oracle.sscm.client.scan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SbomReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String METADATA =
+        "\"metadata\": {\"timestamp\": \"2024-01-02T03:04:05Z\", \"component\": {\"name\": \"app\", \"bom-ref\": \"app\"}}";
+
+    private static final String COMPONENTS =
+        "\"components\": ["
+        + "{\"bom-ref\": \"lib\", \"group\": \"org.example\", \"name\": \"lib\", \"version\": \"1.0\","
+        + " \"purl\": \"pkg:maven/org.example/lib@1.0\", \"hashes\": [{\"alg\": \"SHA-1\", \"content\": \"abc\"}],"
+        + " \"components\": [{\"bom-ref\": \"nested\", \"name\": \"nested\", \"version\": \"2.0\"}]},"
+        + "{\"bom-ref\": \"unused\", \"name\": \"unused\"}]";
+
+    private static final String VULNERABILITIES =
+        "\"vulnerabilities\": ["
+        + "{\"id\": \"CVE-2024-0001\", \"source\": {\"name\": \"GitHub\"},"
+        + " \"ratings\": [{\"method\": \"CVSSv2\", \"score\": 9.5}, {\"method\": \"CVSSv31\", \"score\": 7.5}],"
+        + " \"affects\": [{\"ref\": \"lib\"}, {\"ref\": \"nested\"}]},"
+        + "{\"id\": \"CVE-2024-0002\", \"ratings\": [{\"severity\": \"low\"}],"
+        + " \"affects\": [{\"ref\": \"pkg:npm/left-pad@1.0\"}, {\"ref\": \"missing\"}]},"
+        + "{\"id\": \"CVE-2024-0003\"}]";
+
+    private File write(String json) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<SbomFinding> read(SbomReader reader) throws IOException {
+        final List<SbomFinding> findings = new ArrayList<SbomFinding>();
+        reader.read(new SbomReader.FindingHandler() {
+            public void finding(SbomFinding finding) {
+                findings.add(finding);
+            }
+        });
+        return findings;
+    }
+
+    private static void assertCycloneDxFindings(List<SbomFinding> findings) {
+        assertEquals(5, findings.size());
+
+        SbomFinding lib = findings.get(0);
+        assertEquals("CVE-2024-0001", lib.getCve());
+        assertEquals("GitHub", lib.getSource());
+        assertEquals(Double.valueOf(7.5), lib.getCvssScore());
+        assertEquals("HIGH", lib.getSeverity());
+        assertEquals("org.example:lib", lib.getPackageName());
+        assertEquals("1.0", lib.getPackageVersion());
+        assertEquals("pkg:maven/org.example/lib@1.0", lib.getPurl());
+        assertEquals("abc", lib.getSha1());
+
+        SbomFinding nested = findings.get(1);
+        assertEquals("nested", nested.getPackageName());
+        assertEquals("2.0", nested.getPackageVersion());
+
+        SbomFinding purl = findings.get(2);
+        assertEquals("CVE-2024-0002", purl.getCve());
+        assertEquals("NVD", purl.getSource());
+        assertEquals("LOW", purl.getSeverity());
+        assertEquals("pkg:npm/left-pad@1.0", purl.getPurl());
+
+        // A bom-ref that is neither a component nor a package URL
+        SbomFinding unresolved = findings.get(3);
+        assertEquals("CVE-2024-0002", unresolved.getCve());
+        assertNull(unresolved.getPurl());
+        assertNull(unresolved.getPackageName());
+
+        SbomFinding unaffected = findings.get(4);
+        assertEquals("CVE-2024-0003", unaffected.getCve());
+        assertEquals(SbomFinding.SEVERITY_UNSPECIFIED, unaffected.getSeverity());
+    }
+
+    @Test
+    public void componentsBeforeVulnerabilities() throws IOException {
+        SbomReader reader = new SbomReader(write("{\"bomFormat\": \"CycloneDX\", " + METADATA + ", "
+            + COMPONENTS + ", " + VULNERABILITIES + "}"), ReportFormat.CYCLONEDX);
+        reader.index();
+        assertEquals("app", reader.getProjectName());
+        assertEquals("2024-01-02T03:04:05Z", reader.getTimestamp());
+        assertCycloneDxFindings(read(reader));
+    }
+
+    @Test
+    public void vulnerabilitiesBeforeComponents() throws IOException {
+        SbomReader reader = new SbomReader(write("{\"bomFormat\": \"CycloneDX\", " + VULNERABILITIES + ", "
+            + COMPONENTS + ", " + METADATA + "}"), ReportFormat.CYCLONEDX);
+        assertCycloneDxFindings(read(reader));
+        assertEquals("app", reader.getProjectName());
+    }
+
+    @Test
+    public void spdxAdvisoriesOfEachPackage() throws IOException {
+        SbomReader reader = new SbomReader(write("{\"spdxVersion\": \"SPDX-2.3\", \"name\": \"doc\","
+            + " \"creationInfo\": {\"created\": \"2024-01-02T03:04:05Z\"},"
+            + " \"packages\": [{\"name\": \"lib\", \"versionInfo\": \"1.0\","
+            + "   \"checksums\": [{\"algorithm\": \"SHA1\", \"checksumValue\": \"abc\"}],"
+            + "   \"externalRefs\": ["
+            + "     {\"referenceType\": \"cpe23Type\", \"referenceLocator\": \"cpe:2.3:a:example:lib:1.0\"},"
+            + "     {\"referenceType\": \"purl\", \"referenceLocator\": \"pkg:maven/org.example/lib@1.0\"},"
+            + "     {\"referenceType\": \"advisory\", \"referenceLocator\": \"https://nvd.nist.gov/vuln/detail/cve-2024-0001\"}]},"
+            + "  {\"name\": \"clean\", \"externalRefs\": []}]}"), ReportFormat.SPDX);
+        List<SbomFinding> findings = read(reader);
+        assertEquals("doc", reader.getProjectName());
+        assertEquals("2024-01-02T03:04:05Z", reader.getTimestamp());
+        assertEquals(1, findings.size());
+        SbomFinding finding = findings.get(0);
+        assertEquals("CVE-2024-0001", finding.getCve());
+        assertEquals("cpe:2.3:a:example:lib:1.0", finding.getCpeUri());
+        assertEquals("pkg:maven/org.example/lib@1.0", finding.getPurl());
+        assertEquals("lib", finding.getPackageName());
+        assertEquals("abc", finding.getSha1());
+    }
+
+    @Test
+    public void severityFromTheCvssBands() {
+        assertEquals("CRITICAL", SbomReader.toSeverity(null, 9.0));
+        assertEquals("HIGH", SbomReader.toSeverity(null, 7.0));
+        assertEquals("MEDIUM", SbomReader.toSeverity(null, 4.0));
+        assertEquals("LOW", SbomReader.toSeverity(null, 0.1));
+        assertEquals("MINIMAL", SbomReader.toSeverity("info", 5.0));
+        assertEquals(SbomFinding.SEVERITY_UNSPECIFIED, SbomReader.toSeverity("unknown", null));
+    }
+}
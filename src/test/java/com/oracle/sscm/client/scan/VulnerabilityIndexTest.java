@@ -0,0 +1,147 @@
+package com.oracle.sscm.client.scan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VulnerabilityIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void add(VulnerabilityIndex index, String... lines) throws IOException {
+        VulnerabilityIndex.Segment segment = index.newSegment();
+        try {
+            for (String line : lines) {
+                segment.add(VulnerabilityIndex.Entry.parse(line));
+            }
+            segment.commit();
+        } finally {
+            segment.close();
+        }
+    }
+
+    private static List<String> find(VulnerabilityIndex index, String vulnerability) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        for (VulnerabilityIndex.Entry entry : index.find(vulnerability)) {
+            lines.add(entry.toLine());
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private List<String> indexLines() throws IOException {
+        return Files.readAllLines(new File(folder.getRoot(), "index.tsv").toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void segmentsAreFoundBeforeCompaction() throws IOException {
+        VulnerabilityIndex index = new VulnerabilityIndex(folder.getRoot());
+        add(index, "CVE-2024-0001\tp\tapp-1\tabc\tlib", "CVE-2024-0002\tp\tapp-1\t\t");
+        add(index, "cve-2024-0001\tp\tapp-2\t\tlib");
+        assertEquals(2, index.getSegmentCount());
+        assertEquals(Arrays.asList("CVE-2024-0001\tp\tapp-1\tabc\tlib", "CVE-2024-0001\tp\tapp-2\t\tlib"),
+                     find(index, " cve-2024-0001 "));
+
+        VulnerabilityIndex.Entry entry = index.find("CVE-2024-0002").get(0);
+        assertEquals("app-1", entry.getResourceUrl());
+        assertNull(entry.getSha1());
+        assertNull(entry.getPackageName());
+    }
+
+    @Test
+    public void compactionMergesSortedWithoutDuplicates() throws IOException {
+        VulnerabilityIndex index = new VulnerabilityIndex(folder.getRoot());
+        add(index, "CVE-2024-0003\tp\tapp-1\t\t", "CVE-2024-0001\tp\tapp-1\t\t");
+        assertTrue(index.compact());
+        add(index, "CVE-2024-0002\tp\tapp-2\t\t", "CVE-2024-0001\tp\tapp-1\t\t");
+        add(index, "CVE-2024-0010\tp\tapp-3\t\t", "CVE-2024-0001\tp\tapp-3\t\t");
+        assertTrue(index.compact());
+
+        assertEquals(0, index.getSegmentCount());
+        assertEquals(Arrays.asList("CVE-2024-0001\tp\tapp-1\t\t", "CVE-2024-0001\tp\tapp-3\t\t",
+                                   "CVE-2024-0002\tp\tapp-2\t\t", "CVE-2024-0003\tp\tapp-1\t\t",
+                                   "CVE-2024-0010\tp\tapp-3\t\t"),
+                     indexLines());
+        assertEquals(Arrays.asList("CVE-2024-0001\tp\tapp-1\t\t", "CVE-2024-0001\tp\tapp-3\t\t"),
+                     find(index, "CVE-2024-0001"));
+    }
+
+    @Test
+    public void compactIfNeededWaitsForTheThreshold() throws IOException {
+        VulnerabilityIndex index = new VulnerabilityIndex(folder.getRoot());
+        index.setCompactSegments(2);
+        add(index, "CVE-2024-0001\tp\tapp-1\t\t");
+        assertFalse(index.compactIfNeeded());
+        add(index, "CVE-2024-0001\tp\tapp-2\t\t");
+        assertTrue(index.compactIfNeeded());
+        assertEquals(0, index.getSegmentCount());
+        assertEquals(2, find(index, "CVE-2024-0001").size());
+    }
+
+    @Test
+    public void binarySearchFindsEveryVulnerability() throws IOException {
+        VulnerabilityIndex index = new VulnerabilityIndex(folder.getRoot());
+        VulnerabilityIndex.Segment segment = index.newSegment();
+        for (int cve = 0; cve < 500; cve++) {
+            for (int artifact = 0; artifact <= cve % 4; artifact++) {
+                segment.add(new VulnerabilityIndex.Entry(String.format("CVE-2024-%04d", cve), "p", "app-" + artifact,
+                                                         null, "lib-\u00e9\u4e2d"));
+            }
+        }
+        segment.commit();
+        assertTrue(index.compact());
+
+        for (int cve = 0; cve < 500; cve++) {
+            List<VulnerabilityIndex.Entry> entries = index.find(String.format("CVE-2024-%04d", cve));
+            assertEquals(cve % 4 + 1, entries.size());
+            assertEquals("lib-\u00e9\u4e2d", entries.get(0).getPackageName());
+        }
+        assertTrue(index.find("CVE-2023-0001").isEmpty());
+        assertTrue(index.find("CVE-2024-0500").isEmpty());
+        // A prefix of an id is not a match
+        assertTrue(index.find("CVE-2024-001").isEmpty());
+    }
+
+    @Test
+    public void uncommittedSegmentIsDiscarded() throws IOException {
+        VulnerabilityIndex index = new VulnerabilityIndex(folder.getRoot());
+        VulnerabilityIndex.Segment segment = index.newSegment();
+        segment.add(new VulnerabilityIndex.Entry("CVE-2024-0001", "p", "app-1", null, null));
+        assertTrue(index.find("CVE-2024-0001").isEmpty());
+        segment.close();
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void compactionDeletesCrashedSegments() throws IOException {
+        VulnerabilityIndex index = new VulnerabilityIndex(folder.getRoot());
+        File crashed = new File(folder.getRoot(), "segment-0000000000001-00000001.tsv.tmp");
+        Files.write(crashed.toPath(), "CVE-2024-0001\tp\tapp-1\t\t\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(crashed.setLastModified(System.currentTimeMillis() - VulnerabilityIndex.STALE_SEGMENT_MILLIS - 1000));
+
+        VulnerabilityIndex.Segment running = index.newSegment();
+        running.add(new VulnerabilityIndex.Entry("CVE-2024-0002", "p", "app-2", null, null));
+        add(index, "CVE-2024-0003\tp\tapp-3\t\t");
+        assertTrue(index.compact());
+
+        assertFalse(crashed.exists());
+        running.commit();
+        assertEquals(1, index.find("CVE-2024-0002").size());
+        assertTrue(index.find("CVE-2024-0001").isEmpty());
+    }
+}